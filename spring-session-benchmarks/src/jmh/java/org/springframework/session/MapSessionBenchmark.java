@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for the attribute access and the copy of a {@link MapSession}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MapSessionBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int attributeCount;
+
+	private MapSession session;
+
+	private int counter;
+
+	@Setup
+	public void setup() {
+		this.session = new MapSession();
+		for (int i = 0; i < this.attributeCount; i++) {
+			this.session.setAttribute("attribute" + i, "value" + i);
+		}
+	}
+
+	@Benchmark
+	public Object getAttribute() {
+		return this.session.getAttribute("attribute0");
+	}
+
+	@Benchmark
+	public MapSession setAttribute() {
+		this.session.setAttribute("attribute0", this.counter++);
+		return this.session;
+	}
+
+	@Benchmark
+	public MapSession copy() {
+		return new MapSession(this.session);
+	}
+
+}
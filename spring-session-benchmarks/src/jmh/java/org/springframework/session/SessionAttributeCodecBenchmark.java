@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * Compares {@link JdkSessionAttributeCodec} and {@link CompactSessionAttributeCodec} on
+ * typical session attribute values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SessionAttributeCodecBenchmark {
+
+	@Param({ "jdk", "compact" })
+	public String codec;
+
+	@Param({ "string", "timestamp", "list", "securityContext" })
+	public String attribute;
+
+	private SessionAttributeCodec sessionAttributeCodec;
+
+	private Object value;
+
+	private byte[] encoded;
+
+	@Setup
+	public void setup() {
+		this.sessionAttributeCodec = "jdk".equals(this.codec) ? new JdkSessionAttributeCodec()
+				: new CompactSessionAttributeCodec();
+		this.value = createValue(this.attribute);
+		this.encoded = this.sessionAttributeCodec.encode(this.value);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return this.sessionAttributeCodec.encode(this.value);
+	}
+
+	@Benchmark
+	public Object decode() {
+		return this.sessionAttributeCodec.decode(this.encoded);
+	}
+
+	private static Object createValue(String attribute) {
+		switch (attribute) {
+			case "string":
+				return "https://example.com/saved-request?continue";
+			case "timestamp":
+				return Instant.now();
+			case "list":
+				return new ArrayList<>(Arrays.asList("item", 42L, true, 3.14));
+			case "securityContext":
+				User user = new User("user", "password", AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+				user.eraseCredentials();
+				return new SecurityContextImpl(
+						new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+			default:
+				throw new IllegalArgumentException("Unknown attribute " + attribute);
+		}
+	}
+
+}
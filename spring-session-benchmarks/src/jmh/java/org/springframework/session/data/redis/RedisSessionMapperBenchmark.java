@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.session.MapSession;
+
+/**
+ * Benchmarks for mapping the hash of a session read from Redis with
+ * {@link RedisSessionMapper}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class RedisSessionMapperBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int attributeCount;
+
+	private RedisSessionMapper mapper;
+
+	private Map<String, Object> map;
+
+	@Setup
+	public void setup() {
+		this.mapper = new RedisSessionMapper(UUID.randomUUID().toString());
+		long now = System.currentTimeMillis();
+		this.map = new HashMap<>();
+		this.map.put(RedisSessionMapper.CREATION_TIME_KEY, now);
+		this.map.put(RedisSessionMapper.LAST_ACCESSED_TIME_KEY, now);
+		this.map.put(RedisSessionMapper.MAX_INACTIVE_INTERVAL_KEY, 1800);
+		for (int i = 0; i < this.attributeCount; i++) {
+			this.map.put(RedisSessionMapper.ATTRIBUTE_PREFIX + "attribute" + i, "value" + i);
+		}
+	}
+
+	@Benchmark
+	public MapSession apply() {
+		return this.mapper.apply(this.map);
+	}
+
+}
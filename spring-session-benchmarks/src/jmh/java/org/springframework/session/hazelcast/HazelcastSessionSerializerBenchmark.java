@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.hazelcast;
+
+import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.session.MapSession;
+
+/**
+ * Benchmarks for serializing a {@link MapSession} with {@link HazelcastSessionSerializer},
+ * using a standalone Hazelcast serialization service.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class HazelcastSessionSerializerBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int attributeCount;
+
+	private InternalSerializationService serializationService;
+
+	private MapSession session;
+
+	private Data data;
+
+	@Setup
+	public void setup() {
+		SerializerConfig serializerConfig = new SerializerConfig();
+		serializerConfig.setImplementation(new HazelcastSessionSerializer()).setTypeClass(MapSession.class);
+		SerializationConfig serializationConfig = new SerializationConfig();
+		serializationConfig.addSerializerConfig(serializerConfig);
+		this.serializationService = new DefaultSerializationServiceBuilder().setConfig(serializationConfig).build();
+		this.session = new MapSession();
+		for (int i = 0; i < this.attributeCount; i++) {
+			this.session.setAttribute("attribute" + i, "value" + i);
+		}
+		this.data = this.serializationService.toData(this.session);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.serializationService.dispose();
+	}
+
+	@Benchmark
+	public Data write() {
+		return this.serializationService.toData(this.session);
+	}
+
+	@Benchmark
+	public MapSession roundTrip() {
+		return this.serializationService.toObject(this.serializationService.toData(this.session));
+	}
+
+	@Benchmark
+	public MapSession read() {
+		return this.serializationService.toObject(this.data);
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.web.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+
+/**
+ * Benchmarks for wrapping a request and committing the session with
+ * {@link SessionRepositoryFilter}, backed by a {@link MapSessionRepository}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SessionRepositoryFilterBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean accessSession;
+
+	private SessionRepositoryFilter<MapSession> filter;
+
+	private FilterChain filterChain;
+
+	private Cookie sessionCookie;
+
+	@Setup
+	public void setup() {
+		MapSessionRepository sessionRepository = new MapSessionRepository(new ConcurrentHashMap<>());
+		MapSession session = sessionRepository.createSession();
+		session.setAttribute("user", "benchmark");
+		sessionRepository.save(session);
+		this.filter = new SessionRepositoryFilter<>(sessionRepository);
+		this.filterChain = (request, response) -> {
+			if (this.accessSession) {
+				((HttpServletRequest) request).getSession().getAttribute("user");
+			}
+		};
+		String cookieValue = Base64.getEncoder().encodeToString(session.getId().getBytes(StandardCharsets.UTF_8));
+		this.sessionCookie = new Cookie("SESSION", cookieValue);
+	}
+
+	@Benchmark
+	public MockHttpServletResponse doFilter() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setCookies(this.sessionCookie);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		this.filter.doFilter(request, response, this.filterChain);
+		return response;
+	}
+
+}
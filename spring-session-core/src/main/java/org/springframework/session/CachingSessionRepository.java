@@ -0,0 +1,498 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionRepository} that keeps the sessions recently loaded from another
+ * {@link SessionRepository} in a bounded local cache, so that {@link #findById(String)}
+ * does not access the session store on every request.
+ * <p>
+ * Whenever a session is saved or deleted through an instance, the other instances are
+ * notified through a {@link SessionInvalidationChannel} and evict it from their cache.
+ * Every notification also bumps a version stamp of the session id, and a session loaded
+ * from the delegate is only cached if the version did not change while it was being
+ * loaded, so that a concurrent notification cannot be missed. The version stamps are
+ * striped by session id, so that the notifications about other sessions rarely prevent
+ * a load from being cached. Entries are also evicted once they have been cached for
+ * longer than the time to live, which bounds the staleness if a notification is lost.
+ * <p>
+ * The cache holds the sessions of the delegate, whose attributes are only read when they
+ * are first accessed, so that the lazy deserialization of the delegate is preserved.
+ * The sessions returned by this repository are {@link CachedSession} instances that read
+ * through the cache and record the changes made to them. Saving a session that was not
+ * changed does not access the session store. Otherwise, the changes are applied to a
+ * session of the delegate, which is loaded again, and that session is saved and cached.
+ * This works best along with a {@link TouchGranularity}, so that most requests do not
+ * change the session.
+ * <p>
+ * Note that the attribute values of the cached sessions are shared, as with
+ * {@link MapSession}, and that this repository does not implement
+ * {@link FindByIndexNameSessionRepository}.
+ *
+ * @param <S> the {@link Session} type of the delegate
+ * @since 2.8.0
+ */
+public class CachingSessionRepository<S extends Session>
+		implements SessionRepository<CachingSessionRepository.CachedSession<S>> {
+
+	/**
+	 * The default maximum number of cached sessions.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/**
+	 * The default time a session is cached for.
+	 */
+	public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(30);
+
+	private static final char MESSAGE_SEPARATOR = ' ';
+
+	private static final int VERSION_STRIPES = 1024;
+
+	private final SessionRepository<S> sessionRepository;
+
+	private final SessionInvalidationChannel invalidationChannel;
+
+	private final String instanceId = UUID.randomUUID().toString();
+
+	private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+	private final LongAdder cacheHitCount = new LongAdder();
+
+	private final LongAdder cacheMissCount = new LongAdder();
+
+	private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			return size() > CachingSessionRepository.this.maxSize;
+		}
+
+	};
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private Duration timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	/**
+	 * Create a new instance.
+	 * @param sessionRepository the repository to cache the sessions of
+	 * @param invalidationChannel the channel used to notify the other instances
+	 */
+	public CachingSessionRepository(SessionRepository<S> sessionRepository,
+			SessionInvalidationChannel invalidationChannel) {
+		Assert.notNull(sessionRepository, "sessionRepository cannot be null");
+		Assert.notNull(invalidationChannel, "invalidationChannel cannot be null");
+		this.sessionRepository = sessionRepository;
+		this.invalidationChannel = invalidationChannel;
+		this.invalidationChannel.subscribe(this::onInvalidation);
+	}
+
+	/**
+	 * Set the maximum number of cached sessions. The least recently used sessions are
+	 * evicted first. Default is {@link #DEFAULT_MAX_SIZE}.
+	 * @param maxSize the maximum number of cached sessions
+	 */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Set the time a session is cached for. Default is {@link #DEFAULT_TIME_TO_LIVE}.
+	 * @param timeToLive the time to live
+	 */
+	public void setTimeToLive(Duration timeToLive) {
+		Assert.notNull(timeToLive, "timeToLive cannot be null");
+		Assert.isTrue(!timeToLive.isNegative() && !timeToLive.isZero(), "timeToLive must be positive");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Return the number of {@link #findById(String)} invocations served from the cache.
+	 * @return the number of cache hits
+	 */
+	public long getCacheHitCount() {
+		return this.cacheHitCount.sum();
+	}
+
+	/**
+	 * Return the number of {@link #findById(String)} invocations that accessed the
+	 * delegate.
+	 * @return the number of cache misses
+	 */
+	public long getCacheMissCount() {
+		return this.cacheMissCount.sum();
+	}
+
+	@Override
+	public CachedSession<S> createSession() {
+		S session = this.sessionRepository.createSession();
+		return new CachedSession<>(this, new MapSession(session), null, session, true);
+	}
+
+	@Override
+	public void save(CachedSession<S> session) {
+		if (!session.isNew() && !session.isChanged()) {
+			return;
+		}
+		String originalId = session.getOriginalId();
+		S delegate = session.getDelegate();
+		if (delegate == null) {
+			// deleted by another instance
+			evict(originalId);
+			return;
+		}
+		session.applyChanges(delegate);
+		this.sessionRepository.save(delegate);
+		// the delegate is handed over to the cache, the session loads another one if it
+		// is changed again
+		CacheEntry entry = new CacheEntry(delegate, expiresAt());
+		synchronized (this.cache) {
+			this.cache.remove(originalId);
+			this.cache.put(session.getId(), entry);
+		}
+		session.saved(entry);
+		publishInvalidation(originalId);
+		if (!originalId.equals(session.getId())) {
+			publishInvalidation(session.getId());
+		}
+	}
+
+	@Override
+	public CachedSession<S> findById(String id) {
+		CacheEntry entry = getCached(id);
+		if (entry != null) {
+			this.cacheHitCount.increment();
+			return new CachedSession<>(this, entry.newLocalSession(), entry, null, false);
+		}
+		this.cacheMissCount.increment();
+		int versionIndex = getVersionIndex(id);
+		long version = this.versions.get(versionIndex);
+		S session = this.sessionRepository.findById(id);
+		if (session == null) {
+			return null;
+		}
+		entry = new CacheEntry(session, expiresAt());
+		synchronized (this.cache) {
+			if (this.versions.get(versionIndex) == version) {
+				this.cache.put(id, entry);
+			}
+		}
+		return new CachedSession<>(this, entry.newLocalSession(), entry, null, false);
+	}
+
+	@Override
+	public void deleteById(String id) {
+		this.sessionRepository.deleteById(id);
+		evict(id);
+		publishInvalidation(id);
+	}
+
+	private CacheEntry getCached(String id) {
+		synchronized (this.cache) {
+			CacheEntry entry = this.cache.get(id);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expiresAt - System.nanoTime() <= 0 || entry.isExpired()) {
+				this.cache.remove(id);
+				return null;
+			}
+			return entry;
+		}
+	}
+
+	private void evict(String id) {
+		synchronized (this.cache) {
+			this.cache.remove(id);
+			this.versions.incrementAndGet(getVersionIndex(id));
+		}
+	}
+
+	private static int getVersionIndex(String id) {
+		return Math.floorMod(id.hashCode(), VERSION_STRIPES);
+	}
+
+	private long expiresAt() {
+		return System.nanoTime() + this.timeToLive.toNanos();
+	}
+
+	private void publishInvalidation(String sessionId) {
+		this.invalidationChannel.publish(this.instanceId + MESSAGE_SEPARATOR + sessionId);
+	}
+
+	private void onInvalidation(String message) {
+		int separatorIndex = message.indexOf(MESSAGE_SEPARATOR);
+		if (separatorIndex < 0 || this.instanceId.equals(message.substring(0, separatorIndex))) {
+			return;
+		}
+		evict(message.substring(separatorIndex + 1));
+	}
+
+	private S loadDelegate(String id) {
+		return this.sessionRepository.findById(id);
+	}
+
+	/**
+	 * A session of the delegate held by the cache. The metadata and the attribute names
+	 * are captured when the entry is created, while the attribute values are read from
+	 * the session when they are first accessed. The session is not handed out, and it is
+	 * only accessed while holding the lock of the entry.
+	 */
+	private static final class CacheEntry {
+
+		private final Session session;
+
+		private final long expiresAt;
+
+		private final String id;
+
+		private final Instant creationTime;
+
+		private final Instant lastAccessedTime;
+
+		private final Duration maxInactiveInterval;
+
+		private final Set<String> attributeNames;
+
+		private final Map<String, Object> attributes = new HashMap<>();
+
+		private CacheEntry(Session session, long expiresAt) {
+			this.session = session;
+			this.expiresAt = expiresAt;
+			this.id = session.getId();
+			this.creationTime = session.getCreationTime();
+			this.lastAccessedTime = session.getLastAccessedTime();
+			this.maxInactiveInterval = session.getMaxInactiveInterval();
+			this.attributeNames = Collections.unmodifiableSet(new HashSet<>(session.getAttributeNames()));
+		}
+
+		private synchronized Object getAttribute(String attributeName) {
+			if (!this.attributeNames.contains(attributeName)) {
+				return null;
+			}
+			return this.attributes.computeIfAbsent(attributeName, this.session::getAttribute);
+		}
+
+		private boolean isExpired() {
+			if (this.maxInactiveInterval.isNegative()) {
+				return false;
+			}
+			return Instant.now().minus(this.maxInactiveInterval).compareTo(this.lastAccessedTime) >= 0;
+		}
+
+		/**
+		 * Return a session with the metadata of this entry and no attributes, used to
+		 * record the changes of a {@link CachedSession}.
+		 */
+		private MapSession newLocalSession() {
+			MapSession session = new MapSession(this.id);
+			session.setCreationTime(this.creationTime);
+			session.setLastAccessedTime(this.lastAccessedTime);
+			session.setMaxInactiveInterval(this.maxInactiveInterval);
+			return session;
+		}
+
+	}
+
+	/**
+	 * A {@link Session} returned by {@link CachingSessionRepository} that reads the
+	 * attributes of a cached session and records the changes made to it, so that they
+	 * can be applied to a session of the delegate when it is saved.
+	 *
+	 * @param <S> the {@link Session} type of the delegate
+	 */
+	public static final class CachedSession<S extends Session> implements Session {
+
+		private final CachingSessionRepository<S> repository;
+
+		/**
+		 * Holds the metadata and the changed attributes, or all the attributes if there
+		 * is no cache entry.
+		 */
+		private MapSession local;
+
+		private CacheEntry entry;
+
+		private S delegate;
+
+		private boolean isNew;
+
+		private final Set<String> changedAttributeNames = new HashSet<>();
+
+		private boolean lastAccessedTimeChanged;
+
+		private boolean maxInactiveIntervalChanged;
+
+		private CachedSession(CachingSessionRepository<S> repository, MapSession local, CacheEntry entry,
+				S delegate, boolean isNew) {
+			this.repository = repository;
+			this.local = local;
+			this.entry = entry;
+			this.delegate = delegate;
+			this.isNew = isNew;
+		}
+
+		@Override
+		public String getId() {
+			return this.local.getId();
+		}
+
+		@Override
+		public String changeSessionId() {
+			S session = getDelegate();
+			if (session == null) {
+				throw new IllegalStateException("Session was deleted");
+			}
+			String changedId = session.changeSessionId();
+			this.local.setId(changedId);
+			return changedId;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T getAttribute(String attributeName) {
+			if (this.entry == null || this.changedAttributeNames.contains(attributeName)) {
+				return this.local.getAttribute(attributeName);
+			}
+			return (T) this.entry.getAttribute(attributeName);
+		}
+
+		@Override
+		public Set<String> getAttributeNames() {
+			if (this.entry == null) {
+				return this.local.getAttributeNames();
+			}
+			if (this.changedAttributeNames.isEmpty()) {
+				return this.entry.attributeNames;
+			}
+			Set<String> attributeNames = new HashSet<>(this.entry.attributeNames);
+			for (String attributeName : this.changedAttributeNames) {
+				if (this.local.getAttribute(attributeName) != null) {
+					attributeNames.add(attributeName);
+				}
+				else {
+					attributeNames.remove(attributeName);
+				}
+			}
+			return attributeNames;
+		}
+
+		@Override
+		public void setAttribute(String attributeName, Object attributeValue) {
+			this.local.setAttribute(attributeName, attributeValue);
+			this.changedAttributeNames.add(attributeName);
+		}
+
+		@Override
+		public void removeAttribute(String attributeName) {
+			this.local.removeAttribute(attributeName);
+			this.changedAttributeNames.add(attributeName);
+		}
+
+		@Override
+		public Instant getCreationTime() {
+			return this.local.getCreationTime();
+		}
+
+		@Override
+		public void setLastAccessedTime(Instant lastAccessedTime) {
+			this.local.setLastAccessedTime(lastAccessedTime);
+			this.lastAccessedTimeChanged = true;
+		}
+
+		@Override
+		public Instant getLastAccessedTime() {
+			return this.local.getLastAccessedTime();
+		}
+
+		@Override
+		public void setMaxInactiveInterval(Duration interval) {
+			this.local.setMaxInactiveInterval(interval);
+			this.maxInactiveIntervalChanged = true;
+		}
+
+		@Override
+		public Duration getMaxInactiveInterval() {
+			return this.local.getMaxInactiveInterval();
+		}
+
+		@Override
+		public boolean isExpired() {
+			return this.local.isExpired();
+		}
+
+		private String getOriginalId() {
+			return this.local.getOriginalId();
+		}
+
+		private boolean isNew() {
+			return this.isNew;
+		}
+
+		private boolean isChanged() {
+			return this.lastAccessedTimeChanged || this.maxInactiveIntervalChanged
+					|| !this.changedAttributeNames.isEmpty() || !getId().equals(getOriginalId());
+		}
+
+		private S getDelegate() {
+			if (this.delegate == null) {
+				this.delegate = this.repository.loadDelegate(getOriginalId());
+			}
+			return this.delegate;
+		}
+
+		private void applyChanges(S delegate) {
+			for (String attributeName : this.changedAttributeNames) {
+				delegate.setAttribute(attributeName, this.local.getAttribute(attributeName));
+			}
+			if (this.lastAccessedTimeChanged) {
+				delegate.setLastAccessedTime(this.local.getLastAccessedTime());
+			}
+			if (this.maxInactiveIntervalChanged) {
+				delegate.setMaxInactiveInterval(this.local.getMaxInactiveInterval());
+			}
+		}
+
+		private void saved(CacheEntry entry) {
+			this.local = entry.newLocalSession();
+			this.entry = entry;
+			this.delegate = null;
+			this.changedAttributeNames.clear();
+			this.lastAccessedTimeChanged = false;
+			this.maxInactiveIntervalChanged = false;
+			this.isNew = false;
+		}
+
+	}
+
+}
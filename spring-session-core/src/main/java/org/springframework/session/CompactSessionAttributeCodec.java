@@ -0,0 +1,528 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A {@link SessionAttributeCodec} that encodes the values of the registered types with a
+ * compact binary format, identifying each type with a one byte id instead of a class
+ * descriptor. The common JDK types, such as strings, boxed primitives, dates, and the
+ * {@link ArrayList}, {@link HashSet}, {@link LinkedHashSet}, {@link HashMap} and
+ * {@link LinkedHashMap} collections are registered by default, as well as the security
+ * context of Spring Security when it is on the classpath. Enum constants are encoded by
+ * name, and the other values fall back to JDK serialization.
+ * <p>
+ * Types are matched exactly, so subclasses of a registered type fall back to JDK
+ * serialization. Additional types can be registered with
+ * {@link #registerType(int, Class, ValueWriter, ValueReader)} before the codec is used,
+ * with the same ids on all the instances sharing a session store. Values written with
+ * JDK serialization, such as the ones stored before switching to this codec, can still be
+ * decoded.
+ *
+ * @since 2.8.0
+ */
+public class CompactSessionAttributeCodec implements SessionAttributeCodec {
+
+	/**
+	 * The smallest id of the types registered by applications.
+	 */
+	public static final int MIN_CUSTOM_TYPE_ID = 64;
+
+	/**
+	 * The largest id of the types registered by applications.
+	 */
+	public static final int MAX_CUSTOM_TYPE_ID = 255;
+
+	private static final int FORMAT_MARKER = 0xC5;
+
+	private static final int NULL = 0;
+
+	private static final int ENUM = 30;
+
+	private static final int SERIALIZED = 31;
+
+	private static final String SECURITY_CONTEXT_CLASS = "org.springframework.security.core.context.SecurityContextImpl";
+
+	private static final String WEB_AUTHENTICATION_DETAILS_CLASS = "org.springframework.security.web."
+			+ "authentication.WebAuthenticationDetails";
+
+	private final Map<Class<?>, Registration<?>> registrationsByType = new ConcurrentHashMap<>();
+
+	private final Registration<?>[] registrationsById = new Registration<?>[MAX_CUSTOM_TYPE_ID + 1];
+
+	private final ClassLoader classLoader;
+
+	/**
+	 * Create a new instance that uses the default class loader.
+	 */
+	public CompactSessionAttributeCodec() {
+		this(ClassUtils.getDefaultClassLoader());
+	}
+
+	/**
+	 * Create a new instance.
+	 * @param classLoader the class loader used to load the enum types and the values that
+	 * fall back to JDK serialization
+	 */
+	public CompactSessionAttributeCodec(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		registerJdkTypes();
+		if (ClassUtils.isPresent(SECURITY_CONTEXT_CLASS, classLoader)) {
+			SecurityAttributeTypes.registerCoreTypes(this);
+		}
+		if (ClassUtils.isPresent(WEB_AUTHENTICATION_DETAILS_CLASS, classLoader)) {
+			SecurityAttributeTypes.registerWebTypes(this);
+		}
+	}
+
+	/**
+	 * Register a type to be encoded with the provided writer and decoded with the provided
+	 * reader. The writer can encode nested values with {@link Output#writeValue(Object)}.
+	 * @param typeId the id of the type, between {@link #MIN_CUSTOM_TYPE_ID} and
+	 * {@link #MAX_CUSTOM_TYPE_ID}
+	 * @param type the type
+	 * @param writer the writer
+	 * @param reader the reader
+	 * @param <T> the type
+	 */
+	public <T> void registerType(int typeId, Class<T> type, ValueWriter<? super T> writer,
+			ValueReader<? extends T> reader) {
+		Assert.isTrue(typeId >= MIN_CUSTOM_TYPE_ID && typeId <= MAX_CUSTOM_TYPE_ID,
+				() -> "typeId must be between " + MIN_CUSTOM_TYPE_ID + " and " + MAX_CUSTOM_TYPE_ID);
+		register(typeId, type, writer, reader);
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (Output output = new Output(bytes)) {
+			output.write(FORMAT_MARKER);
+			output.writeValue(value);
+		}
+		catch (IOException ex) {
+			throw new SerializationFailedException("Failed to encode " + ClassUtils.getDescriptiveType(value), ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Object decode(byte[] bytes) {
+		try {
+			if (bytes.length > 0 && (bytes[0] & 0xFF) == FORMAT_MARKER) {
+				return new Input(new ByteArrayInputStream(bytes, 1, bytes.length - 1)).readValue();
+			}
+			// written with JDK serialization
+			return readSerialized(new ByteArrayInputStream(bytes));
+		}
+		catch (IOException ex) {
+			throw new SerializationFailedException("Failed to decode the attribute value", ex);
+		}
+	}
+
+	<T> void register(int typeId, Class<T> type, ValueWriter<? super T> writer, ValueReader<? extends T> reader) {
+		Assert.notNull(type, "type cannot be null");
+		Assert.notNull(writer, "writer cannot be null");
+		Assert.notNull(reader, "reader cannot be null");
+		Assert.isNull(this.registrationsById[typeId], () -> "typeId " + typeId + " is already registered");
+		Assert.isTrue(!this.registrationsByType.containsKey(type), () -> type + " is already registered");
+		Registration<T> registration = new Registration<>(typeId, writer, reader);
+		this.registrationsById[typeId] = registration;
+		this.registrationsByType.put(type, registration);
+	}
+
+	private void registerJdkTypes() {
+		register(1, String.class, (value, output) -> output.writeString(value), Input::readString);
+		register(2, Boolean.class, (value, output) -> output.writeBoolean(value), DataInputStream::readBoolean);
+		register(3, Integer.class, (value, output) -> output.writeVarLong(value), (input) -> (int) input.readVarLong());
+		register(4, Long.class, (value, output) -> output.writeVarLong(value), Input::readVarLong);
+		register(5, Short.class, (value, output) -> output.writeShort(value), DataInputStream::readShort);
+		register(6, Byte.class, (value, output) -> output.writeByte(value), DataInputStream::readByte);
+		register(7, Character.class, (value, output) -> output.writeChar(value), DataInputStream::readChar);
+		register(8, Float.class, (value, output) -> output.writeFloat(value), DataInputStream::readFloat);
+		register(9, Double.class, (value, output) -> output.writeDouble(value), DataInputStream::readDouble);
+		register(10, byte[].class, (value, output) -> output.writeByteArray(value), Input::readByteArray);
+		register(11, BigInteger.class, (value, output) -> output.writeByteArray(value.toByteArray()),
+				(input) -> new BigInteger(input.readByteArray()));
+		register(12, BigDecimal.class, (value, output) -> {
+			output.writeByteArray(value.unscaledValue().toByteArray());
+			output.writeVarLong(value.scale());
+		}, (input) -> new BigDecimal(new BigInteger(input.readByteArray()), (int) input.readVarLong()));
+		register(13, UUID.class, (value, output) -> {
+			output.writeLong(value.getMostSignificantBits());
+			output.writeLong(value.getLeastSignificantBits());
+		}, (input) -> new UUID(input.readLong(), input.readLong()));
+		register(14, Instant.class, (value, output) -> {
+			output.writeVarLong(value.getEpochSecond());
+			output.writeVarLong(value.getNano());
+		}, (input) -> Instant.ofEpochSecond(input.readVarLong(), input.readVarLong()));
+		register(15, Duration.class, (value, output) -> {
+			output.writeVarLong(value.getSeconds());
+			output.writeVarLong(value.getNano());
+		}, (input) -> Duration.ofSeconds(input.readVarLong(), input.readVarLong()));
+		register(16, Date.class, (value, output) -> output.writeVarLong(value.getTime()),
+				(input) -> new Date(input.readVarLong()));
+		register(17, Locale.class, (value, output) -> output.writeString(value.toLanguageTag()),
+				(input) -> Locale.forLanguageTag(input.readString()));
+		register(18, ArrayList.class, (value, output) -> output.writeCollection(value),
+				(input) -> input.readCollection(ArrayList::new));
+		register(19, HashSet.class, (value, output) -> output.writeCollection(value),
+				(input) -> input.readCollection(HashSet::new));
+		register(20, LinkedHashSet.class, (value, output) -> output.writeCollection(value),
+				(input) -> input.readCollection(LinkedHashSet::new));
+		register(21, HashMap.class, (value, output) -> output.writeMap(value), (input) -> input.readMap(HashMap::new));
+		register(22, LinkedHashMap.class, (value, output) -> output.writeMap(value),
+				(input) -> input.readMap(LinkedHashMap::new));
+	}
+
+	private Registration<?> getRegistration(Class<?> type) {
+		return this.registrationsByType.get(type);
+	}
+
+	private Object readSerialized(InputStream inputStream) throws IOException {
+		try (ObjectInputStream objectInputStream = new ConfigurableObjectInputStream(inputStream, this.classLoader)) {
+			return objectInputStream.readObject();
+		}
+		catch (ClassNotFoundException ex) {
+			throw new IOException("Failed to deserialize the attribute value", ex);
+		}
+	}
+
+	/**
+	 * Writes a value of a registered type.
+	 *
+	 * @param <T> the type
+	 */
+	@FunctionalInterface
+	public interface ValueWriter<T> {
+
+		/**
+		 * Write the provided value.
+		 * @param value the value, never {@code null}
+		 * @param output the output
+		 * @throws IOException if the value cannot be written
+		 */
+		void write(T value, Output output) throws IOException;
+
+	}
+
+	/**
+	 * Reads a value of a registered type.
+	 *
+	 * @param <T> the type
+	 */
+	@FunctionalInterface
+	public interface ValueReader<T> {
+
+		/**
+		 * Read a value.
+		 * @param input the input
+		 * @return the value
+		 * @throws IOException if the value cannot be read
+		 */
+		T read(Input input) throws IOException;
+
+	}
+
+	/**
+	 * The output used to encode the values.
+	 */
+	public final class Output extends DataOutputStream {
+
+		private Output(OutputStream outputStream) {
+			super(outputStream);
+		}
+
+		/**
+		 * Write a value of any type, prefixed with its type id.
+		 * @param value the value, possibly {@code null}
+		 * @throws IOException if the value cannot be written
+		 */
+		@SuppressWarnings("unchecked")
+		public void writeValue(Object value) throws IOException {
+			if (value == null) {
+				write(NULL);
+				return;
+			}
+			Registration<Object> registration = (Registration<Object>) getRegistration(value.getClass());
+			if (registration != null) {
+				write(registration.typeId);
+				registration.writer.write(value, this);
+			}
+			else if (value instanceof Enum) {
+				Enum<?> constant = (Enum<?>) value;
+				write(ENUM);
+				writeString(constant.getDeclaringClass().getName());
+				writeString(constant.name());
+			}
+			else {
+				write(SERIALIZED);
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+				try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+					objectOutputStream.writeObject(value);
+				}
+				writeByteArray(bytes.toByteArray());
+			}
+		}
+
+		/**
+		 * Write a signed integer with a variable length encoding, using a single byte for
+		 * the values between -64 and 63.
+		 * @param value the value
+		 * @throws IOException if the value cannot be written
+		 */
+		public void writeVarLong(long value) throws IOException {
+			long zigZag = (value << 1) ^ (value >> 63);
+			while ((zigZag & ~0x7FL) != 0) {
+				write((int) ((zigZag & 0x7F) | 0x80));
+				zigZag >>>= 7;
+			}
+			write((int) zigZag);
+		}
+
+		/**
+		 * Write a byte array prefixed with its length.
+		 * @param bytes the bytes
+		 * @throws IOException if the bytes cannot be written
+		 */
+		public void writeByteArray(byte[] bytes) throws IOException {
+			writeVarLong(bytes.length);
+			write(bytes);
+		}
+
+		/**
+		 * Write a string as UTF-8, prefixed with its length. Unlike
+		 * {@link #writeUTF(String)}, the length is not limited.
+		 * @param value the string
+		 * @throws IOException if the string cannot be written
+		 */
+		public void writeString(String value) throws IOException {
+			writeByteArray(value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * Write the elements of a collection, prefixed with its size.
+		 * @param collection the collection
+		 * @throws IOException if an element cannot be written
+		 */
+		public void writeCollection(Collection<?> collection) throws IOException {
+			writeVarLong(collection.size());
+			for (Object element : collection) {
+				writeValue(element);
+			}
+		}
+
+		/**
+		 * Write the entries of a map, prefixed with its size.
+		 * @param map the map
+		 * @throws IOException if an entry cannot be written
+		 */
+		public void writeMap(Map<?, ?> map) throws IOException {
+			writeVarLong(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(entry.getKey());
+				writeValue(entry.getValue());
+			}
+		}
+
+	}
+
+	/**
+	 * The input used to decode the values.
+	 */
+	public final class Input extends DataInputStream {
+
+		private Input(InputStream inputStream) {
+			super(inputStream);
+		}
+
+		/**
+		 * Read a value written by {@link Output#writeValue(Object)}.
+		 * @return the value, possibly {@code null}
+		 * @throws IOException if the value cannot be read
+		 */
+		public Object readValue() throws IOException {
+			int typeId = read();
+			switch (typeId) {
+				case -1:
+					throw new EOFException();
+				case NULL:
+					return null;
+				case ENUM:
+					return readEnum();
+				case SERIALIZED:
+					return readSerialized(new ByteArrayInputStream(readByteArray()));
+				default:
+					Registration<?> registration = CompactSessionAttributeCodec.this.registrationsById[typeId];
+					if (registration == null) {
+						throw new StreamCorruptedException("Unknown type id " + typeId);
+					}
+					return registration.reader.read(this);
+			}
+		}
+
+		/**
+		 * Read a signed integer written by {@link Output#writeVarLong(long)}.
+		 * @return the value
+		 * @throws IOException if the value cannot be read
+		 */
+		public long readVarLong() throws IOException {
+			long zigZag = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readUnsignedByte();
+				zigZag |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return (zigZag >>> 1) ^ -(zigZag & 1);
+				}
+			}
+			throw new StreamCorruptedException("Malformed variable length integer");
+		}
+
+		/**
+		 * Read a byte array written by {@link Output#writeByteArray(byte[])}.
+		 * @return the bytes
+		 * @throws IOException if the bytes cannot be read
+		 */
+		public byte[] readByteArray() throws IOException {
+			long length = readVarLong();
+			if (length < 0 || length > available()) {
+				throw new StreamCorruptedException("Invalid length " + length);
+			}
+			byte[] bytes = new byte[(int) length];
+			readFully(bytes);
+			return bytes;
+		}
+
+		/**
+		 * Read a string written by {@link Output#writeString(String)}.
+		 * @return the string
+		 * @throws IOException if the string cannot be read
+		 */
+		public String readString() throws IOException {
+			return new String(readByteArray(), StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Read the elements written by {@link Output#writeCollection(Collection)}.
+		 * @param collectionFactory the factory of the collection, given the size
+		 * @param <C> the type of the collection
+		 * @return the collection
+		 * @throws IOException if an element cannot be read
+		 */
+		public <C extends Collection<Object>> C readCollection(IntFunction<C> collectionFactory) throws IOException {
+			int size = readSize();
+			C collection = collectionFactory.apply(size);
+			for (int i = 0; i < size; i++) {
+				collection.add(readValue());
+			}
+			return collection;
+		}
+
+		/**
+		 * Read the entries written by {@link Output#writeMap(Map)}.
+		 * @param mapFactory the factory of the map, given the size
+		 * @param <M> the type of the map
+		 * @return the map
+		 * @throws IOException if an entry cannot be read
+		 */
+		public <M extends Map<Object, Object>> M readMap(IntFunction<M> mapFactory) throws IOException {
+			int size = readSize();
+			M map = mapFactory.apply(size);
+			for (int i = 0; i < size; i++) {
+				map.put(readValue(), readValue());
+			}
+			return map;
+		}
+
+		private int readSize() throws IOException {
+			long size = readVarLong();
+			// every element takes at least one byte
+			if (size < 0 || size > available()) {
+				throw new StreamCorruptedException("Invalid size " + size);
+			}
+			return (int) size;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Object readEnum() throws IOException {
+			String className = readString();
+			String name = readString();
+			Class<?> type;
+			try {
+				type = ClassUtils.forName(className, CompactSessionAttributeCodec.this.classLoader);
+			}
+			catch (ClassNotFoundException ex) {
+				throw new IOException("Failed to load enum " + className, ex);
+			}
+			if (!type.isEnum()) {
+				throw new InvalidObjectException(className + " is not an enum");
+			}
+			return Enum.valueOf((Class) type, name);
+		}
+
+	}
+
+	private static final class Registration<T> {
+
+		private final int typeId;
+
+		private final ValueWriter<? super T> writer;
+
+		private final ValueReader<? extends T> reader;
+
+		private Registration(int typeId, ValueWriter<? super T> writer, ValueReader<? extends T> reader) {
+			this.typeId = typeId;
+			this.writer = writer;
+			this.reader = reader;
+		}
+
+	}
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionAttributeCodec} that compresses the values encoded by another
+ * {@link SessionAttributeCodec} with Deflate once they reach a
+ * {@link #setThreshold(int) size threshold}, so that large attributes, such as security
+ * contexts or shopping carts, take less space in the session store and less bandwidth on
+ * every read.
+ * <p>
+ * Compressed values start with a header byte, followed by their uncompressed length and
+ * the compressed bytes. Values without the header byte are decoded by the delegate, so
+ * that the values written before enabling the compression can still be read. The
+ * delegate must therefore never produce values starting with that byte, which is the case
+ * of {@link JdkSessionAttributeCodec} and {@link CompactSessionAttributeCodec}. Values
+ * are only stored compressed if that makes them smaller.
+ * <p>
+ * The number of compressed values and their size before and after compression are
+ * recorded, and can be published with
+ * {@link org.springframework.session.metrics.CompressionMetrics}.
+ *
+ * @since 2.8.0
+ */
+public class CompressingSessionAttributeCodec implements SessionAttributeCodec {
+
+	/**
+	 * The default size in bytes from which values are compressed.
+	 */
+	public static final int DEFAULT_THRESHOLD = 2048;
+
+	private static final int COMPRESSED_MARKER = 0xDF;
+
+	private static final int HEADER_SIZE = 5;
+
+	private final SessionAttributeCodec delegate;
+
+	private final LongAdder compressedCount = new LongAdder();
+
+	private final LongAdder uncompressedBytes = new LongAdder();
+
+	private final LongAdder compressedBytes = new LongAdder();
+
+	private int threshold = DEFAULT_THRESHOLD;
+
+	private int compressionLevel = Deflater.BEST_SPEED;
+
+	/**
+	 * Create a new instance.
+	 * @param delegate the codec used to encode the values before compressing them
+	 */
+	public CompressingSessionAttributeCodec(SessionAttributeCodec delegate) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Set the size in bytes of the encoded values from which they are compressed. Default
+	 * is {@link #DEFAULT_THRESHOLD}.
+	 * @param threshold the threshold
+	 */
+	public void setThreshold(int threshold) {
+		Assert.isTrue(threshold >= 0, "threshold cannot be negative");
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Set the Deflate compression level, from {@link Deflater#BEST_SPEED} to
+	 * {@link Deflater#BEST_COMPRESSION}. Default is {@link Deflater#BEST_SPEED}.
+	 * @param compressionLevel the compression level
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		Assert.isTrue(compressionLevel >= Deflater.BEST_SPEED && compressionLevel <= Deflater.BEST_COMPRESSION,
+				"compressionLevel must be between 1 and 9");
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Return the number of values that were stored compressed.
+	 * @return the number of compressed values
+	 */
+	public long getCompressedCount() {
+		return this.compressedCount.sum();
+	}
+
+	/**
+	 * Return the total size in bytes of the compressed values before compression.
+	 * @return the number of bytes
+	 */
+	public long getUncompressedBytes() {
+		return this.uncompressedBytes.sum();
+	}
+
+	/**
+	 * Return the total size in bytes of the compressed values after compression,
+	 * including their header.
+	 * @return the number of bytes
+	 */
+	public long getCompressedBytes() {
+		return this.compressedBytes.sum();
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		byte[] encoded = this.delegate.encode(value);
+		if (encoded.length < this.threshold) {
+			return encoded;
+		}
+		byte[] compressed = compress(encoded);
+		if (compressed == null) {
+			return encoded;
+		}
+		this.compressedCount.increment();
+		this.uncompressedBytes.add(encoded.length);
+		this.compressedBytes.add(compressed.length);
+		return compressed;
+	}
+
+	@Override
+	public Object decode(byte[] bytes) {
+		if (bytes.length < HEADER_SIZE || (bytes[0] & 0xFF) != COMPRESSED_MARKER) {
+			return this.delegate.decode(bytes);
+		}
+		return this.delegate.decode(decompress(bytes));
+	}
+
+	private byte[] compress(byte[] bytes) {
+		Deflater deflater = new Deflater(this.compressionLevel);
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+			output.write(COMPRESSED_MARKER);
+			output.write(bytes.length >>> 24);
+			output.write(bytes.length >>> 16);
+			output.write(bytes.length >>> 8);
+			output.write(bytes.length);
+			byte[] buffer = new byte[Math.min(bytes.length, 8192)];
+			while (!deflater.finished()) {
+				output.write(buffer, 0, deflater.deflate(buffer));
+				if (output.size() >= bytes.length) {
+					// not worth it
+					return null;
+				}
+			}
+			return output.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] decompress(byte[] bytes) {
+		int length = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8)
+				| (bytes[4] & 0xFF);
+		// Deflate cannot compress more than about 1032:1
+		if (length < 0 || length > (bytes.length - HEADER_SIZE) * 1032L) {
+			throw new SerializationFailedException("Invalid uncompressed length " + length);
+		}
+		byte[] decompressed = new byte[length];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+			int offset = 0;
+			while (!inflater.finished()) {
+				int count = inflater.inflate(decompressed, offset, length - offset);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary() || offset == length)) {
+					break;
+				}
+				offset += count;
+			}
+			// the stream must end, with a valid checksum, exactly after the declared length
+			if (offset != length || !inflater.finished()) {
+				throw new SerializationFailedException("Truncated or corrupted compressed value");
+			}
+			return decompressed;
+		}
+		catch (DataFormatException ex) {
+			throw new SerializationFailedException("Corrupted compressed value", ex);
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+}
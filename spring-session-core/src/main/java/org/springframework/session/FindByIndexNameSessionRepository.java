@@ -16,7 +16,9 @@
 
 package org.springframework.session;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Extends a basic {@link SessionRepository} to allow finding sessions by the specified
@@ -61,6 +63,52 @@ public interface FindByIndexNameSessionRepository<S extends Session> extends Ses
 	 */
 	Map<String, S> findByIndexNameAndIndexValue(String indexName, String indexValue);
 
+	/**
+	 * Find at most {@code limit} sessions that contain the specified index name and index
+	 * value. Which sessions are returned when there are more than {@code limit} is not
+	 * specified.
+	 *
+	 * @param indexName the name of the index (i.e.
+	 * {@link FindByIndexNameSessionRepository#PRINCIPAL_NAME_INDEX_NAME})
+	 * @param indexValue the value of the index to search for
+	 * @param limit the maximum number of sessions to return
+	 * @return a {@code Map} (never {@code null}) of the session id to the {@code Session}
+	 * @since 2.8.0
+	 * @see #streamByIndexNameAndIndexValue(String, String)
+	 */
+	default Map<String, S> findByIndexNameAndIndexValue(String indexName, String indexValue, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("limit must be greater than 0");
+		}
+		Map<String, S> sessions = new LinkedHashMap<>();
+		try (Stream<S> stream = streamByIndexNameAndIndexValue(indexName, indexValue)) {
+			stream.limit(limit).forEach((session) -> sessions.put(session.getId(), session));
+		}
+		return sessions;
+	}
+
+	/**
+	 * Return a {@link Stream} of the sessions that contain the specified index name and
+	 * index value. Implementations may load the sessions lazily, in batches, as the
+	 * stream is consumed, so that a short-circuiting operation such as
+	 * {@link Stream#limit(long)} does not load every session. The returned stream should
+	 * be closed once consumed, for example using try-with-resources, so that the
+	 * resources it holds are released.
+	 * <p>
+	 * The default implementation streams the result of
+	 * {@link #findByIndexNameAndIndexValue(String, String)}.
+	 *
+	 * @param indexName the name of the index (i.e.
+	 * {@link FindByIndexNameSessionRepository#PRINCIPAL_NAME_INDEX_NAME})
+	 * @param indexValue the value of the index to search for
+	 * @return a {@code Stream} (never {@code null}) of the sessions that contain the
+	 * specified index name and index value
+	 * @since 2.8.0
+	 */
+	default Stream<S> streamByIndexNameAndIndexValue(String indexName, String indexValue) {
+		return findByIndexNameAndIndexValue(indexName, indexValue).values().stream();
+	}
+
 	/**
 	 * Find a {@link Map} of the session id to the {@link Session} of all sessions that
 	 * contain the index with the name
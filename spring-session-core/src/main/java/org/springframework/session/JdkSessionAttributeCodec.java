@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+/**
+ * A {@link SessionAttributeCodec} that uses JDK serialization, as the session stores do by
+ * default. The attribute values must be {@link java.io.Serializable}.
+ *
+ * @since 2.8.0
+ */
+public class JdkSessionAttributeCodec implements SessionAttributeCodec {
+
+	private final SerializingConverter serializer = new SerializingConverter();
+
+	private final DeserializingConverter deserializer;
+
+	/**
+	 * Create a new instance that uses the default class loader.
+	 */
+	public JdkSessionAttributeCodec() {
+		this.deserializer = new DeserializingConverter();
+	}
+
+	/**
+	 * Create a new instance.
+	 * @param classLoader the class loader used to load the classes of the values
+	 */
+	public JdkSessionAttributeCodec(ClassLoader classLoader) {
+		this.deserializer = new DeserializingConverter(classLoader);
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		return this.serializer.convert(value);
+	}
+
+	@Override
+	public Object decode(byte[] bytes) {
+		return this.deserializer.convert(bytes);
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionInvalidationChannel} that delivers the messages to the subscribers
+ * registered in the same JVM, synchronously. It is intended for a single instance
+ * application or for tests.
+ *
+ * @since 2.8.0
+ */
+public class LocalSessionInvalidationChannel implements SessionInvalidationChannel {
+
+	private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void publish(String message) {
+		for (Consumer<String> listener : this.listeners) {
+			listener.accept(message);
+		}
+	}
+
+	@Override
+	public void subscribe(Consumer<String> listener) {
+		Assert.notNull(listener, "listener cannot be null");
+		this.listeners.add(listener);
+	}
+
+}
@@ -19,6 +19,7 @@ package org.springframework.session;
 import java.io.Serializable;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -42,6 +43,14 @@ import java.util.UUID;
  * when working on multiple threads.
  * </p>
  *
+ * <p>
+ * Copying a {@link MapSession} shares the attributes of the copied session, which are
+ * only copied once either session modifies them. The set returned by
+ * {@link #getAttributeNames()} is an unmodifiable snapshot of the attribute names that
+ * is not affected by subsequent modifications of the attributes. It is reused until the
+ * attributes are modified.
+ * </p>
+ *
  * @author Rob Winch
  * @author Vedran Pavic
  * @since 1.0
@@ -68,6 +77,18 @@ public final class MapSession implements Session, Serializable {
 	 */
 	private Map<String, Object> sessionAttrs = new HashMap<>();
 
+	/**
+	 * Whether {@link #sessionAttrs} may be referenced by another session, in which case it
+	 * is copied before being modified.
+	 */
+	private transient boolean sessionAttrsShared;
+
+	/**
+	 * The snapshot of the attribute names returned by {@link #getAttributeNames()},
+	 * discarded when the attributes are modified.
+	 */
+	private transient Set<String> attributeNames;
+
 	/**
 	 * 创建时间。创建 MapSession 的时候就会自动赋予。
 	 */
@@ -128,11 +149,22 @@ public final class MapSession implements Session, Serializable {
 		this.originalId = this.id;
 
 		// 保存会话属性
-		this.sessionAttrs = new HashMap<>(session.getAttributeNames().size());
-		for (String attrName : session.getAttributeNames()) {
-			Object attrValue = session.getAttribute(attrName);
-			if (attrValue != null) {
-				this.sessionAttrs.put(attrName, attrValue);
+		if (session instanceof MapSession) {
+			MapSession mapSession = (MapSession) session;
+			this.sessionAttrs = mapSession.sessionAttrs;
+			this.sessionAttrsShared = true;
+			mapSession.sessionAttrsShared = true;
+			// the snapshot is immutable and matches the shared attributes
+			this.attributeNames = mapSession.attributeNames;
+		}
+		else {
+			Set<String> attrNames = session.getAttributeNames();
+			this.sessionAttrs = new HashMap<>(attrNames.size());
+			for (String attrName : attrNames) {
+				Object attrValue = session.getAttribute(attrName);
+				if (attrValue != null) {
+					this.sessionAttrs.put(attrName, attrValue);
+				}
 			}
 		}
 
@@ -213,7 +245,10 @@ public final class MapSession implements Session, Serializable {
 
 	@Override
 	public Set<String> getAttributeNames() {
-		return new HashSet<>(this.sessionAttrs.keySet());
+		if (this.attributeNames == null) {
+			this.attributeNames = Collections.unmodifiableSet(new HashSet<>(this.sessionAttrs.keySet()));
+		}
+		return this.attributeNames;
 	}
 
 	@Override
@@ -221,13 +256,15 @@ public final class MapSession implements Session, Serializable {
 		if (attributeValue == null) {
 			removeAttribute(attributeName);
 		} else {
-			this.sessionAttrs.put(attributeName, attributeValue);
+			getMutableSessionAttrs().put(attributeName, attributeValue);
 		}
 	}
 
 	@Override
 	public void removeAttribute(String attributeName) {
-		this.sessionAttrs.remove(attributeName);
+		if (this.sessionAttrs.containsKey(attributeName)) {
+			getMutableSessionAttrs().remove(attributeName);
+		}
 	}
 
 	/**
@@ -261,6 +298,15 @@ public final class MapSession implements Session, Serializable {
 		return this.id.hashCode();
 	}
 
+	private Map<String, Object> getMutableSessionAttrs() {
+		if (this.sessionAttrsShared) {
+			this.sessionAttrs = new HashMap<>(this.sessionAttrs);
+			this.sessionAttrsShared = false;
+		}
+		this.attributeNames = null;
+		return this.sessionAttrs;
+	}
+
 	private static String generateId() {
 		return UUID.randomUUID().toString();
 	}
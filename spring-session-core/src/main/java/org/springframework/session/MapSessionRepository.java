@@ -17,28 +17,49 @@
 package org.springframework.session;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.session.events.SessionDeletedEvent;
 import org.springframework.session.events.SessionExpiredEvent;
 
 /**
  * A {@link SessionRepository} backed by a {@link java.util.Map} and that uses a
  * {@link MapSession}. The injected {@link java.util.Map} can be backed by a distributed
- * NoSQL store like Hazelcast, for instance. Note that the supplied map itself is
- * responsible for purging the expired sessions.
+ * NoSQL store like Hazelcast, for instance.
  * <p>
  * 这是一个以 Map 作为存储的 SessionRepository，并且使用 MapSession。
  *
  * <p>
- * The implementation does NOT support firing {@link SessionDeletedEvent} or
- * {@link SessionExpiredEvent}.
+ * Expired sessions are only removed when they are looked up, unless a
+ * {@link #setCleanupInterval(Duration) cleanup interval} is set, in which case they are
+ * also removed in the background, incrementally. The cleanup relies on an index of the
+ * expiration times of the sessions saved through this repository and of the sessions in
+ * the map when the repository is created, so that it only accesses the expired
+ * sessions. The number of sessions can also be bounded with {@link #setMaxSessions(int)},
+ * in which case sessions are evicted according to the {@link SessionEvictionPolicy} when
+ * the limit is reached.
+ * </p>
+ *
+ * <p>
+ * If an {@link ApplicationEventPublisher} is set, a {@link SessionExpiredEvent} is
+ * published for the expired sessions that are removed and a {@link SessionDeletedEvent}
+ * for the sessions that are deleted or evicted. Otherwise no events are published.
  * </p>
  *
  * @author Rob Winch
  * @since 1.0
  */
-public class MapSessionRepository implements SessionRepository<MapSession> {
+public class MapSessionRepository implements SessionRepository<MapSession>, AutoCloseable {
 
 	/**
 	 * If non-null, this value is used to override
@@ -48,6 +69,20 @@ public class MapSessionRepository implements SessionRepository<MapSession> {
 
 	private final Map<String, Session> sessions;
 
+	private final SessionExpiryIndex expiryIndex = new SessionExpiryIndex();
+
+	private ApplicationEventPublisher eventPublisher;
+
+	private int maxSessions;
+
+	private SessionEvictionPolicy evictionPolicy = SessionEvictionPolicy.LEAST_RECENTLY_USED;
+
+	private Duration cleanupTimeBudget = Duration.ZERO;
+
+	private ScheduledExecutorService cleanupExecutor;
+
+	private ScheduledFuture<?> cleanupTask;
+
 	/**
 	 * Creates a new instance backed by the provided {@link java.util.Map}. This allows
 	 * injecting a distributed {@link java.util.Map}.
@@ -59,6 +94,7 @@ public class MapSessionRepository implements SessionRepository<MapSession> {
 			throw new IllegalArgumentException("sessions cannot be null");
 		}
 		this.sessions = sessions;
+		this.sessions.values().forEach(this.expiryIndex::update);
 	}
 
 	/**
@@ -72,14 +108,114 @@ public class MapSessionRepository implements SessionRepository<MapSession> {
 		this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
 	}
 
+	/**
+	 * Sets the {@link ApplicationEventPublisher} that is used to publish
+	 * {@link SessionExpiredEvent} and {@link SessionDeletedEvent}. The default is to not
+	 * publish any event.
+	 *
+	 * @param applicationEventPublisher the {@link ApplicationEventPublisher} to use.
+	 *                                  Cannot be null.
+	 * @since 2.8.0
+	 */
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		if (applicationEventPublisher == null) {
+			throw new IllegalArgumentException("applicationEventPublisher cannot be null");
+		}
+		this.eventPublisher = applicationEventPublisher;
+	}
+
+	/**
+	 * Sets the maximum number of sessions. When a new session is saved while the limit is
+	 * reached, the expired sessions are removed first, then about one percent of the
+	 * sessions is evicted according to the {@link #setEvictionPolicy eviction policy}. The
+	 * default is 0, which means no limit.
+	 *
+	 * @param maxSessions the maximum number of sessions
+	 * @since 2.8.0
+	 */
+	public void setMaxSessions(int maxSessions) {
+		if (maxSessions < 0) {
+			throw new IllegalArgumentException("maxSessions cannot be negative");
+		}
+		this.maxSessions = maxSessions;
+	}
+
+	/**
+	 * Sets which sessions are evicted when the {@link #setMaxSessions(int) maximum number
+	 * of sessions} is reached. The default is
+	 * {@link SessionEvictionPolicy#LEAST_RECENTLY_USED}.
+	 *
+	 * @param evictionPolicy the eviction policy. Cannot be null.
+	 * @since 2.8.0
+	 */
+	public void setEvictionPolicy(SessionEvictionPolicy evictionPolicy) {
+		if (evictionPolicy == null) {
+			throw new IllegalArgumentException("evictionPolicy cannot be null");
+		}
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	/**
+	 * Sets the maximum duration of a single cleanup run. Once exceeded, the run stops and
+	 * the next run resumes from where it stopped. The default is {@link Duration#ZERO},
+	 * which means that every run checks all the sessions.
+	 *
+	 * @param cleanupTimeBudget the cleanup time budget. Cannot be null.
+	 * @since 2.8.0
+	 */
+	public void setCleanupTimeBudget(Duration cleanupTimeBudget) {
+		if (cleanupTimeBudget == null || cleanupTimeBudget.isNegative()) {
+			throw new IllegalArgumentException("cleanupTimeBudget cannot be null or negative");
+		}
+		this.cleanupTimeBudget = cleanupTimeBudget;
+	}
+
+	/**
+	 * Sets the interval at which {@link #cleanUpExpiredSessions()} is invoked on a
+	 * background thread, which is stopped by {@link #close()}. The default is
+	 * {@link Duration#ZERO}, which means that expired sessions are only removed when they
+	 * are looked up.
+	 *
+	 * @param cleanupInterval the cleanup interval. Cannot be null.
+	 * @since 2.8.0
+	 */
+	public synchronized void setCleanupInterval(Duration cleanupInterval) {
+		if (cleanupInterval == null || cleanupInterval.isNegative()) {
+			throw new IllegalArgumentException("cleanupInterval cannot be null or negative");
+		}
+		if (this.cleanupTask != null) {
+			this.cleanupTask.cancel(false);
+			this.cleanupTask = null;
+		}
+		if (cleanupInterval.isZero()) {
+			return;
+		}
+		if (this.cleanupExecutor == null) {
+			this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+				Thread thread = new Thread(runnable, "spring-session-map-cleanup");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		long interval = cleanupInterval.toMillis();
+		this.cleanupTask = this.cleanupExecutor.scheduleWithFixedDelay(this::cleanUpExpiredSessions, interval,
+				interval, TimeUnit.MILLISECONDS);
+	}
+
 	@Override
 	public void save(MapSession session) {
 		// 如果 session 当前的 id 与初始 id 不相等
 		if (!session.getId().equals(session.getOriginalId())) {
 			// 删除
 			this.sessions.remove(session.getOriginalId());
+			this.expiryIndex.remove(session.getOriginalId());
+		}
+		else if (this.maxSessions > 0 && this.sessions.size() >= this.maxSessions
+				&& !this.sessions.containsKey(session.getId())) {
+			makeRoom();
 		}
 		this.sessions.put(session.getId(), new MapSession(session));
+		this.expiryIndex.update(session);
 	}
 
 	@Override
@@ -89,7 +225,7 @@ public class MapSessionRepository implements SessionRepository<MapSession> {
 			return null;
 		}
 		if (saved.isExpired()) {
-			deleteById(saved.getId());
+			removeExpired(saved);
 			return null;
 		}
 		return new MapSession(saved);
@@ -97,7 +233,11 @@ public class MapSessionRepository implements SessionRepository<MapSession> {
 
 	@Override
 	public void deleteById(String id) {
-		this.sessions.remove(id);
+		Session deleted = this.sessions.remove(id);
+		this.expiryIndex.remove(id);
+		if (deleted != null && this.eventPublisher != null) {
+			publishEvent(new SessionDeletedEvent(this, deleted));
+		}
 	}
 
 	/**
@@ -112,4 +252,112 @@ public class MapSessionRepository implements SessionRepository<MapSession> {
 		return result;
 	}
 
+	/**
+	 * Removes the expired sessions. If a {@link #setCleanupTimeBudget(Duration) cleanup
+	 * time budget} is set, the run stops once it is exceeded and the next run resumes
+	 * from where it stopped.
+	 *
+	 * @since 2.8.0
+	 */
+	public synchronized void cleanUpExpiredSessions() {
+		long deadline = this.cleanupTimeBudget.isZero() ? 0
+				: System.nanoTime() + this.cleanupTimeBudget.toNanos();
+		Instant now = Instant.now();
+		List<String> sessionIds;
+		while ((sessionIds = this.expiryIndex.pollExpired(now)) != null) {
+			for (String sessionId : sessionIds) {
+				Session session = this.sessions.get(sessionId);
+				if (session == null) {
+					continue;
+				}
+				if (isExpired(session, now)) {
+					removeExpired(session);
+				}
+				else {
+					// saved again while being polled
+					this.expiryIndex.update(session);
+				}
+			}
+			if (deadline != 0 && deadline - System.nanoTime() <= 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stops the background cleanup, if any.
+	 *
+	 * @since 2.8.0
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.cleanupExecutor != null) {
+			this.cleanupExecutor.shutdownNow();
+			this.cleanupExecutor = null;
+			this.cleanupTask = null;
+		}
+	}
+
+	private void makeRoom() {
+		cleanUpExpiredSessions();
+		int overflow = this.sessions.size() - this.maxSessions + 1;
+		if (overflow <= 0) {
+			return;
+		}
+		int evictionCount = Math.max(overflow, this.maxSessions / 100);
+		Comparator<Session> comparator = this.evictionPolicy.comparator();
+		// keep the sessions to evict in a max-heap of bounded size
+		PriorityQueue<Session> candidates = new PriorityQueue<>(evictionCount + 1, comparator.reversed());
+		for (Session session : this.sessions.values()) {
+			candidates.add(session);
+			if (candidates.size() > evictionCount) {
+				candidates.poll();
+			}
+		}
+		List<Session> evicted = new ArrayList<>(candidates);
+		for (Session session : evicted) {
+			if (removeIfUnchanged(session)) {
+				if (this.eventPublisher != null) {
+					publishEvent(new SessionDeletedEvent(this, session));
+				}
+			}
+		}
+	}
+
+	private void removeExpired(Session session) {
+		if (removeIfUnchanged(session)) {
+			if (this.eventPublisher != null) {
+				publishEvent(new SessionExpiredEvent(this, session));
+			}
+		}
+	}
+
+	/**
+	 * Removes the provided session unless it was replaced since it was read. The stored
+	 * instance is compared by identity, since sessions are equal if they have the same id.
+	 * @param session the session to remove
+	 * @return {@code true} if the session was removed
+	 */
+	private boolean removeIfUnchanged(Session session) {
+		boolean[] removed = new boolean[1];
+		this.sessions.computeIfPresent(session.getId(), (id, stored) -> {
+			if (stored != session) {
+				return stored;
+			}
+			this.expiryIndex.remove(id);
+			removed[0] = true;
+			return null;
+		});
+		return removed[0];
+	}
+
+	// events are created only if a publisher is set, so that spring-context is optional
+	private void publishEvent(Object event) {
+		this.eventPublisher.publishEvent(event);
+	}
+
+	private static boolean isExpired(Session session, Instant now) {
+		return (session instanceof MapSession) ? ((MapSession) session).isExpired(now) : session.isExpired();
+	}
+
 }
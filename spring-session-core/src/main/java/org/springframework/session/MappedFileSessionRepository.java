@@ -0,0 +1,898 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionRepository} that persists the sessions in an append-only log of
+ * memory-mapped files, so that they survive a restart of a single node without an
+ * external session store.
+ * <p>
+ * Every save appends the serialized session to the current segment file of the log, and
+ * every deletion appends a tombstone. Only the session ids and the positions of their
+ * latest records are kept on the heap. Lookups deserialize the sessions directly from the
+ * mapped files, without copying them. When the repository is created, the existing
+ * segments are replayed in order to rebuild the index, and the records that are
+ * truncated or whose checksum does not match, such as the ones that were being written
+ * when the process crashed, are ignored along with the rest of their segment. The rest of
+ * the segment is then cleared, since the pages of a mapped file can reach the storage
+ * device out of order, so that a later record cannot be replayed once new records are
+ * appended in front of it.
+ * <p>
+ * Writes are group-committed: the mapped files are forced to the storage device by a
+ * background thread, which writes all the records appended since the previous flush at
+ * once. By default, it does so every {@link #setCommitInterval(Duration) commit
+ * interval}, so the sessions saved during the last interval can be lost on a crash. If
+ * {@link #setSyncWrites(boolean) synchronous writes} are enabled, saves wait until their
+ * record has been forced instead, and the flushes are triggered as soon as a save is
+ * waiting.
+ * <p>
+ * The background thread also periodically removes the expired sessions from the index
+ * and compacts the log: the oldest segment is deleted once its ratio of live bytes is
+ * below the {@link #setCompactionThreshold(double) compaction threshold}, after copying
+ * its live records to the current segment. Since segments are always compacted in order,
+ * the tombstones of a deleted segment cannot hide a record of an older one.
+ * <p>
+ * Sessions are serialized with JDK serialization by default, so their attributes must
+ * be {@link java.io.Serializable}. The directory must not be used by several instances at
+ * the same time. Invoke {@link #close()} to flush the pending writes and stop the
+ * background thread.
+ *
+ * @since 2.8.0
+ */
+public class MappedFileSessionRepository implements SessionRepository<MapSession>, AutoCloseable {
+
+	/**
+	 * The default size of a segment file (64 MiB).
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * The default interval between two flushes of the log.
+	 */
+	public static final Duration DEFAULT_COMMIT_INTERVAL = Duration.ofMillis(10);
+
+	/**
+	 * The default interval between two compactions of the log.
+	 */
+	public static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.ofMinutes(1);
+
+	/**
+	 * The default ratio of live bytes under which {@link #compact()} deletes a segment.
+	 */
+	public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+	private static final Log logger = LogFactory.getLog(MappedFileSessionRepository.class);
+
+	private static final String SEGMENT_PREFIX = "sessions-";
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final byte PUT = 1;
+
+	private static final byte DELETE = 2;
+
+	private static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+	// [int length][int checksum][byte type][long expiry time][short id length][id][data]
+	private static final int CHECKSUM_OFFSET = 4;
+
+	private static final int TYPE_OFFSET = 8;
+
+	private static final int EXPIRY_OFFSET = 9;
+
+	private static final int ID_LENGTH_OFFSET = 17;
+
+	private static final int HEADER_SIZE = 19;
+
+	private static final byte[] NO_DATA = new byte[0];
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final ConcurrentNavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+	private final Map<String, Long> addresses = new ConcurrentHashMap<>();
+
+	private final SessionExpiryIndex expiryIndex = new SessionExpiryIndex();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Queue<Segment> unflushedSegments = new ConcurrentLinkedQueue<>();
+
+	private final Object flushLock = new Object();
+
+	private final Object flushMonitor = new Object();
+
+	private final Thread writerThread;
+
+	private volatile Segment head;
+
+	private volatile boolean closed;
+
+	private long appendedSequence;
+
+	private long flushedSequence;
+
+	private boolean flushRequested;
+
+	private volatile long commitInterval = DEFAULT_COMMIT_INTERVAL.toMillis();
+
+	private volatile long compactionInterval = DEFAULT_COMPACTION_INTERVAL.toMillis();
+
+	private volatile boolean syncWrites;
+
+	private double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+	private Integer defaultMaxInactiveInterval;
+
+	private Converter<Object, byte[]> serializer = new SerializingConverter();
+
+	private Deserializer<Object> deserializer = new DefaultDeserializer();
+
+	/**
+	 * Creates a new instance that stores the log in the provided directory, with segments
+	 * of {@link #DEFAULT_SEGMENT_SIZE}, and recovers the sessions already stored there.
+	 * @param directory the directory of the log, created if needed
+	 */
+	public MappedFileSessionRepository(Path directory) {
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates a new instance that stores the log in the provided directory and recovers
+	 * the sessions already stored there.
+	 * @param directory the directory of the log, created if needed
+	 * @param segmentSize the size of the segment files in bytes, which bounds the size of
+	 * a serialized session
+	 */
+	public MappedFileSessionRepository(Path directory, int segmentSize) {
+		Assert.notNull(directory, "directory cannot be null");
+		Assert.isTrue(segmentSize > HEADER_SIZE, "segmentSize is too small");
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		recover();
+		this.writerThread = new Thread(this::runWriter, "spring-session-mapped-file-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Sets the interval between two flushes of the log. Default is
+	 * {@link #DEFAULT_COMMIT_INTERVAL}.
+	 * @param commitInterval the commit interval
+	 */
+	public void setCommitInterval(Duration commitInterval) {
+		Assert.notNull(commitInterval, "commitInterval cannot be null");
+		Assert.isTrue(commitInterval.toMillis() > 0, "commitInterval must be at least one millisecond");
+		this.commitInterval = commitInterval.toMillis();
+	}
+
+	/**
+	 * Sets whether saves and deletions wait until their record has been forced to the
+	 * storage device. Default is {@code false}.
+	 * @param syncWrites whether writes are synchronous
+	 */
+	public void setSyncWrites(boolean syncWrites) {
+		this.syncWrites = syncWrites;
+	}
+
+	/**
+	 * Sets the interval between two background invocations of
+	 * {@link #cleanUpExpiredSessions()} and {@link #compact()}. Default is
+	 * {@link #DEFAULT_COMPACTION_INTERVAL}. {@link Duration#ZERO} disables them.
+	 * @param compactionInterval the compaction interval
+	 */
+	public void setCompactionInterval(Duration compactionInterval) {
+		Assert.notNull(compactionInterval, "compactionInterval cannot be null");
+		Assert.isTrue(!compactionInterval.isNegative(), "compactionInterval cannot be negative");
+		this.compactionInterval = compactionInterval.toMillis();
+	}
+
+	/**
+	 * Sets the ratio of live bytes under which {@link #compact()} deletes a segment.
+	 * Default is {@link #DEFAULT_COMPACTION_THRESHOLD}.
+	 * @param compactionThreshold the ratio, between 0 and 1
+	 */
+	public void setCompactionThreshold(double compactionThreshold) {
+		Assert.isTrue(compactionThreshold >= 0 && compactionThreshold <= 1,
+				"compactionThreshold must be between 0 and 1");
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * If non-null, this value is used to override
+	 * {@link Session#setMaxInactiveInterval(Duration)}.
+	 * @param defaultMaxInactiveInterval the number of seconds that the {@link Session}
+	 * should be kept alive between client requests.
+	 */
+	public void setDefaultMaxInactiveInterval(int defaultMaxInactiveInterval) {
+		this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
+	}
+
+	/**
+	 * Sets the converter used to serialize the {@link MapSession} instances. Default is
+	 * {@link SerializingConverter}.
+	 * @param serializer the serializer
+	 */
+	public void setSerializer(Converter<Object, byte[]> serializer) {
+		Assert.notNull(serializer, "serializer cannot be null");
+		this.serializer = serializer;
+	}
+
+	/**
+	 * Sets the deserializer used to read the {@link MapSession} instances from the mapped
+	 * files. Default is {@link DefaultDeserializer}.
+	 * @param deserializer the deserializer
+	 */
+	public void setDeserializer(Deserializer<Object> deserializer) {
+		Assert.notNull(deserializer, "deserializer cannot be null");
+		this.deserializer = deserializer;
+	}
+
+	@Override
+	public MapSession createSession() {
+		MapSession result = new MapSession();
+		if (this.defaultMaxInactiveInterval != null) {
+			result.setMaxInactiveInterval(Duration.ofSeconds(this.defaultMaxInactiveInterval));
+		}
+		return result;
+	}
+
+	@Override
+	public void save(MapSession session) {
+		MapSession copy = new MapSession(session);
+		byte[] data = this.serializer.convert(copy);
+		long expiryTime = getExpiryTime(copy);
+		long sequence;
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			assertOpen();
+			if (!session.getId().equals(session.getOriginalId())) {
+				delete(session.getOriginalId());
+				this.expiryIndex.remove(session.getOriginalId());
+			}
+			long address = append(PUT, session.getId(), expiryTime, data);
+			release(this.addresses.put(session.getId(), address));
+			sequence = markAppended();
+		}
+		finally {
+			writeLock.unlock();
+		}
+		this.expiryIndex.update(copy);
+		awaitFlush(sequence);
+	}
+
+	@Override
+	public MapSession findById(String id) {
+		Long address;
+		ByteBuffer data = null;
+		Lock readLock = this.lock.readLock();
+		readLock.lock();
+		try {
+			assertOpen();
+			address = this.addresses.get(id);
+			if (address == null) {
+				return null;
+			}
+			ByteBuffer buffer = getBuffer(address);
+			int offset = offsetOf(address);
+			if (buffer.getLong(offset + EXPIRY_OFFSET) > System.currentTimeMillis()) {
+				data = slice(buffer, offset);
+			}
+		}
+		finally {
+			readLock.unlock();
+		}
+		if (data == null) {
+			removeExpired(id, address);
+			return null;
+		}
+		// segments are never rewritten, and stay mapped even once compacted
+		return (MapSession) deserialize(data);
+	}
+
+	@Override
+	public void deleteById(String id) {
+		long sequence;
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			assertOpen();
+			if (!delete(id)) {
+				return;
+			}
+			sequence = markAppended();
+		}
+		finally {
+			writeLock.unlock();
+		}
+		this.expiryIndex.remove(id);
+		awaitFlush(sequence);
+	}
+
+	/**
+	 * Removes the expired sessions from the index. Their records are reclaimed by
+	 * {@link #compact()}.
+	 */
+	public void cleanUpExpiredSessions() {
+		Instant now = Instant.now();
+		List<String> sessionIds;
+		while ((sessionIds = this.expiryIndex.pollExpired(now)) != null) {
+			Lock writeLock = this.lock.writeLock();
+			writeLock.lock();
+			try {
+				for (String sessionId : sessionIds) {
+					Long address = this.addresses.get(sessionId);
+					if (address != null && getBuffer(address).getLong(offsetOf(address) + EXPIRY_OFFSET) <= now
+							.toEpochMilli()) {
+						this.addresses.remove(sessionId);
+						release(address);
+					}
+				}
+			}
+			finally {
+				writeLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the oldest segments while their ratio of live bytes is below the
+	 * {@link #setCompactionThreshold(double) compaction threshold}, after copying their
+	 * live records to the current segment and forcing them to the storage device.
+	 * @return the number of deleted segments
+	 */
+	public int compact() {
+		int compacted = 0;
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			assertOpen();
+			long now = System.currentTimeMillis();
+			Map.Entry<Integer, Segment> oldest;
+			while ((oldest = this.segments.firstEntry()) != null && oldest.getValue() != this.head
+					&& oldest.getValue().liveBytes <= this.compactionThreshold * oldest.getValue().writePosition) {
+				Segment segment = oldest.getValue();
+				for (Map.Entry<String, Long> entry : this.addresses.entrySet()) {
+					long address = entry.getValue();
+					if (segmentIdOf(address) != segment.id) {
+						continue;
+					}
+					int offset = offsetOf(address);
+					if (segment.buffer.getLong(offset + EXPIRY_OFFSET) <= now) {
+						this.addresses.remove(entry.getKey(), address);
+					}
+					else {
+						entry.setValue(appendCopy(segment.buffer, offset));
+					}
+				}
+				markAppended();
+				flush();
+				this.segments.remove(segment.id);
+				this.unflushedSegments.remove(segment);
+				segment.delete();
+				compacted++;
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+		return compacted;
+	}
+
+	/**
+	 * Flushes the pending writes, stops the background thread and closes the segment
+	 * files.
+	 */
+	@Override
+	public void close() {
+		synchronized (this.flushMonitor) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.flushMonitor.notifyAll();
+		}
+		try {
+			this.writerThread.join();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			flush();
+			for (Segment segment : this.segments.values()) {
+				segment.close();
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void recover() {
+		try {
+			Files.createDirectories(this.directory);
+			List<Integer> segmentIds = new ArrayList<>();
+			try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory,
+					SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+				for (Path path : paths) {
+					String fileName = path.getFileName().toString();
+					segmentIds.add(Integer.valueOf(fileName.substring(SEGMENT_PREFIX.length(),
+							fileName.length() - SEGMENT_SUFFIX.length())));
+				}
+			}
+			Collections.sort(segmentIds);
+			Map<String, Long> recovered = new HashMap<>();
+			for (int segmentId : segmentIds) {
+				Segment segment = openSegment(segmentId);
+				this.segments.put(segmentId, segment);
+				replay(segment, recovered);
+			}
+			long now = System.currentTimeMillis();
+			for (Map.Entry<String, Long> entry : recovered.entrySet()) {
+				long address = entry.getValue();
+				ByteBuffer buffer = getBuffer(address);
+				int offset = offsetOf(address);
+				long expiryTime = buffer.getLong(offset + EXPIRY_OFFSET);
+				if (expiryTime > now) {
+					this.addresses.put(entry.getKey(), address);
+					this.segments.get(segmentIdOf(address)).liveBytes += buffer.getInt(offset);
+					if (expiryTime != NEVER_EXPIRES) {
+						this.expiryIndex.update(entry.getKey(), expiryTime);
+					}
+				}
+			}
+			this.head = this.segments.isEmpty() ? openSegment(0) : this.segments.lastEntry().getValue();
+			this.segments.putIfAbsent(this.head.id, this.head);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to recover the sessions from " + this.directory, ex);
+		}
+	}
+
+	private void replay(Segment segment, Map<String, Long> recovered) {
+		ByteBuffer buffer = segment.buffer;
+		int offset = 0;
+		while (offset + HEADER_SIZE <= buffer.capacity()) {
+			int length = buffer.getInt(offset);
+			if (length == 0) {
+				break;
+			}
+			if (!isValidRecord(buffer, offset, length)) {
+				logger.warn("Ignoring the records of " + segment.path + " from offset " + offset
+						+ " since they are corrupted or truncated");
+				break;
+			}
+			String sessionId = readSessionId(buffer, offset);
+			if (buffer.get(offset + TYPE_OFFSET) == PUT) {
+				recovered.put(sessionId, address(segment.id, offset));
+			}
+			else {
+				recovered.remove(sessionId);
+			}
+			offset += length;
+		}
+		segment.writePosition = offset;
+		clearFrom(segment, offset);
+	}
+
+	/**
+	 * Zeroes the provided segment from the provided offset, if it is not already, so that
+	 * the end of the log is marked by a zero length even after a crash that left valid
+	 * records past a corrupted or missing one.
+	 */
+	private static void clearFrom(Segment segment, int offset) {
+		MappedByteBuffer buffer = segment.buffer;
+		int end = buffer.capacity();
+		int position = offset;
+		while (position + Long.BYTES <= end && buffer.getLong(position) == 0) {
+			position += Long.BYTES;
+		}
+		while (position < end && buffer.get(position) == 0) {
+			position++;
+		}
+		if (position == end) {
+			return;
+		}
+		logger.warn("Clearing " + (end - offset) + " bytes of " + segment.path + " from offset " + offset);
+		for (position = offset; position + Long.BYTES <= end; position += Long.BYTES) {
+			buffer.putLong(position, 0);
+		}
+		for (; position < end; position++) {
+			buffer.put(position, (byte) 0);
+		}
+		// the tail must be cleared on the storage device before new records are appended
+		buffer.force();
+	}
+
+	private void runWriter() {
+		long nextCompaction = System.currentTimeMillis() + this.compactionInterval;
+		while (true) {
+			synchronized (this.flushMonitor) {
+				if (!this.flushRequested && !this.closed) {
+					try {
+						this.flushMonitor.wait(this.commitInterval);
+					}
+					catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				this.flushRequested = false;
+				if (this.closed) {
+					return;
+				}
+			}
+			try {
+				flush();
+				long compactionInterval = this.compactionInterval;
+				if (compactionInterval > 0 && System.currentTimeMillis() >= nextCompaction) {
+					cleanUpExpiredSessions();
+					compact();
+					nextCompaction = System.currentTimeMillis() + compactionInterval;
+				}
+			}
+			catch (RuntimeException ex) {
+				if (this.closed) {
+					return;
+				}
+				logger.error("Failed to write the sessions to " + this.directory, ex);
+			}
+		}
+	}
+
+	private void flush() {
+		synchronized (this.flushLock) {
+			long sequence;
+			synchronized (this.flushMonitor) {
+				sequence = this.appendedSequence;
+				if (sequence == this.flushedSequence) {
+					return;
+				}
+			}
+			// read the head first, so that a segment sealed concurrently is in the queue
+			Segment head = this.head;
+			Segment segment;
+			while ((segment = this.unflushedSegments.poll()) != null) {
+				segment.buffer.force();
+			}
+			head.buffer.force();
+			synchronized (this.flushMonitor) {
+				this.flushedSequence = sequence;
+				this.flushMonitor.notifyAll();
+			}
+		}
+	}
+
+	private long markAppended() {
+		synchronized (this.flushMonitor) {
+			return ++this.appendedSequence;
+		}
+	}
+
+	private void awaitFlush(long sequence) {
+		if (!this.syncWrites) {
+			return;
+		}
+		synchronized (this.flushMonitor) {
+			this.flushRequested = true;
+			this.flushMonitor.notifyAll();
+			// close() flushes the records appended before it
+			while (this.flushedSequence < sequence) {
+				try {
+					this.flushMonitor.wait();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the session to be written", ex);
+				}
+			}
+		}
+	}
+
+	private boolean delete(String sessionId) {
+		Long address = this.addresses.remove(sessionId);
+		if (address == null) {
+			return false;
+		}
+		release(address);
+		append(DELETE, sessionId, NEVER_EXPIRES, NO_DATA);
+		return true;
+	}
+
+	private void removeExpired(String id, Long address) {
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			// unless it was saved again in the meantime, expired records need no tombstone
+			if (this.addresses.remove(id, address)) {
+				release(address);
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	private long append(byte type, String sessionId, long expiryTime, byte[] data) {
+		byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+		Assert.isTrue(id.length <= 0xFFFF, "Session id is too long");
+		int length = HEADER_SIZE + id.length + data.length;
+		Segment segment = getSegmentFor(length);
+		int offset = segment.writePosition;
+		ByteBuffer buffer = segment.buffer.duplicate();
+		buffer.position(offset + TYPE_OFFSET);
+		buffer.put(type).putLong(expiryTime).putShort((short) id.length).put(id).put(data);
+		buffer.putInt(offset + CHECKSUM_OFFSET, checksum(buffer, offset, length));
+		buffer.putInt(offset, length);
+		segment.writePosition += length;
+		if (type == PUT) {
+			segment.liveBytes += length;
+		}
+		return address(segment.id, offset);
+	}
+
+	private long appendCopy(ByteBuffer source, int sourceOffset) {
+		int length = source.getInt(sourceOffset);
+		Segment segment = getSegmentFor(length);
+		ByteBuffer record = source.duplicate();
+		record.limit(sourceOffset + length);
+		record.position(sourceOffset);
+		ByteBuffer buffer = segment.buffer.duplicate();
+		buffer.position(segment.writePosition);
+		buffer.put(record);
+		int offset = segment.writePosition;
+		segment.writePosition += length;
+		segment.liveBytes += length;
+		return address(segment.id, offset);
+	}
+
+	private Segment getSegmentFor(int length) {
+		Segment segment = this.head;
+		Assert.isTrue(length <= segment.buffer.capacity(), "Session of " + length + " bytes exceeds the segment size");
+		if (segment.writePosition + length <= segment.buffer.capacity()) {
+			return segment;
+		}
+		try {
+			Segment next = openSegment(segment.id + 1);
+			this.segments.put(next.id, next);
+			this.unflushedSegments.add(segment);
+			this.head = next;
+			return next;
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to create a segment in " + this.directory, ex);
+		}
+	}
+
+	private Segment openSegment(int segmentId) throws IOException {
+		Path path = this.directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			long size = Math.min(Math.max(channel.size(), this.segmentSize), Integer.MAX_VALUE);
+			return new Segment(segmentId, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+		}
+		catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	private void release(Long address) {
+		if (address != null) {
+			Segment segment = this.segments.get(segmentIdOf(address));
+			segment.liveBytes -= segment.buffer.getInt(offsetOf(address));
+		}
+	}
+
+	private ByteBuffer getBuffer(long address) {
+		return this.segments.get(segmentIdOf(address)).buffer;
+	}
+
+	private Object deserialize(ByteBuffer data) {
+		try {
+			return this.deserializer.deserialize(new ByteBufferInputStream(data));
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to deserialize the session", ex);
+		}
+	}
+
+	private void assertOpen() {
+		Assert.state(!this.closed, "The repository is closed");
+	}
+
+	private static boolean isValidRecord(ByteBuffer buffer, int offset, int length) {
+		if (length < HEADER_SIZE || length > buffer.capacity() - offset) {
+			return false;
+		}
+		byte type = buffer.get(offset + TYPE_OFFSET);
+		int idLength = buffer.getShort(offset + ID_LENGTH_OFFSET) & 0xFFFF;
+		return (type == PUT || type == DELETE) && idLength <= length - HEADER_SIZE
+				&& buffer.getInt(offset + CHECKSUM_OFFSET) == checksum(buffer, offset, length);
+	}
+
+	private static int checksum(ByteBuffer buffer, int offset, int length) {
+		ByteBuffer covered = buffer.duplicate();
+		covered.limit(offset + length);
+		covered.position(offset + TYPE_OFFSET);
+		CRC32 crc = new CRC32();
+		crc.update(covered);
+		return (int) crc.getValue();
+	}
+
+	private static String readSessionId(ByteBuffer buffer, int offset) {
+		byte[] id = new byte[buffer.getShort(offset + ID_LENGTH_OFFSET) & 0xFFFF];
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset + HEADER_SIZE);
+		view.get(id);
+		return new String(id, StandardCharsets.UTF_8);
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int offset) {
+		int idLength = buffer.getShort(offset + ID_LENGTH_OFFSET) & 0xFFFF;
+		ByteBuffer data = buffer.duplicate();
+		data.limit(offset + buffer.getInt(offset));
+		data.position(offset + HEADER_SIZE + idLength);
+		return data.slice();
+	}
+
+	private static long address(int segmentId, int offset) {
+		return ((long) segmentId << 32) | offset;
+	}
+
+	private static int segmentIdOf(long address) {
+		return (int) (address >>> 32);
+	}
+
+	private static int offsetOf(long address) {
+		return (int) address;
+	}
+
+	private static long getExpiryTime(MapSession session) {
+		Duration maxInactiveInterval = session.getMaxInactiveInterval();
+		if (maxInactiveInterval.isNegative()) {
+			return NEVER_EXPIRES;
+		}
+		return session.getLastAccessedTime().plus(maxInactiveInterval).toEpochMilli();
+	}
+
+	/**
+	 * A segment file of the log and its mapping. The positions are guarded by the write
+	 * lock.
+	 */
+	private static final class Segment {
+
+		private final int id;
+
+		private final Path path;
+
+		private final FileChannel channel;
+
+		private final MappedByteBuffer buffer;
+
+		private int writePosition;
+
+		private long liveBytes;
+
+		private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+			this.id = id;
+			this.path = path;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		private void close() {
+			try {
+				this.channel.close();
+			}
+			catch (IOException ex) {
+				logger.warn("Failed to close " + this.path, ex);
+			}
+		}
+
+		private void delete() {
+			close();
+			try {
+				Files.deleteIfExists(this.path);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Failed to delete " + this.path, ex);
+			}
+		}
+
+	}
+
+	/**
+	 * An {@link InputStream} that reads a {@link ByteBuffer} without copying it.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? (this.buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!this.buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, this.buffer.remaining());
+			this.buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+
+	}
+
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionRepository} that keeps the sessions serialized in direct memory, outside
+ * of the Java heap, and only materializes them as {@link MapSession} instances when they
+ * are looked up. This keeps the heap small, and the garbage collection pauses short, on
+ * nodes that hold a large number of sessions.
+ * <p>
+ * The memory is allocated in slabs of {@link #setSlabSize(int) a given size}, up to a
+ * {@link #setMaxSlabs(int) maximum number of slabs}, and split in chunks whose size is a
+ * power of two. The chunks of deleted sessions are reused by sessions of the same size
+ * class, and {@link #compact()} releases the slabs that became mostly free by moving
+ * their sessions to other slabs. Only the session ids and the addresses of their chunks
+ * are kept on the heap.
+ * <p>
+ * Sessions are serialized with JDK serialization by default, so their attributes must
+ * be {@link java.io.Serializable}. Lookups run concurrently, while saves, deletions and
+ * compaction are serialized; the sessions are serialized and deserialized outside of the
+ * lock. Expired sessions are removed when they are looked up or by
+ * {@link #cleanUpExpiredSessions()}, which is typically invoked periodically along with
+ * {@link #compact()}.
+ *
+ * @since 2.8.0
+ */
+public class OffHeapSessionRepository implements SessionRepository<MapSession> {
+
+	/**
+	 * The default size of a slab (16 MiB).
+	 */
+	public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * The default maximum number of slabs.
+	 */
+	public static final int DEFAULT_MAX_SLABS = 64;
+
+	/**
+	 * The default ratio of live bytes under which {@link #compact()} releases a slab.
+	 */
+	public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+	private static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+	private final Map<String, Long> addresses = new ConcurrentHashMap<>();
+
+	private final SessionExpiryIndex expiryIndex = new SessionExpiryIndex();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private int slabSize = DEFAULT_SLAB_SIZE;
+
+	private int maxSlabs = DEFAULT_MAX_SLABS;
+
+	private double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+	private SlabAllocator allocator;
+
+	private Integer defaultMaxInactiveInterval;
+
+	private Converter<Object, byte[]> serializer = new SerializingConverter();
+
+	private Converter<byte[], Object> deserializer = new DeserializingConverter();
+
+	/**
+	 * Sets the size of the slabs of direct memory, which must be a power of two and
+	 * bounds the size of a serialized session. Default is {@link #DEFAULT_SLAB_SIZE}. Can
+	 * only be set before the first session is saved.
+	 * @param slabSize the slab size in bytes
+	 */
+	public void setSlabSize(int slabSize) {
+		assertNotStarted();
+		Assert.isTrue(Integer.bitCount(slabSize) == 1, "slabSize must be a power of two");
+		this.slabSize = slabSize;
+	}
+
+	/**
+	 * Sets the maximum number of slabs of direct memory. Saving a session fails once they
+	 * are all full. Default is {@link #DEFAULT_MAX_SLABS}. Can only be set before the
+	 * first session is saved.
+	 * @param maxSlabs the maximum number of slabs
+	 */
+	public void setMaxSlabs(int maxSlabs) {
+		assertNotStarted();
+		Assert.isTrue(maxSlabs > 0, "maxSlabs must be greater than 0");
+		this.maxSlabs = maxSlabs;
+	}
+
+	/**
+	 * Sets the ratio of live bytes under which {@link #compact()} releases a slab.
+	 * Default is {@link #DEFAULT_COMPACTION_THRESHOLD}.
+	 * @param compactionThreshold the ratio, between 0 and 1
+	 */
+	public void setCompactionThreshold(double compactionThreshold) {
+		Assert.isTrue(compactionThreshold >= 0 && compactionThreshold <= 1,
+				"compactionThreshold must be between 0 and 1");
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * If non-null, this value is used to override
+	 * {@link Session#setMaxInactiveInterval(Duration)}.
+	 * @param defaultMaxInactiveInterval the number of seconds that the {@link Session}
+	 * should be kept alive between client requests.
+	 */
+	public void setDefaultMaxInactiveInterval(int defaultMaxInactiveInterval) {
+		this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
+	}
+
+	/**
+	 * Sets the converter used to serialize the {@link MapSession} instances. Default is
+	 * {@link SerializingConverter}.
+	 * @param serializer the serializer
+	 */
+	public void setSerializer(Converter<Object, byte[]> serializer) {
+		Assert.notNull(serializer, "serializer cannot be null");
+		this.serializer = serializer;
+	}
+
+	/**
+	 * Sets the converter used to deserialize the {@link MapSession} instances. Default is
+	 * {@link DeserializingConverter}.
+	 * @param deserializer the deserializer
+	 */
+	public void setDeserializer(Converter<byte[], Object> deserializer) {
+		Assert.notNull(deserializer, "deserializer cannot be null");
+		this.deserializer = deserializer;
+	}
+
+	@Override
+	public MapSession createSession() {
+		MapSession result = new MapSession();
+		if (this.defaultMaxInactiveInterval != null) {
+			result.setMaxInactiveInterval(Duration.ofSeconds(this.defaultMaxInactiveInterval));
+		}
+		return result;
+	}
+
+	@Override
+	public void save(MapSession session) {
+		MapSession copy = new MapSession(session);
+		byte[] data = this.serializer.convert(copy);
+		long expiryTime = getExpiryTime(copy);
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			if (!session.getId().equals(session.getOriginalId())) {
+				free(this.addresses.remove(session.getOriginalId()));
+				this.expiryIndex.remove(session.getOriginalId());
+			}
+			long address = getAllocator().allocate(expiryTime, data);
+			free(this.addresses.put(session.getId(), address));
+		}
+		finally {
+			writeLock.unlock();
+		}
+		this.expiryIndex.update(copy);
+	}
+
+	@Override
+	public MapSession findById(String id) {
+		Long address;
+		byte[] data = null;
+		Lock readLock = this.lock.readLock();
+		readLock.lock();
+		try {
+			address = this.addresses.get(id);
+			if (address == null) {
+				return null;
+			}
+			if (this.allocator.readHeader(address) > System.currentTimeMillis()) {
+				data = this.allocator.readData(address);
+			}
+		}
+		finally {
+			readLock.unlock();
+		}
+		if (data == null) {
+			removeExpired(id, address);
+			return null;
+		}
+		return (MapSession) this.deserializer.convert(data);
+	}
+
+	@Override
+	public void deleteById(String id) {
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			free(this.addresses.remove(id));
+		}
+		finally {
+			writeLock.unlock();
+		}
+		this.expiryIndex.remove(id);
+	}
+
+	/**
+	 * Removes the expired sessions.
+	 */
+	public void cleanUpExpiredSessions() {
+		Instant now = Instant.now();
+		List<String> sessionIds;
+		while ((sessionIds = this.expiryIndex.pollExpired(now)) != null) {
+			Lock writeLock = this.lock.writeLock();
+			writeLock.lock();
+			try {
+				for (String sessionId : sessionIds) {
+					Long address = this.addresses.get(sessionId);
+					if (address != null && this.allocator.readHeader(address) <= now.toEpochMilli()) {
+						this.addresses.remove(sessionId);
+						this.allocator.free(address);
+					}
+				}
+			}
+			finally {
+				writeLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Releases the slabs whose ratio of live bytes is below the
+	 * {@link #setCompactionThreshold(double) compaction threshold}, after moving their
+	 * sessions to other slabs. The slabs are compacted one at a time, and compaction
+	 * stops at the first slab whose sessions do not fit in the store, which is then left
+	 * as it was.
+	 * @return the number of released slabs
+	 */
+	public int compact() {
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			if (this.allocator == null) {
+				return 0;
+			}
+			List<Integer> sparseSlabs = this.allocator.getSparseSlabs(this.compactionThreshold);
+			if (sparseSlabs.isEmpty()) {
+				return 0;
+			}
+			Map<Integer, List<String>> sessionIdsBySlab = new HashMap<>();
+			this.addresses.forEach((sessionId, address) -> {
+				int slab = SlabAllocator.slabOf(address);
+				if (sparseSlabs.contains(slab)) {
+					sessionIdsBySlab.computeIfAbsent(slab, (key) -> new ArrayList<>()).add(sessionId);
+				}
+			});
+			// no session may be relocated to a slab that is yet to be compacted
+			Map<Integer, List<Long>> freeChunksBySlab = new HashMap<>();
+			for (int slab : sparseSlabs) {
+				freeChunksBySlab.put(slab, this.allocator.evacuate(slab));
+			}
+			int released = 0;
+			boolean full = false;
+			for (int slab : sparseSlabs) {
+				full = full || !compact(slab, sessionIdsBySlab.getOrDefault(slab, Collections.emptyList()));
+				if (full) {
+					this.allocator.cancelEvacuation(freeChunksBySlab.get(slab));
+				}
+				else {
+					released++;
+				}
+			}
+			return released;
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Moves the sessions of the provided evacuated slab to other slabs and releases it,
+	 * or leaves it as it was if the store is full.
+	 * @param slab the slab index
+	 * @param sessionIds the ids of the sessions stored in the slab
+	 * @return {@code true} if the slab was released
+	 */
+	private boolean compact(int slab, List<String> sessionIds) {
+		Map<String, Long> relocated = new HashMap<>(sessionIds.size());
+		try {
+			for (String sessionId : sessionIds) {
+				relocated.put(sessionId, this.allocator.relocate(this.addresses.get(sessionId)));
+			}
+		}
+		catch (IllegalStateException ex) {
+			// the store is full, the copies are dropped and the slab is kept
+			relocated.values().forEach(this.allocator::free);
+			return false;
+		}
+		this.addresses.putAll(relocated);
+		this.allocator.release(slab);
+		return true;
+	}
+
+	/**
+	 * Returns the number of bytes of direct memory allocated for the slabs.
+	 * @return the number of bytes
+	 */
+	public long getAllocatedBytes() {
+		Lock readLock = this.lock.readLock();
+		readLock.lock();
+		try {
+			return (this.allocator != null) ? this.allocator.getCapacity() : 0;
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of direct memory used by the sessions, including the
+	 * unused part of their chunks.
+	 * @return the number of bytes
+	 */
+	public long getUsedBytes() {
+		Lock readLock = this.lock.readLock();
+		readLock.lock();
+		try {
+			return (this.allocator != null) ? this.allocator.getUsedBytes() : 0;
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	private void removeExpired(String id, Long address) {
+		Lock writeLock = this.lock.writeLock();
+		writeLock.lock();
+		try {
+			// unless it was saved again in the meantime
+			if (this.addresses.remove(id, address)) {
+				this.allocator.free(address);
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	private SlabAllocator getAllocator() {
+		if (this.allocator == null) {
+			this.allocator = new SlabAllocator(this.slabSize, this.maxSlabs);
+		}
+		return this.allocator;
+	}
+
+	private void free(Long address) {
+		if (address != null) {
+			this.allocator.free(address);
+		}
+	}
+
+	private void assertNotStarted() {
+		Assert.state(this.allocator == null, "Cannot be changed once sessions have been saved");
+	}
+
+	private static long getExpiryTime(MapSession session) {
+		Duration maxInactiveInterval = session.getMaxInactiveInterval();
+		if (maxInactiveInterval.isNegative()) {
+			return NEVER_EXPIRES;
+		}
+		return session.getLastAccessedTime().plus(maxInactiveInterval).toEpochMilli();
+	}
+
+}
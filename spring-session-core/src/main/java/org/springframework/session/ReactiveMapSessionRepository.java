@@ -17,6 +17,8 @@
 package org.springframework.session;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 import reactor.core.publisher.Mono;
@@ -31,6 +33,13 @@ import org.springframework.session.events.SessionExpiredEvent;
  * non-blocking map, and is itself responsible for purging the expired sessions.
  *
  * <p>
+ * Expired sessions are removed when they are looked up or by
+ * {@link #cleanUpExpiredSessions()}, which relies on an index of the expiration times of
+ * the sessions saved through this repository so that it only accesses the expired
+ * sessions.
+ * </p>
+ *
+ * <p>
  * The implementation does NOT support firing {@link SessionDeletedEvent} or
  * {@link SessionExpiredEvent}.
  * </p>
@@ -48,6 +57,8 @@ public class ReactiveMapSessionRepository implements ReactiveSessionRepository<M
 
 	private final Map<String, Session> sessions;
 
+	private final SessionExpiryIndex expiryIndex = new SessionExpiryIndex();
+
 	/**
 	 * Creates a new instance backed by the provided {@link Map}. This allows injecting a
 	 * distributed {@link Map}.
@@ -58,6 +69,7 @@ public class ReactiveMapSessionRepository implements ReactiveSessionRepository<M
 			throw new IllegalArgumentException("sessions cannot be null");
 		}
 		this.sessions = sessions;
+		this.sessions.values().forEach(this.expiryIndex::update);
 	}
 
 	/**
@@ -75,8 +87,10 @@ public class ReactiveMapSessionRepository implements ReactiveSessionRepository<M
 		return Mono.fromRunnable(() -> {
 			if (!session.getId().equals(session.getOriginalId())) {
 				this.sessions.remove(session.getOriginalId());
+				this.expiryIndex.remove(session.getOriginalId());
 			}
 			this.sessions.put(session.getId(), new MapSession(session));
+			this.expiryIndex.update(session);
 		});
 	}
 
@@ -92,7 +106,36 @@ public class ReactiveMapSessionRepository implements ReactiveSessionRepository<M
 
 	@Override
 	public Mono<Void> deleteById(String id) {
-		return Mono.fromRunnable(() -> this.sessions.remove(id));
+		return Mono.fromRunnable(() -> {
+			this.sessions.remove(id);
+			this.expiryIndex.remove(id);
+		});
+	}
+
+	/**
+	 * Removes the expired sessions. This is typically invoked periodically, for instance
+	 * by a scheduled task.
+	 * @since 2.8.0
+	 */
+	public void cleanUpExpiredSessions() {
+		Instant now = Instant.now();
+		List<String> sessionIds;
+		while ((sessionIds = this.expiryIndex.pollExpired(now)) != null) {
+			for (String sessionId : sessionIds) {
+				Session session = this.sessions.get(sessionId);
+				if (session == null) {
+					continue;
+				}
+				if (session.isExpired()) {
+					// compared by identity, since sessions are equal if they have the same id
+					this.sessions.computeIfPresent(sessionId, (id, stored) -> (stored != session) ? stored : null);
+				}
+				else {
+					// saved again while being polled
+					this.expiryIndex.update(session);
+				}
+			}
+		}
 	}
 
 	@Override
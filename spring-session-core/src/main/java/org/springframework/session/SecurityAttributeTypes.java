@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Registers the types of the Spring Security context typically stored in the session with
+ * a {@link CompactSessionAttributeCodec}. Only used when Spring Security is on the
+ * classpath.
+ *
+ * @since 2.8.0
+ */
+final class SecurityAttributeTypes {
+
+	private SecurityAttributeTypes() {
+	}
+
+	static void registerCoreTypes(CompactSessionAttributeCodec codec) {
+		codec.register(40, SimpleGrantedAuthority.class, (value, output) -> output.writeString(value.getAuthority()),
+				(input) -> new SimpleGrantedAuthority(input.readString()));
+		codec.register(41, User.class, (value, output) -> {
+			output.writeString(value.getUsername());
+			output.writeValue(value.getPassword());
+			output.writeBoolean(value.isEnabled());
+			output.writeBoolean(value.isAccountNonExpired());
+			output.writeBoolean(value.isCredentialsNonExpired());
+			output.writeBoolean(value.isAccountNonLocked());
+			output.writeCollection(value.getAuthorities());
+		}, SecurityAttributeTypes::readUser);
+		codec.register(42, UsernamePasswordAuthenticationToken.class, (value, output) -> {
+			output.writeValue(value.getPrincipal());
+			output.writeValue(value.getCredentials());
+			output.writeBoolean(value.isAuthenticated());
+			output.writeCollection(value.getAuthorities());
+			output.writeValue(value.getDetails());
+		}, SecurityAttributeTypes::readAuthenticationToken);
+		codec.register(43, SecurityContextImpl.class, (value, output) -> output.writeValue(value.getAuthentication()),
+				(input) -> new SecurityContextImpl((Authentication) input.readValue()));
+	}
+
+	static void registerWebTypes(CompactSessionAttributeCodec codec) {
+		WebTypes.register(codec);
+	}
+
+	private static User readUser(CompactSessionAttributeCodec.Input input) throws IOException {
+		String username = input.readString();
+		String password = (String) input.readValue();
+		boolean enabled = input.readBoolean();
+		boolean accountNonExpired = input.readBoolean();
+		boolean credentialsNonExpired = input.readBoolean();
+		boolean accountNonLocked = input.readBoolean();
+		List<GrantedAuthority> authorities = readAuthorities(input);
+		User user = new User(username, (password != null) ? password : "", enabled, accountNonExpired,
+				credentialsNonExpired, accountNonLocked, authorities);
+		if (password == null) {
+			user.eraseCredentials();
+		}
+		return user;
+	}
+
+	private static UsernamePasswordAuthenticationToken readAuthenticationToken(CompactSessionAttributeCodec.Input input)
+			throws IOException {
+		Object principal = input.readValue();
+		Object credentials = input.readValue();
+		boolean authenticated = input.readBoolean();
+		List<GrantedAuthority> authorities = readAuthorities(input);
+		UsernamePasswordAuthenticationToken token = authenticated
+				? new UsernamePasswordAuthenticationToken(principal, credentials, authorities)
+				: new UsernamePasswordAuthenticationToken(principal, credentials);
+		token.setDetails(input.readValue());
+		return token;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<GrantedAuthority> readAuthorities(CompactSessionAttributeCodec.Input input) throws IOException {
+		Collection<?> authorities = input.readCollection(ArrayList::new);
+		return (List<GrantedAuthority>) authorities;
+	}
+
+	/**
+	 * Isolates the types of spring-security-web, which is optional.
+	 */
+	private static final class WebTypes {
+
+		private static void register(CompactSessionAttributeCodec codec) {
+			codec.register(44, WebAuthenticationDetails.class, (value, output) -> {
+				output.writeValue(value.getRemoteAddress());
+				output.writeValue(value.getSessionId());
+			}, (input) -> new WebAuthenticationDetails((String) input.readValue(), (String) input.readValue()));
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+/**
+ * Strategy used by the session repositories to convert the session attribute values to
+ * and from bytes.
+ * <p>
+ * All the instances sharing a session store must use compatible codecs.
+ * {@link JdkSessionAttributeCodec} is equivalent to the default serialization of the
+ * stores, while {@link CompactSessionAttributeCodec} produces a more compact encoding
+ * for the common types and can still decode the values written with JDK serialization.
+ *
+ * @since 2.8.0
+ * @see JdkSessionAttributeCodec
+ * @see CompactSessionAttributeCodec
+ */
+public interface SessionAttributeCodec {
+
+	/**
+	 * Encode the provided attribute value.
+	 * @param value the attribute value, possibly {@code null}
+	 * @return the encoded value
+	 * @throws org.springframework.core.serializer.support.SerializationFailedException if
+	 * the value cannot be encoded
+	 */
+	byte[] encode(Object value);
+
+	/**
+	 * Decode an attribute value encoded by {@link #encode(Object)}.
+	 * @param bytes the encoded value
+	 * @return the attribute value, possibly {@code null}
+	 * @throws org.springframework.core.serializer.support.SerializationFailedException if
+	 * the value cannot be decoded
+	 */
+	Object decode(byte[] bytes);
+
+}
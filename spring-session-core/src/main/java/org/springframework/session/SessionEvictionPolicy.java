@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Specifies which sessions are evicted first when a {@link MapSessionRepository} reaches
+ * its maximum number of sessions.
+ *
+ * @since 2.8.0
+ * @see MapSessionRepository#setMaxSessions(int)
+ */
+public enum SessionEvictionPolicy {
+
+	/**
+	 * Evict the sessions with the oldest {@link Session#getLastAccessedTime() last
+	 * accessed time} first.
+	 */
+	LEAST_RECENTLY_USED(Comparator.comparing(Session::getLastAccessedTime)),
+
+	/**
+	 * Evict the sessions that would expire first. Sessions that never expire are evicted
+	 * last.
+	 */
+	OLDEST_EXPIRY(Comparator.comparing(SessionEvictionPolicy::getExpiryTime));
+
+	private final Comparator<Session> comparator;
+
+	SessionEvictionPolicy(Comparator<Session> comparator) {
+		this.comparator = comparator;
+	}
+
+	Comparator<Session> comparator() {
+		return this.comparator;
+	}
+
+	private static Instant getExpiryTime(Session session) {
+		if (session.getMaxInactiveInterval().isNegative()) {
+			return Instant.MAX;
+		}
+		return session.getLastAccessedTime().plus(session.getMaxInactiveInterval());
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An index of the expiration time of the sessions of an in-memory repository, bucketed
+ * by second, so that the expired sessions can be found without scanning all the
+ * sessions.
+ * <p>
+ * Updates of a given session are serialized by one of a fixed number of locks chosen by
+ * session id, so that concurrent updates of different sessions rarely contend. The index
+ * may return sessions that are no longer expired, for instance because they were saved
+ * concurrently, so the callers must check them again.
+ *
+ * @since 2.8.0
+ */
+final class SessionExpiryIndex {
+
+	private static final int LOCK_COUNT = 64;
+
+	private final ConcurrentSkipListMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+
+	private final Map<String, Long> bucketBySessionId = new ConcurrentHashMap<>();
+
+	private final Object[] locks = new Object[LOCK_COUNT];
+
+	SessionExpiryIndex() {
+		for (int i = 0; i < LOCK_COUNT; i++) {
+			this.locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Index the expiration time of the provided session, replacing any previous one.
+	 * Sessions that never expire are removed from the index.
+	 * @param session the session
+	 */
+	void update(Session session) {
+		if (session.getMaxInactiveInterval().isNegative()) {
+			remove(session.getId());
+			return;
+		}
+		long expiryMillis = session.getLastAccessedTime().toEpochMilli() + session.getMaxInactiveInterval().toMillis();
+		update(session.getId(), expiryMillis);
+	}
+
+	/**
+	 * Index the provided expiration time of a session, replacing any previous one.
+	 * @param sessionId the session id
+	 * @param expiryMillis the expiration time in milliseconds since the epoch
+	 */
+	void update(String sessionId, long expiryMillis) {
+		// round up, so that all the sessions of a bucket are expired once the bucket is due
+		Long bucket = Math.floorDiv(expiryMillis + 999, 1000);
+		synchronized (getLock(sessionId)) {
+			Long previousBucket = this.bucketBySessionId.put(sessionId, bucket);
+			if (bucket.equals(previousBucket)) {
+				return;
+			}
+			if (previousBucket != null) {
+				removeFromBucket(previousBucket, sessionId);
+			}
+			this.buckets.computeIfAbsent(bucket, (key) -> ConcurrentHashMap.newKeySet()).add(sessionId);
+		}
+	}
+
+	/**
+	 * Remove the provided session from the index.
+	 * @param sessionId the session id
+	 */
+	void remove(String sessionId) {
+		synchronized (getLock(sessionId)) {
+			Long previousBucket = this.bucketBySessionId.remove(sessionId);
+			if (previousBucket != null) {
+				removeFromBucket(previousBucket, sessionId);
+			}
+		}
+	}
+
+	/**
+	 * Remove and return the ids of the sessions of the oldest bucket that is due at the
+	 * provided time.
+	 * @param now the current time
+	 * @return the session ids, or {@code null} if no bucket is due
+	 */
+	List<String> pollExpired(Instant now) {
+		ConcurrentNavigableMap<Long, Set<String>> due = this.buckets.headMap(now.getEpochSecond(), true);
+		Map.Entry<Long, Set<String>> entry = due.pollFirstEntry();
+		if (entry == null) {
+			return null;
+		}
+		Long bucket = entry.getKey();
+		List<String> sessionIds = new ArrayList<>(entry.getValue().size());
+		for (String sessionId : entry.getValue()) {
+			synchronized (getLock(sessionId)) {
+				if (this.bucketBySessionId.remove(sessionId, bucket)) {
+					sessionIds.add(sessionId);
+				}
+			}
+		}
+		return sessionIds;
+	}
+
+	private void removeFromBucket(Long bucket, String sessionId) {
+		this.buckets.computeIfPresent(bucket, (key, sessionIds) -> {
+			sessionIds.remove(sessionId);
+			return sessionIds.isEmpty() ? null : sessionIds;
+		});
+	}
+
+	private Object getLock(String sessionId) {
+		return this.locks[Math.floorMod(sessionId.hashCode(), LOCK_COUNT)];
+	}
+
+}
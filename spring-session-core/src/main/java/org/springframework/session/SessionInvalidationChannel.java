@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.util.function.Consumer;
+
+/**
+ * A channel used by {@link CachingSessionRepository} instances to notify each other that
+ * a session was saved or deleted, so that they evict it from their cache. Messages are
+ * opaque strings and must be delivered to every subscriber, including the ones of the
+ * publishing instance.
+ *
+ * @since 2.8.0
+ * @see LocalSessionInvalidationChannel
+ */
+public interface SessionInvalidationChannel {
+
+	/**
+	 * Publish the provided message to all the subscribers.
+	 * @param message the message
+	 */
+	void publish(String message);
+
+	/**
+	 * Register a listener to be invoked for every published message.
+	 * @param listener the listener
+	 */
+	void subscribe(Consumer<String> listener);
+
+}
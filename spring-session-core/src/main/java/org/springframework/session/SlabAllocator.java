@@ -0,0 +1,342 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Allocates records of variable length in fixed size slabs of direct memory, for
+ * {@link OffHeapSessionRepository}.
+ * <p>
+ * Records are stored in chunks whose size is a power of two, at least
+ * {@link #MIN_CHUNK_SIZE}, so that freed chunks can be reused by records of the same
+ * size class through one free list per size class. Each record is prefixed by its length
+ * and an arbitrary {@code long} header. A record is identified by an address that
+ * encodes its slab, size class and offset.
+ * <p>
+ * Slabs that are mostly free can be released by relocating their records with
+ * {@link #relocate(long)} once they have been {@link #evacuate(int) evacuated}. If the
+ * relocation fails, the evacuation can be undone using
+ * {@link #cancelEvacuation(List)}. This class is not thread-safe.
+ *
+ * @since 2.8.0
+ */
+final class SlabAllocator {
+
+	static final int MIN_CHUNK_SHIFT = 6;
+
+	static final int MIN_CHUNK_SIZE = 1 << MIN_CHUNK_SHIFT;
+
+	static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES;
+
+	private static final int OFFSET_BITS = 32;
+
+	private static final int SIZE_CLASS_BITS = 6;
+
+	private final int slabSize;
+
+	private final int maxSlabs;
+
+	private final List<ByteBuffer> slabs = new ArrayList<>();
+
+	private final List<Integer> releasedSlabs = new ArrayList<>();
+
+	private long[] liveBytes = new long[0];
+
+	private final LongStack[] freeLists;
+
+	private int currentSlab = -1;
+
+	private int currentOffset;
+
+	SlabAllocator(int slabSize, int maxSlabs) {
+		if (Integer.bitCount(slabSize) != 1 || slabSize < MIN_CHUNK_SIZE) {
+			throw new IllegalArgumentException("slabSize must be a power of two of at least " + MIN_CHUNK_SIZE);
+		}
+		if (maxSlabs <= 0) {
+			throw new IllegalArgumentException("maxSlabs must be greater than 0");
+		}
+		this.slabSize = slabSize;
+		this.maxSlabs = maxSlabs;
+		this.freeLists = new LongStack[sizeClassOf(slabSize) + 1];
+		for (int i = 0; i < this.freeLists.length; i++) {
+			this.freeLists[i] = new LongStack();
+		}
+	}
+
+	/**
+	 * Store a record.
+	 * @param header the header of the record
+	 * @param data the data of the record
+	 * @return the address of the record
+	 */
+	long allocate(long header, byte[] data) {
+		int length = data.length + RECORD_OVERHEAD;
+		if (length > this.slabSize) {
+			throw new IllegalArgumentException(
+					"Record of " + data.length + " bytes does not fit in a slab of " + this.slabSize + " bytes");
+		}
+		int sizeClass = sizeClassOf(length);
+		long address = this.freeLists[sizeClass].isEmpty() ? allocateChunk(sizeClass)
+				: this.freeLists[sizeClass].pop();
+		ByteBuffer slab = this.slabs.get(slab(address));
+		int offset = offset(address);
+		slab.putInt(offset, data.length);
+		slab.putLong(offset + Integer.BYTES, header);
+		ByteBuffer target = slab.duplicate();
+		target.position(offset + RECORD_OVERHEAD);
+		target.put(data);
+		this.liveBytes[slab(address)] += chunkSize(sizeClass);
+		return address;
+	}
+
+	/**
+	 * Return the header of the record at the provided address.
+	 * @param address the address of the record
+	 * @return the header
+	 */
+	long readHeader(long address) {
+		return this.slabs.get(slab(address)).getLong(offset(address) + Integer.BYTES);
+	}
+
+	/**
+	 * Return the data of the record at the provided address.
+	 * @param address the address of the record
+	 * @return the data
+	 */
+	byte[] readData(long address) {
+		ByteBuffer slab = this.slabs.get(slab(address)).duplicate();
+		int offset = offset(address);
+		byte[] data = new byte[slab.getInt(offset)];
+		slab.position(offset + RECORD_OVERHEAD);
+		slab.get(data);
+		return data;
+	}
+
+	/**
+	 * Free the record at the provided address.
+	 * @param address the address of the record
+	 */
+	void free(long address) {
+		int sizeClass = sizeClassAt(address);
+		this.liveBytes[slab(address)] -= chunkSize(sizeClass);
+		this.freeLists[sizeClass].push(address);
+	}
+
+	/**
+	 * Return the slabs other than the one currently allocated from whose ratio of live
+	 * bytes is below the provided threshold.
+	 * @param threshold the ratio of live bytes, between 0 and 1
+	 * @return the slab indexes
+	 */
+	List<Integer> getSparseSlabs(double threshold) {
+		List<Integer> sparseSlabs = new ArrayList<>();
+		for (int i = 0; i < this.slabs.size(); i++) {
+			if (i != this.currentSlab && this.slabs.get(i) != null
+					&& this.liveBytes[i] < threshold * this.slabSize) {
+				sparseSlabs.add(i);
+			}
+		}
+		return sparseSlabs;
+	}
+
+	/**
+	 * Stop allocating from the provided slab, so that its records can be relocated.
+	 * @param slab the slab index
+	 * @return the free chunks of the slab, which are no longer allocated from
+	 */
+	List<Long> evacuate(int slab) {
+		List<Long> freeChunks = new ArrayList<>();
+		for (LongStack freeList : this.freeLists) {
+			freeList.removeIf((address) -> slab(address) == slab, freeChunks::add);
+		}
+		if (this.currentSlab == slab) {
+			this.currentSlab = -1;
+		}
+		return freeChunks;
+	}
+
+	/**
+	 * Allocate from an evacuated slab again, after its records could not be relocated.
+	 * @param freeChunks the free chunks returned by {@link #evacuate(int)}
+	 */
+	void cancelEvacuation(List<Long> freeChunks) {
+		for (long address : freeChunks) {
+			this.freeLists[sizeClassAt(address)].push(address);
+		}
+	}
+
+	/**
+	 * Return the index of the slab of the record at the provided address.
+	 * @param address the address of the record
+	 * @return the slab index
+	 */
+	static int slabOf(long address) {
+		return slab(address);
+	}
+
+	/**
+	 * Copy the record at the provided address to a new chunk, without freeing it.
+	 * @param address the address of the record
+	 * @return the new address of the record
+	 */
+	long relocate(long address) {
+		return allocate(readHeader(address), readData(address));
+	}
+
+	/**
+	 * Release the memory of an evacuated slab whose records have all been relocated.
+	 * @param slab the slab index
+	 */
+	void release(int slab) {
+		this.slabs.set(slab, null);
+		this.liveBytes[slab] = 0;
+		this.releasedSlabs.add(slab);
+	}
+
+	/**
+	 * Return the number of bytes of the allocated slabs.
+	 * @return the number of bytes
+	 */
+	long getCapacity() {
+		return (long) (this.slabs.size() - this.releasedSlabs.size()) * this.slabSize;
+	}
+
+	/**
+	 * Return the number of bytes of the chunks that hold a record.
+	 * @return the number of bytes
+	 */
+	long getUsedBytes() {
+		return Arrays.stream(this.liveBytes).sum();
+	}
+
+	private long allocateChunk(int sizeClass) {
+		int chunkSize = chunkSize(sizeClass);
+		if (this.currentSlab == -1 || this.currentOffset + chunkSize > this.slabSize) {
+			retireCurrentSlab();
+			this.currentSlab = newSlab();
+			this.currentOffset = 0;
+		}
+		long address = address(this.currentSlab, sizeClass, this.currentOffset);
+		this.currentOffset += chunkSize;
+		return address;
+	}
+
+	private void retireCurrentSlab() {
+		if (this.currentSlab == -1) {
+			return;
+		}
+		// make the remainder of the slab available through the free lists
+		int offset = this.currentOffset;
+		int remaining = this.slabSize - offset;
+		while (remaining >= MIN_CHUNK_SIZE) {
+			int sizeClass = 31 - Integer.numberOfLeadingZeros(remaining) - MIN_CHUNK_SHIFT;
+			this.freeLists[sizeClass].push(address(this.currentSlab, sizeClass, offset));
+			offset += chunkSize(sizeClass);
+			remaining -= chunkSize(sizeClass);
+		}
+		// the tail is published once, even if no new slab can be allocated
+		this.currentSlab = -1;
+	}
+
+	private int newSlab() {
+		ByteBuffer slab = ByteBuffer.allocateDirect(this.slabSize);
+		if (!this.releasedSlabs.isEmpty()) {
+			int index = this.releasedSlabs.remove(this.releasedSlabs.size() - 1);
+			this.slabs.set(index, slab);
+			return index;
+		}
+		if (this.slabs.size() >= this.maxSlabs) {
+			throw new IllegalStateException("Off-heap store is full: " + this.maxSlabs + " slabs of "
+					+ this.slabSize + " bytes are allocated");
+		}
+		this.slabs.add(slab);
+		this.liveBytes = Arrays.copyOf(this.liveBytes, this.slabs.size());
+		return this.slabs.size() - 1;
+	}
+
+	private static int sizeClassOf(int length) {
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, MIN_CHUNK_SIZE) - 1);
+		return shift - MIN_CHUNK_SHIFT;
+	}
+
+	private static int chunkSize(int sizeClass) {
+		return MIN_CHUNK_SIZE << sizeClass;
+	}
+
+	private static long address(int slab, int sizeClass, int offset) {
+		return ((long) slab << (OFFSET_BITS + SIZE_CLASS_BITS)) | ((long) sizeClass << OFFSET_BITS)
+				| (offset & 0xFFFFFFFFL);
+	}
+
+	private static int slab(long address) {
+		return (int) (address >>> (OFFSET_BITS + SIZE_CLASS_BITS));
+	}
+
+	private static int sizeClassAt(long address) {
+		return (int) ((address >>> OFFSET_BITS) & ((1 << SIZE_CLASS_BITS) - 1));
+	}
+
+	private static int offset(long address) {
+		return (int) address;
+	}
+
+	/**
+	 * A growable stack of {@code long} values.
+	 */
+	private static final class LongStack {
+
+		private long[] values = new long[16];
+
+		private int size;
+
+		boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		void push(long value) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+			}
+			this.values[this.size++] = value;
+		}
+
+		long pop() {
+			return this.values[--this.size];
+		}
+
+		void removeIf(LongPredicate predicate, LongConsumer removed) {
+			int kept = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (!predicate.test(this.values[i])) {
+					this.values[kept++] = this.values[i];
+				}
+				else {
+					removed.accept(this.values[i]);
+				}
+			}
+			this.size = kept;
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.util.Assert;
+
+/**
+ * Determines how far the {@link Session#getLastAccessedTime() last accessed time} of a
+ * session must move before it is updated when the session is accessed.
+ * <p>
+ * Updating the last accessed time marks the session as changed, so every repository
+ * writes it back to the session store when the session is saved, even if nothing else
+ * changed. By only updating it once it moved by more than a given granularity, most
+ * requests of a client that accesses the session frequently do not cause a write. The
+ * trade-off is that the session may expire up to one granularity earlier than it would
+ * otherwise.
+ *
+ * @since 2.8.0
+ */
+public final class TouchGranularity {
+
+	/**
+	 * Always updates the last accessed time. This is the default.
+	 */
+	public static final TouchGranularity NONE = new TouchGranularity(Duration.ZERO, 0);
+
+	private final Duration duration;
+
+	private final int maxInactiveIntervalPercentage;
+
+	private TouchGranularity(Duration duration, int maxInactiveIntervalPercentage) {
+		this.duration = duration;
+		this.maxInactiveIntervalPercentage = maxInactiveIntervalPercentage;
+	}
+
+	/**
+	 * Only update the last accessed time if it moved by at least the provided duration.
+	 * @param duration the granularity
+	 * @return the touch granularity
+	 */
+	public static TouchGranularity ofDuration(Duration duration) {
+		Assert.notNull(duration, "duration cannot be null");
+		Assert.isTrue(!duration.isNegative(), "duration cannot be negative");
+		return new TouchGranularity(duration, 0);
+	}
+
+	/**
+	 * Only update the last accessed time if it moved by at least the provided percentage
+	 * of the maximum inactive interval of the session.
+	 * @param percentage the granularity, between 0 and 100
+	 * @return the touch granularity
+	 */
+	public static TouchGranularity ofMaxInactiveIntervalPercentage(int percentage) {
+		Assert.isTrue(percentage >= 0 && percentage <= 100, "percentage must be between 0 and 100");
+		return new TouchGranularity(Duration.ZERO, percentage);
+	}
+
+	/**
+	 * Determine whether the last accessed time of the provided session should be updated.
+	 * @param session the session
+	 * @param now the time at which the session is accessed
+	 * @return {@code true} if the last accessed time should be updated
+	 */
+	public boolean shouldTouch(Session session, Instant now) {
+		Duration granularity = getGranularity(session);
+		if (granularity.isZero()) {
+			return true;
+		}
+		return Duration.between(session.getLastAccessedTime(), now).compareTo(granularity) >= 0;
+	}
+
+	/**
+	 * Update the last accessed time of the provided session if it moved by at least the
+	 * granularity.
+	 * @param session the session
+	 * @param now the time at which the session is accessed
+	 * @return {@code true} if the last accessed time was updated
+	 */
+	public boolean touch(Session session, Instant now) {
+		if (!shouldTouch(session, now)) {
+			return false;
+		}
+		session.setLastAccessedTime(now);
+		return true;
+	}
+
+	private Duration getGranularity(Session session) {
+		if (this.maxInactiveIntervalPercentage == 0) {
+			return this.duration;
+		}
+		Duration maxInactiveInterval = session.getMaxInactiveInterval();
+		if (maxInactiveInterval.isNegative()) {
+			return Duration.ZERO;
+		}
+		return maxInactiveInterval.multipliedBy(this.maxInactiveIntervalPercentage).dividedBy(100);
+	}
+
+}
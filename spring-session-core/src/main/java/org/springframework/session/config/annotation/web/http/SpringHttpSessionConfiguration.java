@@ -35,8 +35,10 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.session.Session;
 import org.springframework.session.SessionRepository;
+import org.springframework.session.TouchGranularity;
 import org.springframework.session.events.SessionCreatedEvent;
 import org.springframework.session.events.SessionDestroyedEvent;
+import org.springframework.session.metrics.SessionMetrics;
 import org.springframework.session.security.web.authentication.SpringSessionRememberMeServices;
 import org.springframework.session.web.http.CookieHttpSessionIdResolver;
 import org.springframework.session.web.http.CookieSerializer;
@@ -44,6 +46,7 @@ import org.springframework.session.web.http.DefaultCookieSerializer;
 import org.springframework.session.web.http.HttpSessionIdResolver;
 import org.springframework.session.web.http.SessionEventHttpSessionListenerAdapter;
 import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.session.web.http.WriteBehindSessionSaver;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.ObjectUtils;
 
@@ -93,6 +96,9 @@ import org.springframework.util.ObjectUtils;
 @Configuration(proxyBeanMethods = false)
 public class SpringHttpSessionConfiguration implements ApplicationContextAware {
 
+	private static final boolean MICROMETER_PRESENT = ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+			SpringHttpSessionConfiguration.class.getClassLoader());
+
 	private final Log logger = LogFactory.getLog(getClass());
 
 	/**
@@ -116,6 +122,12 @@ public class SpringHttpSessionConfiguration implements ApplicationContextAware {
 
 	private List<HttpSessionListener> httpSessionListeners = new ArrayList<>();
 
+	private WriteBehindSessionSaver writeBehindSessionSaver;
+
+	private TouchGranularity touchGranularity = TouchGranularity.NONE;
+
+	private ApplicationContext applicationContext;
+
 	/**
 	 * 为什么要在这里加一个这个，会等待 setter @Autowired 完成绑定，为了保证再开发者自己设置 cookieSerializer 之后
 	 */
@@ -143,13 +155,18 @@ public class SpringHttpSessionConfiguration implements ApplicationContextAware {
 	@Bean
 	public <S extends Session> SessionRepositoryFilter<? extends Session> springSessionRepositoryFilter(
 			SessionRepository<S> sessionRepository) {
-		SessionRepositoryFilter<S> sessionRepositoryFilter = new SessionRepositoryFilter<>(sessionRepository);
+		SessionRepository<S> repository = MICROMETER_PRESENT
+				? SessionMetrics.instrument(sessionRepository, this.applicationContext) : sessionRepository;
+		SessionRepositoryFilter<S> sessionRepositoryFilter = new SessionRepositoryFilter<>(repository);
 		sessionRepositoryFilter.setHttpSessionIdResolver(this.httpSessionIdResolver);
+		sessionRepositoryFilter.setWriteBehindSessionSaver(this.writeBehindSessionSaver);
+		sessionRepositoryFilter.setTouchGranularity(this.touchGranularity);
 		return sessionRepositoryFilter;
 	}
 
 	@Override
 	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+		this.applicationContext = applicationContext;
 		if (ClassUtils.isPresent("org.springframework.security.web.authentication.RememberMeServices", null)) {
 			this.usesSpringSessionRememberMeServices = !ObjectUtils
 					.isEmpty(applicationContext.getBeanNamesForType(SpringSessionRememberMeServices.class));
@@ -174,6 +191,16 @@ public class SpringHttpSessionConfiguration implements ApplicationContextAware {
 		this.httpSessionIdResolver = httpSessionIdResolver;
 	}
 
+	@Autowired(required = false)
+	public void setWriteBehindSessionSaver(WriteBehindSessionSaver writeBehindSessionSaver) {
+		this.writeBehindSessionSaver = writeBehindSessionSaver;
+	}
+
+	@Autowired(required = false)
+	public void setTouchGranularity(TouchGranularity touchGranularity) {
+		this.touchGranularity = touchGranularity;
+	}
+
 	@Autowired(required = false)
 	public void setHttpSessionListeners(List<HttpSessionListener> listeners) {
 		this.httpSessionListeners = listeners;
@@ -16,12 +16,18 @@
 
 package org.springframework.session.config.annotation.web.server;
 
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.session.ReactiveSessionRepository;
 import org.springframework.session.Session;
+import org.springframework.session.TouchGranularity;
+import org.springframework.session.metrics.SessionMetrics;
 import org.springframework.session.web.server.session.SpringSessionWebSessionStore;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
 import org.springframework.web.server.session.DefaultWebSessionManager;
 import org.springframework.web.server.session.WebSessionIdResolver;
@@ -37,15 +43,32 @@ import org.springframework.web.server.session.WebSessionManager;
  * @see EnableSpringWebSession
  */
 @Configuration(proxyBeanMethods = false)
-public class SpringWebSessionConfiguration {
+public class SpringWebSessionConfiguration implements ApplicationContextAware {
+
+	private static final boolean MICROMETER_PRESENT = ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+			SpringWebSessionConfiguration.class.getClassLoader());
 
 	private WebSessionIdResolver webSessionIdResolver;
 
+	private TouchGranularity touchGranularity = TouchGranularity.NONE;
+
+	private ApplicationContext applicationContext;
+
 	@Autowired(required = false)
 	public void setWebSessionIdResolver(WebSessionIdResolver webSessionIdResolver) {
 		this.webSessionIdResolver = webSessionIdResolver;
 	}
 
+	@Autowired(required = false)
+	public void setTouchGranularity(TouchGranularity touchGranularity) {
+		this.touchGranularity = touchGranularity;
+	}
+
+	@Override
+	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+		this.applicationContext = applicationContext;
+	}
+
 	/**
 	 * Configure a {@link WebSessionManager} using a provided
 	 * {@link ReactiveSessionRepository}.
@@ -55,7 +78,8 @@ public class SpringWebSessionConfiguration {
 	 */
 	@Bean(WebHttpHandlerBuilder.WEB_SESSION_MANAGER_BEAN_NAME)
 	public WebSessionManager webSessionManager(ReactiveSessionRepository<? extends Session> repository) {
-		SpringSessionWebSessionStore<? extends Session> sessionStore = new SpringSessionWebSessionStore<>(repository);
+		SpringSessionWebSessionStore<? extends Session> sessionStore = createSessionStore(repository);
+		sessionStore.setTouchGranularity(this.touchGranularity);
 		DefaultWebSessionManager manager = new DefaultWebSessionManager();
 		manager.setSessionStore(sessionStore);
 
@@ -66,4 +90,11 @@ public class SpringWebSessionConfiguration {
 		return manager;
 	}
 
+	private <S extends Session> SpringSessionWebSessionStore<S> createSessionStore(
+			ReactiveSessionRepository<S> repository) {
+		ReactiveSessionRepository<S> sessionRepository = MICROMETER_PRESENT
+				? SessionMetrics.instrument(repository, this.applicationContext) : repository;
+		return new SpringSessionWebSessionStore<>(sessionRepository);
+	}
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.session.CompressingSessionAttributeCodec;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MeterBinder} that publishes the statistics of a
+ * {@link CompressingSessionAttributeCodec}:
+ * <ul>
+ * <li>{@code spring.session.compression.values}: the number of compressed values</li>
+ * <li>{@code spring.session.compression.bytes}: the size of the compressed values tagged
+ * with the {@code stage}, {@code uncompressed} or {@code compressed}</li>
+ * <li>{@code spring.session.compression.ratio}: the overall ratio of the compressed size
+ * to the uncompressed size</li>
+ * </ul>
+ * It can be exposed as a bean to be bound automatically by Spring Boot.
+ *
+ * @since 2.8.0
+ */
+public class CompressionMetrics implements MeterBinder {
+
+	private final CompressingSessionAttributeCodec codec;
+
+	private final Iterable<Tag> tags;
+
+	/**
+	 * Create a new instance.
+	 * @param codec the codec to publish the statistics of
+	 */
+	public CompressionMetrics(CompressingSessionAttributeCodec codec) {
+		this(codec, Tags.empty());
+	}
+
+	/**
+	 * Create a new instance.
+	 * @param codec the codec to publish the statistics of
+	 * @param tags the tags added to the meters
+	 */
+	public CompressionMetrics(CompressingSessionAttributeCodec codec, Iterable<Tag> tags) {
+		Assert.notNull(codec, "codec cannot be null");
+		Assert.notNull(tags, "tags cannot be null");
+		this.codec = codec;
+		this.tags = tags;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder(SessionMetrics.COMPRESSION_VALUES, this.codec,
+				CompressingSessionAttributeCodec::getCompressedCount).description("The number of compressed values")
+				.tags(this.tags).register(registry);
+		FunctionCounter.builder(SessionMetrics.COMPRESSION_BYTES, this.codec,
+				CompressingSessionAttributeCodec::getUncompressedBytes)
+				.description("The size of the compressed values before compression").baseUnit("bytes")
+				.tags(this.tags).tag("stage", "uncompressed").register(registry);
+		FunctionCounter.builder(SessionMetrics.COMPRESSION_BYTES, this.codec,
+				CompressingSessionAttributeCodec::getCompressedBytes)
+				.description("The size of the compressed values after compression").baseUnit("bytes")
+				.tags(this.tags).tag("stage", "compressed").register(registry);
+		Gauge.builder(SessionMetrics.COMPRESSION_RATIO, this.codec, CompressionMetrics::compressionRatio)
+				.description("The ratio of the compressed size to the uncompressed size").tags(this.tags)
+				.register(registry);
+	}
+
+	private static double compressionRatio(CompressingSessionAttributeCodec codec) {
+		long uncompressedBytes = codec.getUncompressedBytes();
+		return (uncompressedBytes > 0) ? (double) codec.getCompressedBytes() / uncompressedBytes : Double.NaN;
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.session.events.SessionExpiredEvent;
+import org.springframework.util.Assert;
+
+/**
+ * Counts the {@link SessionExpiredEvent}s published by the session repositories, tagged
+ * with the type of the repository that published them. Only the repositories that
+ * publish session events are covered.
+ *
+ * @since 2.8.0
+ */
+public class ExpiredSessionMetricsListener implements ApplicationListener<SessionExpiredEvent> {
+
+	private final MeterRegistry meterRegistry;
+
+	/**
+	 * Create a new instance.
+	 * @param meterRegistry the registry to register the counters with
+	 */
+	public ExpiredSessionMetricsListener(MeterRegistry meterRegistry) {
+		Assert.notNull(meterRegistry, "meterRegistry cannot be null");
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void onApplicationEvent(SessionExpiredEvent event) {
+		Counter.builder(SessionMetrics.EXPIRED).description("The expired sessions")
+				.tags(SessionMetrics.repositoryTags(event.getSource())).register(this.meterRegistry).increment();
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.metrics;
+
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import org.springframework.session.ReactiveSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ReactiveSessionRepository} that records metrics about the invocations of
+ * another {@link ReactiveSessionRepository} with Micrometer. The meters are the same as
+ * the ones of {@link MeteredSessionRepository}, except for the session size and the
+ * cache lookups. The operations are timed from subscription to termination.
+ *
+ * @param <S> the {@link Session} type
+ * @since 2.8.0
+ */
+public class MeteredReactiveSessionRepository<S extends Session> implements ReactiveSessionRepository<S> {
+
+	private final ReactiveSessionRepository<S> sessionRepository;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Timer createSessionTimer;
+
+	private final Timer saveTimer;
+
+	private final Timer findByIdTimer;
+
+	private final Timer deleteByIdTimer;
+
+	private final Counter foundCounter;
+
+	private final Counter notFoundCounter;
+
+	private final DistributionSummary attributeCountSummary;
+
+	/**
+	 * Create a new instance.
+	 * @param sessionRepository the repository to record the metrics of
+	 * @param meterRegistry the registry to register the meters with
+	 */
+	public MeteredReactiveSessionRepository(ReactiveSessionRepository<S> sessionRepository,
+			MeterRegistry meterRegistry) {
+		Assert.notNull(sessionRepository, "sessionRepository cannot be null");
+		Assert.notNull(meterRegistry, "meterRegistry cannot be null");
+		this.sessionRepository = sessionRepository;
+		this.meterRegistry = meterRegistry;
+		Tags tags = SessionMetrics.repositoryTags(sessionRepository);
+		this.createSessionTimer = SessionMetrics.operationTimer("createSession", tags, meterRegistry);
+		this.saveTimer = SessionMetrics.operationTimer("save", tags, meterRegistry);
+		this.findByIdTimer = SessionMetrics.operationTimer("findById", tags, meterRegistry);
+		this.deleteByIdTimer = SessionMetrics.operationTimer("deleteById", tags, meterRegistry);
+		this.foundCounter = SessionMetrics.lookupCounter("found", tags, meterRegistry);
+		this.notFoundCounter = SessionMetrics.lookupCounter("not_found", tags, meterRegistry);
+		this.attributeCountSummary = DistributionSummary.builder(SessionMetrics.ATTRIBUTES)
+				.description("The number of attributes of saved sessions").tags(tags).register(meterRegistry);
+	}
+
+	@Override
+	public Mono<S> createSession() {
+		return timed(this.sessionRepository::createSession, this.createSessionTimer);
+	}
+
+	@Override
+	public Mono<Void> save(S session) {
+		return timed(() -> this.sessionRepository.save(session), this.saveTimer)
+				.doOnSuccess((result) -> this.attributeCountSummary.record(session.getAttributeNames().size()));
+	}
+
+	@Override
+	public Mono<S> findById(String id) {
+		return timed(() -> this.sessionRepository.findById(id), this.findByIdTimer).doOnSuccess((session) -> {
+			if (session != null) {
+				this.foundCounter.increment();
+			}
+			else {
+				this.notFoundCounter.increment();
+			}
+		});
+	}
+
+	@Override
+	public Mono<Void> deleteById(String id) {
+		return timed(() -> this.sessionRepository.deleteById(id), this.deleteByIdTimer);
+	}
+
+	private <T> Mono<T> timed(Supplier<Mono<T>> operation, Timer timer) {
+		return Mono.defer(() -> {
+			Timer.Sample sample = Timer.start(this.meterRegistry);
+			return operation.get().doFinally((signalType) -> sample.stop(timer));
+		});
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.session.CachingSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionRepository} that records metrics about the invocations of another
+ * {@link SessionRepository} with Micrometer. All the meters are tagged with the
+ * {@code repository} type:
+ * <ul>
+ * <li>{@code spring.session.operations}: a timer tagged with the {@code operation}</li>
+ * <li>{@code spring.session.lookups}: a counter of {@link #findById(String)} tagged with
+ * the {@code result}, {@code found} or {@code not_found}. Sessions are not found when the
+ * session id is invalid or the session expired.</li>
+ * <li>{@code spring.session.attributes}: the number of attributes of saved sessions</li>
+ * <li>{@code spring.session.size}: the serialized size of a sample of the saved sessions,
+ * only if a {@link #setSessionSizeFunction(ToIntFunction) session size function} is
+ * set</li>
+ * <li>{@code spring.session.cache.lookups}: the cache hits and misses tagged with the
+ * {@code result}, {@code hit} or {@code miss}, if the repository is a
+ * {@link CachingSessionRepository}</li>
+ * </ul>
+ *
+ * @param <S> the {@link Session} type
+ * @since 2.8.0
+ */
+public class MeteredSessionRepository<S extends Session> implements SessionRepository<S> {
+
+	/**
+	 * The default interval between the saves whose session size is recorded.
+	 */
+	public static final int DEFAULT_SESSION_SIZE_SAMPLE_INTERVAL = 100;
+
+	private final SessionRepository<S> sessionRepository;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Tags tags;
+
+	private final Timer createSessionTimer;
+
+	private final Timer saveTimer;
+
+	private final Timer findByIdTimer;
+
+	private final Timer deleteByIdTimer;
+
+	private final Counter foundCounter;
+
+	private final Counter notFoundCounter;
+
+	private final DistributionSummary attributeCountSummary;
+
+	private DistributionSummary sessionSizeSummary;
+
+	private final AtomicLong saveCount = new AtomicLong();
+
+	private ToIntFunction<? super S> sessionSizeFunction;
+
+	private int sessionSizeSampleInterval = DEFAULT_SESSION_SIZE_SAMPLE_INTERVAL;
+
+	/**
+	 * Create a new instance.
+	 * @param sessionRepository the repository to record the metrics of
+	 * @param meterRegistry the registry to register the meters with
+	 */
+	public MeteredSessionRepository(SessionRepository<S> sessionRepository, MeterRegistry meterRegistry) {
+		Assert.notNull(sessionRepository, "sessionRepository cannot be null");
+		Assert.notNull(meterRegistry, "meterRegistry cannot be null");
+		this.sessionRepository = sessionRepository;
+		this.meterRegistry = meterRegistry;
+		this.tags = SessionMetrics.repositoryTags(sessionRepository);
+		this.createSessionTimer = SessionMetrics.operationTimer("createSession", this.tags, meterRegistry);
+		this.saveTimer = SessionMetrics.operationTimer("save", this.tags, meterRegistry);
+		this.findByIdTimer = SessionMetrics.operationTimer("findById", this.tags, meterRegistry);
+		this.deleteByIdTimer = SessionMetrics.operationTimer("deleteById", this.tags, meterRegistry);
+		this.foundCounter = SessionMetrics.lookupCounter("found", this.tags, meterRegistry);
+		this.notFoundCounter = SessionMetrics.lookupCounter("not_found", this.tags, meterRegistry);
+		this.attributeCountSummary = DistributionSummary.builder(SessionMetrics.ATTRIBUTES)
+				.description("The number of attributes of saved sessions").tags(this.tags).register(meterRegistry);
+		if (sessionRepository instanceof CachingSessionRepository) {
+			registerCacheMeters((CachingSessionRepository<?>) sessionRepository);
+		}
+	}
+
+	/**
+	 * Set the function used to compute the serialized size in bytes of the saved
+	 * sessions, which enables the {@code spring.session.size} summary. A negative size is
+	 * not recorded. By default, the size is not recorded, since a function that reads the
+	 * attributes, such as {@link SessionMetrics#estimateSerializedSize(Session)}, loads
+	 * lazily deserialized attributes and may mark them as changed.
+	 * @param sessionSizeFunction the session size function
+	 */
+	public void setSessionSizeFunction(ToIntFunction<? super S> sessionSizeFunction) {
+		Assert.notNull(sessionSizeFunction, "sessionSizeFunction cannot be null");
+		if (this.sessionSizeSummary == null) {
+			this.sessionSizeSummary = DistributionSummary.builder(SessionMetrics.SIZE)
+					.description("The serialized size of saved sessions").baseUnit("bytes").tags(this.tags)
+					.register(this.meterRegistry);
+		}
+		this.sessionSizeFunction = sessionSizeFunction;
+	}
+
+	/**
+	 * Set the interval between the saves whose session size is recorded, since computing
+	 * it serializes the session again. Default is
+	 * {@link #DEFAULT_SESSION_SIZE_SAMPLE_INTERVAL}, {@code 1} records the size of every
+	 * saved session.
+	 * @param sessionSizeSampleInterval the session size sample interval
+	 */
+	public void setSessionSizeSampleInterval(int sessionSizeSampleInterval) {
+		Assert.isTrue(sessionSizeSampleInterval > 0, "sessionSizeSampleInterval must be greater than 0");
+		this.sessionSizeSampleInterval = sessionSizeSampleInterval;
+	}
+
+	@Override
+	public S createSession() {
+		return this.createSessionTimer.record(this.sessionRepository::createSession);
+	}
+
+	@Override
+	public void save(S session) {
+		this.saveTimer.record(() -> this.sessionRepository.save(session));
+		this.attributeCountSummary.record(session.getAttributeNames().size());
+		if (this.sessionSizeFunction != null
+				&& this.saveCount.getAndIncrement() % this.sessionSizeSampleInterval == 0) {
+			int size = this.sessionSizeFunction.applyAsInt(session);
+			if (size >= 0) {
+				this.sessionSizeSummary.record(size);
+			}
+		}
+	}
+
+	@Override
+	public S findById(String id) {
+		S session = this.findByIdTimer.record(() -> this.sessionRepository.findById(id));
+		if (session != null) {
+			this.foundCounter.increment();
+		}
+		else {
+			this.notFoundCounter.increment();
+		}
+		return session;
+	}
+
+	@Override
+	public void deleteById(String id) {
+		this.deleteByIdTimer.record(() -> this.sessionRepository.deleteById(id));
+	}
+
+	private void registerCacheMeters(CachingSessionRepository<?> cachingSessionRepository) {
+		FunctionCounter.builder(SessionMetrics.CACHE_LOOKUPS, cachingSessionRepository,
+				CachingSessionRepository::getCacheHitCount).description("The session lookups served from the cache")
+				.tags(this.tags).tag("result", "hit").register(this.meterRegistry);
+		FunctionCounter.builder(SessionMetrics.CACHE_LOOKUPS, cachingSessionRepository,
+				CachingSessionRepository::getCacheMissCount).description("The session lookups not found in the cache")
+				.tags(this.tags).tag("result", "miss").register(this.meterRegistry);
+	}
+
+}
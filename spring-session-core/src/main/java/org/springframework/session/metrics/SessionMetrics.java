@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.session.ReactiveSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The names of the meters recorded by {@link MeteredSessionRepository},
+ * {@link MeteredReactiveSessionRepository}, {@link ExpiredSessionMetricsListener} and
+ * {@link CompressionMetrics}, along with the support used by the configuration to
+ * instrument the session repositories when a {@link MeterRegistry} is available.
+ *
+ * @since 2.8.0
+ */
+public final class SessionMetrics {
+
+	/**
+	 * The name of the timer of the repository operations.
+	 */
+	public static final String OPERATIONS = "spring.session.operations";
+
+	/**
+	 * The name of the counter of the session lookups.
+	 */
+	public static final String LOOKUPS = "spring.session.lookups";
+
+	/**
+	 * The name of the distribution summary of the number of attributes of saved sessions.
+	 */
+	public static final String ATTRIBUTES = "spring.session.attributes";
+
+	/**
+	 * The name of the distribution summary of the serialized size of saved sessions.
+	 */
+	public static final String SIZE = "spring.session.size";
+
+	/**
+	 * The name of the counter of the session lookups of a cache.
+	 */
+	public static final String CACHE_LOOKUPS = "spring.session.cache.lookups";
+
+	/**
+	 * The name of the counter of expired sessions.
+	 */
+	public static final String EXPIRED = "spring.session.expired";
+
+	/**
+	 * The name of the counter of the attribute values stored compressed.
+	 */
+	public static final String COMPRESSION_VALUES = "spring.session.compression.values";
+
+	/**
+	 * The name of the counter of the size of the compressed attribute values.
+	 */
+	public static final String COMPRESSION_BYTES = "spring.session.compression.bytes";
+
+	/**
+	 * The name of the gauge of the compression ratio of the attribute values.
+	 */
+	public static final String COMPRESSION_RATIO = "spring.session.compression.ratio";
+
+	private static final SerializingConverter SERIALIZER = new SerializingConverter();
+
+	private SessionMetrics() {
+	}
+
+	/**
+	 * Instrument the provided repository if the provided context has a single
+	 * {@link MeterRegistry}, and count the expired sessions it publishes events for.
+	 * @param sessionRepository the session repository
+	 * @param applicationContext the application context
+	 * @param <S> the {@link Session} type
+	 * @return the instrumented repository, or the provided one if there is no
+	 * {@link MeterRegistry}
+	 */
+	public static <S extends Session> SessionRepository<S> instrument(SessionRepository<S> sessionRepository,
+			ApplicationContext applicationContext) {
+		MeterRegistry meterRegistry = getMeterRegistry(applicationContext);
+		if (meterRegistry == null) {
+			return sessionRepository;
+		}
+		addExpiredSessionMetricsListener(meterRegistry, applicationContext);
+		return new MeteredSessionRepository<>(sessionRepository, meterRegistry);
+	}
+
+	/**
+	 * Instrument the provided repository if the provided context has a single
+	 * {@link MeterRegistry}, and count the expired sessions it publishes events for.
+	 * @param sessionRepository the session repository
+	 * @param applicationContext the application context
+	 * @param <S> the {@link Session} type
+	 * @return the instrumented repository, or the provided one if there is no
+	 * {@link MeterRegistry}
+	 */
+	public static <S extends Session> ReactiveSessionRepository<S> instrument(
+			ReactiveSessionRepository<S> sessionRepository, ApplicationContext applicationContext) {
+		MeterRegistry meterRegistry = getMeterRegistry(applicationContext);
+		if (meterRegistry == null) {
+			return sessionRepository;
+		}
+		addExpiredSessionMetricsListener(meterRegistry, applicationContext);
+		return new MeteredReactiveSessionRepository<>(sessionRepository, meterRegistry);
+	}
+
+	static Tags repositoryTags(Object sessionRepository) {
+		return Tags.of("repository", ClassUtils.getUserClass(sessionRepository).getSimpleName());
+	}
+
+	static Timer operationTimer(String operation, Tags tags, MeterRegistry meterRegistry) {
+		return Timer.builder(OPERATIONS).description("The time taken by the session repository operations")
+				.tags(tags).tag("operation", operation).register(meterRegistry);
+	}
+
+	/**
+	 * Estimate the serialized size of the provided session as the size of its attribute
+	 * values serialized with Java serialization. This can be used as the
+	 * {@link MeteredSessionRepository#setSessionSizeFunction(java.util.function.ToIntFunction)
+	 * session size function}, but since it reads every attribute, it loads the lazily
+	 * deserialized attributes and, with {@link org.springframework.session.SaveMode#ON_GET_ATTRIBUTE},
+	 * makes the next save write all of them.
+	 * @param session the session
+	 * @return the estimated size in bytes, or {@code -1} if an attribute value cannot be
+	 * serialized
+	 */
+	public static int estimateSerializedSize(Session session) {
+		int size = 0;
+		for (String attributeName : session.getAttributeNames()) {
+			Object attributeValue = session.getAttribute(attributeName);
+			if (attributeValue == null) {
+				continue;
+			}
+			try {
+				size += SERIALIZER.convert(attributeValue).length;
+			}
+			catch (RuntimeException ex) {
+				return -1;
+			}
+		}
+		return size;
+	}
+
+	static Counter lookupCounter(String result, Tags tags, MeterRegistry meterRegistry) {
+		return Counter.builder(LOOKUPS).description("The session lookups by id").tags(tags).tag("result", result)
+				.register(meterRegistry);
+	}
+
+	private static MeterRegistry getMeterRegistry(ApplicationContext applicationContext) {
+		return (applicationContext != null) ? applicationContext.getBeanProvider(MeterRegistry.class).getIfUnique()
+				: null;
+	}
+
+	private static void addExpiredSessionMetricsListener(MeterRegistry meterRegistry,
+			ApplicationContext applicationContext) {
+		if (applicationContext instanceof ConfigurableApplicationContext) {
+			((ConfigurableApplicationContext) applicationContext)
+					.addApplicationListener(new ExpiredSessionMetricsListener(meterRegistry));
+		}
+	}
+
+}
@@ -16,9 +16,9 @@
 
 package org.springframework.session.security;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.session.SessionInformation;
@@ -37,6 +37,12 @@ import org.springframework.util.Assert;
  * look up the user's sessions.
  * <p>
  * Does not support {@link #getAllPrincipals()}, since that information is not available.
+ * <p>
+ * The sessions of a principal are read using
+ * {@link FindByIndexNameSessionRepository#streamByIndexNameAndIndexValue(String, String)},
+ * so that repositories that support it load them in batches rather than all at once, and
+ * {@link #getAllSessions(Object, boolean, int)} stops loading them once the limit is
+ * reached.
  *
  * @param <S> the {@link Session} type.
  * @author Joris Kuipers
@@ -61,15 +67,28 @@ public class SpringSessionBackedSessionRegistry<S extends Session> implements Se
 
 	@Override
 	public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
-		Collection<S> sessions = this.sessionRepository.findByPrincipalName(name(principal)).values();
-		List<SessionInformation> infos = new ArrayList<>();
-		for (S session : sessions) {
-			if (includeExpiredSessions
-					|| !Boolean.TRUE.equals(session.getAttribute(SpringSessionBackedSessionInformation.EXPIRED_ATTR))) {
-				infos.add(new SpringSessionBackedSessionInformation<>(session, this.sessionRepository));
-			}
+		return getAllSessions(principal, includeExpiredSessions, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Same as {@link #getAllSessions(Object, boolean)} but returns at most {@code limit}
+	 * sessions, without loading the remaining sessions of the principal.
+	 * @param principal the principal
+	 * @param includeExpiredSessions whether to include the sessions that were marked as
+	 * expired
+	 * @param limit the maximum number of sessions to return
+	 * @return the sessions of the principal
+	 * @since 2.8.0
+	 */
+	public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions, int limit) {
+		Assert.isTrue(limit > 0, "limit must be greater than 0");
+		try (Stream<S> sessions = this.sessionRepository.streamByIndexNameAndIndexValue(
+				FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME, name(principal))) {
+			return sessions.filter((session) -> includeExpiredSessions || !isMarkedExpired(session)).limit(limit)
+					.<SessionInformation>map(
+							(session) -> new SpringSessionBackedSessionInformation<>(session, this.sessionRepository))
+					.collect(Collectors.toList());
 		}
-		return infos;
 	}
 
 	@Override
@@ -113,4 +132,8 @@ public class SpringSessionBackedSessionRegistry<S extends Session> implements Se
 		return new TestingAuthenticationToken(principal, null).getName();
 	}
 
+	private static boolean isMarkedExpired(Session session) {
+		return Boolean.TRUE.equals(session.getAttribute(SpringSessionBackedSessionInformation.EXPIRED_ATTR));
+	}
+
 }
@@ -37,6 +37,7 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.core.annotation.Order;
 import org.springframework.session.Session;
 import org.springframework.session.SessionRepository;
+import org.springframework.session.TouchGranularity;
 
 /**
  * Switches the {@link javax.servlet.http.HttpSession} implementation to be backed by a
@@ -71,6 +72,12 @@ import org.springframework.session.SessionRepository;
  * persisted properly.
  * </p>
  *
+ * <p>
+ * By default the session is saved on the request thread. If a
+ * {@link WriteBehindSessionSaver} is set, sessions that are neither new nor had their id
+ * changed can instead be saved asynchronously, depending on its {@link WriteBehindMode}.
+ * </p>
+ *
  * @param <S> the {@link Session} type.
  * @author Rob Winch
  * @author Vedran Pavic
@@ -113,6 +120,10 @@ public class SessionRepositoryFilter<S extends Session> extends OncePerRequestFi
 
 	private HttpSessionIdResolver httpSessionIdResolver = new CookieHttpSessionIdResolver();
 
+	private WriteBehindSessionSaver writeBehindSessionSaver;
+
+	private TouchGranularity touchGranularity = TouchGranularity.NONE;
+
 	/**
 	 * Creates a new instance.
 	 *
@@ -139,6 +150,33 @@ public class SessionRepositoryFilter<S extends Session> extends OncePerRequestFi
 		this.httpSessionIdResolver = httpSessionIdResolver;
 	}
 
+	/**
+	 * Sets the {@link TouchGranularity} used to decide whether the last accessed time of
+	 * a requested session is updated. The default is {@link TouchGranularity#NONE}, which
+	 * always updates it.
+	 *
+	 * @param touchGranularity the {@link TouchGranularity} to use. Cannot be null.
+	 * @since 2.8.0
+	 */
+	public void setTouchGranularity(TouchGranularity touchGranularity) {
+		if (touchGranularity == null) {
+			throw new IllegalArgumentException("touchGranularity cannot be null");
+		}
+		this.touchGranularity = touchGranularity;
+	}
+
+	/**
+	 * Sets the {@link WriteBehindSessionSaver} used to save sessions asynchronously. The
+	 * default is to save all sessions on the request thread.
+	 *
+	 * @param writeBehindSessionSaver the {@link WriteBehindSessionSaver} to use, or
+	 *                                {@code null} to save all sessions synchronously
+	 * @since 2.8.0
+	 */
+	public void setWriteBehindSessionSaver(WriteBehindSessionSaver writeBehindSessionSaver) {
+		this.writeBehindSessionSaver = writeBehindSessionSaver;
+	}
+
 	@Override
 	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
 			throws ServletException, IOException {
@@ -264,16 +302,42 @@ public class SessionRepositoryFilter<S extends Session> extends OncePerRequestFi
 
 				clearRequestedSessionCache();
 
+				String sessionId = session.getId();
+				boolean sessionIdChanged = !isRequestedSessionIdValid() || !sessionId.equals(getRequestedSessionId());
+
 				// 在响应提交之前，保存到仓库中
-				SessionRepositoryFilter.this.sessionRepository.save(session);
+				if (!sessionIdChanged && canSaveLater(wrappedSession)) {
+					saveLater(wrappedSession);
+				}
+				else {
+					SessionRepositoryFilter.this.sessionRepository.save(session);
+				}
 
-				String sessionId = session.getId();
-				if (!isRequestedSessionIdValid() || !sessionId.equals(getRequestedSessionId())) {
+				if (sessionIdChanged) {
 					SessionRepositoryFilter.this.httpSessionIdResolver.setSessionId(this, this.response, sessionId);
 				}
 			}
 		}
 
+		private boolean canSaveLater(HttpSessionWrapper wrappedSession) {
+			WriteBehindSessionSaver writeBehindSessionSaver = SessionRepositoryFilter.this.writeBehindSessionSaver;
+			return writeBehindSessionSaver != null && (writeBehindSessionSaver.getMode() == WriteBehindMode.ALL
+					|| !wrappedSession.modified);
+		}
+
+		/**
+		 * Hands the session to the {@link WriteBehindSessionSaver}, falling back to saving
+		 * it on the current thread if its queue is full.
+		 */
+		private void saveLater(HttpSessionWrapper wrappedSession) {
+			S session = wrappedSession.getSession();
+			SessionRepository<S> sessionRepository = SessionRepositoryFilter.this.sessionRepository;
+			if (!SessionRepositoryFilter.this.writeBehindSessionSaver.saveLater(session, sessionRepository,
+					!wrappedSession.modified)) {
+				sessionRepository.save(session);
+			}
+		}
+
 		/**
 		 * 获取当前会话。从 request attribute 中获取
 		 */
@@ -323,7 +387,7 @@ public class SessionRepositoryFilter<S extends Session> extends OncePerRequestFi
 			if (this.requestedSessionIdValid == null) {
 				S requestedSession = getRequestedSession();
 				if (requestedSession != null) {
-					requestedSession.setLastAccessedTime(Instant.now());
+					SessionRepositoryFilter.this.touchGranularity.touch(requestedSession, Instant.now());
 				}
 				return isRequestedSessionIdValid(requestedSession);
 			}
@@ -359,7 +423,7 @@ public class SessionRepositoryFilter<S extends Session> extends OncePerRequestFi
 				// Spring Session 只相信第一次的判断，第一次判断无效，以后就算有效也不会理会
 				if (getAttribute(INVALID_SESSION_ID_ATTR) == null) {
 					// 设置最后一次访问时间
-					requestedSession.setLastAccessedTime(Instant.now());
+					SessionRepositoryFilter.this.touchGranularity.touch(requestedSession, Instant.now());
 
 					// 记录 session id 有效
 					this.requestedSessionIdValid = true;
@@ -476,10 +540,35 @@ public class SessionRepositoryFilter<S extends Session> extends OncePerRequestFi
 		 */
 		private final class HttpSessionWrapper extends HttpSessionAdapter<S> {
 
+			/**
+			 * Whether the session was modified through this wrapper, which prevents it
+			 * from being saved asynchronously in
+			 * {@link WriteBehindMode#LAST_ACCESSED_TIME_ONLY} mode.
+			 */
+			private boolean modified;
+
 			HttpSessionWrapper(S session, ServletContext servletContext) {
 				super(session, servletContext);
 			}
 
+			@Override
+			public void setMaxInactiveInterval(int interval) {
+				super.setMaxInactiveInterval(interval);
+				this.modified = true;
+			}
+
+			@Override
+			public void setAttribute(String name, Object value) {
+				super.setAttribute(name, value);
+				this.modified = true;
+			}
+
+			@Override
+			public void removeAttribute(String name) {
+				super.removeAttribute(name);
+				this.modified = true;
+			}
+
 			@Override
 			public void invalidate() {
 				// 先标记一下我已经调用过 invalidate 方法
@@ -495,6 +584,9 @@ public class SessionRepositoryFilter<S extends Session> extends OncePerRequestFi
 				clearRequestedSessionCache();
 
 				// 从会话仓库中删除
+				if (SessionRepositoryFilter.this.writeBehindSessionSaver != null) {
+					SessionRepositoryFilter.this.writeBehindSessionSaver.cancel(getId());
+				}
 				SessionRepositoryFilter.this.sessionRepository.deleteById(getId());
 			}
 
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.web.http;
+
+/**
+ * Specifies which sessions a {@link WriteBehindSessionSaver} saves asynchronously.
+ * Sessions that are new or whose id changed during the request are always saved
+ * synchronously, so that the session id sent to the client can be resolved by the next
+ * request.
+ *
+ * @since 2.8.0
+ */
+public enum WriteBehindMode {
+
+	/**
+	 * Only sessions that were not modified through the {@code HttpSession} during the
+	 * request, apart from updating the last accessed time, are saved asynchronously.
+	 */
+	LAST_ACCESSED_TIME_ONLY,
+
+	/**
+	 * All sessions are saved asynchronously.
+	 */
+	ALL
+
+}
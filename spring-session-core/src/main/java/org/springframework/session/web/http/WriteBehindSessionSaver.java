@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.web.http;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.util.Assert;
+
+/**
+ * Saves sessions on behalf of {@link SessionRepositoryFilter} using a pool of worker
+ * threads, so that the response time of a request does not include the write to the
+ * session store.
+ * <p>
+ * Each worker has a bounded queue and the sessions are assigned to the workers by id, so
+ * that the saves of a given session are performed in order. If a session is submitted
+ * while a previous save of the same session is still queued, the previous save is
+ * replaced if it only updates the last accessed time, and otherwise both are performed
+ * in order, since each one may carry changes of its own request. If the queue of a worker is full, {@link #saveLater(Session, SessionRepository)}
+ * returns {@code false} and the caller is expected to save the session itself.
+ * <p>
+ * An instance is typically registered as a bean, in which case it is picked up by
+ * {@link org.springframework.session.config.annotation.web.http.SpringHttpSessionConfiguration}
+ * and closed along with the application context.
+ *
+ * @since 2.8.0
+ * @see SessionRepositoryFilter#setWriteBehindSessionSaver(WriteBehindSessionSaver)
+ */
+public class WriteBehindSessionSaver implements AutoCloseable {
+
+	/**
+	 * The default number of worker threads.
+	 */
+	public static final int DEFAULT_WORKER_COUNT = 2;
+
+	/**
+	 * The default capacity of the queue of each worker.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	private static final Log logger = LogFactory.getLog(WriteBehindSessionSaver.class);
+
+	private final ThreadPoolExecutor[] workers;
+
+	private final ConcurrentMap<String, PendingSave> pendingSaves = new ConcurrentHashMap<>();
+
+	/**
+	 * The locks held by the workers while saving a session, by session id.
+	 */
+	private final ConcurrentMap<String, Object> runningSaves = new ConcurrentHashMap<>();
+
+	private WriteBehindMode mode = WriteBehindMode.LAST_ACCESSED_TIME_ONLY;
+
+	/**
+	 * Create a new instance using {@link #DEFAULT_WORKER_COUNT} workers with a queue of
+	 * {@link #DEFAULT_QUEUE_CAPACITY} each.
+	 */
+	public WriteBehindSessionSaver() {
+		this(DEFAULT_WORKER_COUNT, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Create a new instance.
+	 * @param workerCount the number of worker threads
+	 * @param queueCapacity the capacity of the queue of each worker
+	 */
+	public WriteBehindSessionSaver(int workerCount, int queueCapacity) {
+		Assert.isTrue(workerCount > 0, "workerCount must be greater than 0");
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be greater than 0");
+		this.workers = new ThreadPoolExecutor[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			String threadName = "spring-session-write-behind-" + i;
+			this.workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(queueCapacity), (runnable) -> {
+						Thread thread = new Thread(runnable, threadName);
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+	}
+
+	/**
+	 * Set which sessions are saved asynchronously. Default is
+	 * {@link WriteBehindMode#LAST_ACCESSED_TIME_ONLY}.
+	 * @param mode the write-behind mode
+	 */
+	public void setMode(WriteBehindMode mode) {
+		Assert.notNull(mode, "mode must not be null");
+		this.mode = mode;
+	}
+
+	public WriteBehindMode getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * Schedule the provided session to be saved using the provided repository. The save
+	 * is assumed to carry changes other than the last accessed time, so it is never
+	 * replaced by a later save of the same session.
+	 * @param session the session to save
+	 * @param sessionRepository the repository to save the session with
+	 * @param <S> the session type
+	 * @return {@code true} if the session will be saved, {@code false} if the queue is
+	 * full and the caller must save the session itself
+	 * @see #saveLater(Session, SessionRepository, boolean)
+	 */
+	public <S extends Session> boolean saveLater(S session, SessionRepository<S> sessionRepository) {
+		return saveLater(session, sessionRepository, false);
+	}
+
+	/**
+	 * Schedule the provided session to be saved using the provided repository.
+	 * @param session the session to save
+	 * @param sessionRepository the repository to save the session with
+	 * @param lastAccessedTimeOnly whether the session was not modified apart from its
+	 * last accessed time, in which case the save may be replaced by a later save of the
+	 * same session
+	 * @param <S> the session type
+	 * @return {@code true} if the session will be saved, {@code false} if the queue is
+	 * full and the caller must save the session itself
+	 */
+	public <S extends Session> boolean saveLater(S session, SessionRepository<S> sessionRepository,
+			boolean lastAccessedTimeOnly) {
+		String sessionId = session.getId();
+		PendingSave save = new PendingSave(() -> sessionRepository.save(session), lastAccessedTimeOnly);
+		if (this.pendingSaves.merge(sessionId, save, PendingSave::followedBy) != save) {
+			// the save already queued for this session will perform this one as well
+			return true;
+		}
+		try {
+			getWorker(sessionId).execute(() -> savePending(sessionId));
+			return true;
+		}
+		catch (RejectedExecutionException ex) {
+			PendingSave latest = this.pendingSaves.remove(sessionId);
+			if (latest == save) {
+				return false;
+			}
+			if (latest != null) {
+				// later saves were added to this one while it was being rejected
+				latest.run();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Discard the pending save of the session with the provided id, if any, and wait for
+	 * the save of that session a worker may be performing to complete. This is typically
+	 * invoked before the session is deleted, so that a save does not write it again.
+	 * @param sessionId the session id
+	 */
+	public void cancel(String sessionId) {
+		this.pendingSaves.remove(sessionId);
+		Object runningSave = this.runningSaves.get(sessionId);
+		if (runningSave != null) {
+			synchronized (runningSave) {
+				// the save is complete once its lock is released
+			}
+		}
+	}
+
+	/**
+	 * Stop accepting new saves and wait for the pending ones to complete.
+	 */
+	@Override
+	public void close() {
+		for (ThreadPoolExecutor worker : this.workers) {
+			worker.shutdown();
+		}
+		try {
+			for (ThreadPoolExecutor worker : this.workers) {
+				worker.awaitTermination(10, TimeUnit.SECONDS);
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void savePending(String sessionId) {
+		Object runningSave = new Object();
+		synchronized (runningSave) {
+			// registered before the save is taken, so that cancel either discards it or
+			// waits for it
+			this.runningSaves.put(sessionId, runningSave);
+			try {
+				PendingSave save = this.pendingSaves.remove(sessionId);
+				if (save != null) {
+					save.run();
+				}
+			}
+			catch (Exception ex) {
+				logger.error("Error saving session " + sessionId, ex);
+			}
+			finally {
+				this.runningSaves.remove(sessionId);
+			}
+		}
+	}
+
+	private ThreadPoolExecutor getWorker(String sessionId) {
+		return this.workers[Math.floorMod(sessionId.hashCode(), this.workers.length)];
+	}
+
+	/**
+	 * The queued saves of a session.
+	 */
+	private static final class PendingSave implements Runnable {
+
+		private final Runnable save;
+
+		private final boolean lastAccessedTimeOnly;
+
+		private PendingSave(Runnable save, boolean lastAccessedTimeOnly) {
+			this.save = save;
+			this.lastAccessedTimeOnly = lastAccessedTimeOnly;
+		}
+
+		@Override
+		public void run() {
+			this.save.run();
+		}
+
+		/**
+		 * Returns the saves to perform when the provided save is submitted after this one.
+		 * A save that only updates the last accessed time is superseded by the next one,
+		 * while any other save is performed first. A new instance is always returned, so
+		 * that the caller can tell that a save was already queued.
+		 */
+		private PendingSave followedBy(PendingSave next) {
+			if (this.lastAccessedTimeOnly) {
+				return new PendingSave(next.save, next.lastAccessedTimeOnly);
+			}
+			PendingSave previous = this;
+			return new PendingSave(() -> {
+				try {
+					previous.run();
+				}
+				finally {
+					next.run();
+				}
+			}, false);
+		}
+
+	}
+
+}
@@ -35,6 +35,7 @@ import reactor.core.publisher.Mono;
 import org.springframework.lang.Nullable;
 import org.springframework.session.ReactiveSessionRepository;
 import org.springframework.session.Session;
+import org.springframework.session.TouchGranularity;
 import org.springframework.util.Assert;
 import org.springframework.web.server.WebSession;
 import org.springframework.web.server.session.WebSessionStore;
@@ -55,6 +56,8 @@ public class SpringSessionWebSessionStore<S extends Session> implements WebSessi
 
 	private Clock clock = Clock.system(ZoneOffset.UTC);
 
+	private TouchGranularity touchGranularity = TouchGranularity.NONE;
+
 	public SpringSessionWebSessionStore(ReactiveSessionRepository<S> reactiveSessionRepository) {
 		Assert.notNull(reactiveSessionRepository, "reactiveSessionRepository cannot be null");
 		this.sessions = reactiveSessionRepository;
@@ -76,6 +79,19 @@ public class SpringSessionWebSessionStore<S extends Session> implements WebSessi
 		this.clock = clock;
 	}
 
+	/**
+	 * Configure the {@link TouchGranularity} used to decide whether the last access time
+	 * of a session is updated.
+	 * <p>
+	 * By default this is {@link TouchGranularity#NONE}, which always updates it.
+	 * @param touchGranularity the touch granularity to use
+	 * @since 2.8.0
+	 */
+	public void setTouchGranularity(TouchGranularity touchGranularity) {
+		Assert.notNull(touchGranularity, "touchGranularity cannot be null");
+		this.touchGranularity = touchGranularity;
+	}
+
 	@Override
 	public Mono<WebSession> createWebSession() {
 		return this.sessions.createSession().map(this::createSession);
@@ -85,14 +101,15 @@ public class SpringSessionWebSessionStore<S extends Session> implements WebSessi
 	public Mono<WebSession> updateLastAccessTime(WebSession session) {
 		@SuppressWarnings("unchecked")
 		SpringSessionWebSession springSessionWebSession = (SpringSessionWebSession) session;
-		springSessionWebSession.session.setLastAccessedTime(this.clock.instant());
+		this.touchGranularity.touch(springSessionWebSession.session, this.clock.instant());
 		return Mono.just(session);
 	}
 
 	@Override
 	public Mono<WebSession> retrieveSession(String sessionId) {
 		return this.sessions.findById(sessionId)
-				.doOnNext((session) -> session.setLastAccessedTime(this.clock.instant())).map(this::existingSession);
+				.doOnNext((session) -> this.touchGranularity.touch(session, this.clock.instant()))
+				.map(this::existingSession);
 	}
 
 	@Override
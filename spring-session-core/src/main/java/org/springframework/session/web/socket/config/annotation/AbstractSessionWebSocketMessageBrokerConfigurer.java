@@ -22,6 +22,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.session.Session;
 import org.springframework.session.SessionRepository;
+import org.springframework.session.TouchGranularity;
 import org.springframework.session.web.socket.handler.WebSocketConnectHandlerDecoratorFactory;
 import org.springframework.session.web.socket.handler.WebSocketRegistryListener;
 import org.springframework.session.web.socket.server.SessionRepositoryMessageInterceptor;
@@ -84,6 +85,13 @@ public abstract class AbstractSessionWebSocketMessageBrokerConfigurer<S extends
 	@Autowired
 	private ApplicationEventPublisher eventPublisher;
 
+	private TouchGranularity touchGranularity = TouchGranularity.NONE;
+
+	@Autowired(required = false)
+	public void setTouchGranularity(TouchGranularity touchGranularity) {
+		this.touchGranularity = touchGranularity;
+	}
+
 	@Override
 	public void configureClientInboundChannel(ChannelRegistration registration) {
 		registration.interceptors(sessionRepositoryInterceptor());
@@ -124,7 +132,10 @@ public abstract class AbstractSessionWebSocketMessageBrokerConfigurer<S extends
 	@Bean
 	@SuppressWarnings("unchecked")
 	public SessionRepositoryMessageInterceptor<S> sessionRepositoryInterceptor() {
-		return new SessionRepositoryMessageInterceptor<>(this.sessionRepository);
+		SessionRepositoryMessageInterceptor<S> interceptor = new SessionRepositoryMessageInterceptor<>(
+				this.sessionRepository);
+		interceptor.setTouchGranularity(this.touchGranularity);
+		return interceptor;
 	}
 
 	/**
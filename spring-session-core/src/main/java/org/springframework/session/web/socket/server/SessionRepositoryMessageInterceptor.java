@@ -33,6 +33,7 @@ import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.session.Session;
 import org.springframework.session.SessionRepository;
+import org.springframework.session.TouchGranularity;
 import org.springframework.util.Assert;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
@@ -70,6 +71,8 @@ public final class SessionRepositoryMessageInterceptor<S extends Session>
 
 	private Set<SimpMessageType> matchingMessageTypes;
 
+	private TouchGranularity touchGranularity = TouchGranularity.NONE;
+
 	/**
 	 * Creates a new instance.
 	 * @param sessionRepository the {@link SessionRepository} to use. Cannot be null.
@@ -101,6 +104,19 @@ public final class SessionRepositoryMessageInterceptor<S extends Session>
 		this.matchingMessageTypes = matchingMessageTypes;
 	}
 
+	/**
+	 * Sets the {@link TouchGranularity} used to decide whether the
+	 * {@link Session#getLastAccessedTime()} is updated. The {@link Session} is only saved
+	 * if it was updated. The default is {@link TouchGranularity#NONE}, which always
+	 * updates it.
+	 * @param touchGranularity the touch granularity to use
+	 * @since 2.8.0
+	 */
+	public void setTouchGranularity(TouchGranularity touchGranularity) {
+		Assert.notNull(touchGranularity, "touchGranularity cannot be null");
+		this.touchGranularity = touchGranularity;
+	}
+
 	@Override
 	public Message<?> preSend(Message<?> message, MessageChannel channel) {
 		if (message == null) {
@@ -114,9 +130,8 @@ public final class SessionRepositoryMessageInterceptor<S extends Session>
 		String sessionId = (sessionHeaders != null) ? (String) sessionHeaders.get(SPRING_SESSION_ID_ATTR_NAME) : null;
 		if (sessionId != null) {
 			S session = this.sessionRepository.findById(sessionId);
-			if (session != null) {
-				// update the last accessed time
-				session.setLastAccessedTime(Instant.now());
+			// update the last accessed time
+			if (session != null && this.touchGranularity.touch(session, Instant.now())) {
 				this.sessionRepository.save(session);
 			}
 		}
@@ -35,6 +35,7 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.lang.Nullable;
 import org.springframework.session.FindByIndexNameSessionRepository;
 import org.springframework.session.Session;
+import org.springframework.session.SessionAttributeCodec;
 import org.springframework.util.Assert;
 
 /**
@@ -69,6 +70,17 @@ public class JdkMongoSessionConverter extends AbstractMongoSessionConverter {
 		this(new SerializingConverter(), new DeserializingConverter(), maxInactiveInterval);
 	}
 
+	/**
+	 * Create a new instance that converts the attributes with the provided
+	 * {@link SessionAttributeCodec} instead of JDK serialization.
+	 * @param sessionAttributeCodec the codec used to convert the map of attributes
+	 * @param maxInactiveInterval the default max inactive interval
+	 * @since 2.8.0
+	 */
+	public JdkMongoSessionConverter(SessionAttributeCodec sessionAttributeCodec, Duration maxInactiveInterval) {
+		this(sessionAttributeCodec::encode, sessionAttributeCodec::decode, maxInactiveInterval);
+	}
+
 	public JdkMongoSessionConverter(Converter<Object, byte[]> serializer, Converter<byte[], Object> deserializer,
 			Duration maxInactiveInterval) {
 
@@ -92,11 +92,21 @@ public class MongoIndexedSessionRepository
 		return session;
 	}
 
+	/**
+	 * Saves the provided session. A session that was loaded and not changed since, for
+	 * example because a {@link org.springframework.session.TouchGranularity} did not
+	 * update its last accessed time, is not written.
+	 * @param session the session to save
+	 */
 	@Override
 	public void save(MongoSession session) {
+		if (!session.isChanged()) {
+			return;
+		}
 		this.mongoOperations
 				.save(Assert.requireNonNull(MongoSessionUtils.convertToDBObject(this.mongoSessionConverter, session),
 						"convertToDBObject must not null!"), this.collectionName);
+		session.markUnchanged();
 	}
 
 	@Override
@@ -65,6 +65,11 @@ public class MongoSession implements Session {
 
 	private Map<String, Object> attrs = new HashMap<>();
 
+	/**
+	 * Whether the session was modified since it was loaded or saved. Not persisted.
+	 */
+	private transient boolean changed;
+
 	public MongoSession() {
 		this(MongoIndexedSessionRepository.DEFAULT_INACTIVE_INTERVAL);
 	}
@@ -94,6 +99,7 @@ public class MongoSession implements Session {
 
 		String changedId = UUID.randomUUID().toString();
 		this.id = changedId;
+		this.changed = true;
 		return changedId;
 	}
 
@@ -116,12 +122,14 @@ public class MongoSession implements Session {
 		}
 		else {
 			this.attrs.put(coverDot(attributeName), attributeValue);
+			this.changed = true;
 		}
 	}
 
 	@Override
 	public void removeAttribute(String attributeName) {
 		this.attrs.remove(coverDot(attributeName));
+		this.changed = true;
 	}
 
 	@Override
@@ -131,6 +139,7 @@ public class MongoSession implements Session {
 
 	public void setCreationTime(long created) {
 		this.createdMillis = created;
+		this.changed = true;
 	}
 
 	@Override
@@ -143,6 +152,7 @@ public class MongoSession implements Session {
 
 		this.accessedMillis = lastAccessedTime.toEpochMilli();
 		this.expireAt = Date.from(lastAccessedTime.plus(Duration.ofSeconds(this.intervalSeconds)));
+		this.changed = true;
 	}
 
 	@Override
@@ -153,6 +163,7 @@ public class MongoSession implements Session {
 	@Override
 	public void setMaxInactiveInterval(Duration interval) {
 		this.intervalSeconds = interval.getSeconds();
+		this.changed = true;
 	}
 
 	@Override
@@ -189,6 +200,7 @@ public class MongoSession implements Session {
 
 	public void setExpireAt(final Date expireAt) {
 		this.expireAt = expireAt;
+		this.changed = true;
 	}
 
 	boolean hasChangedSessionId() {
@@ -199,4 +211,20 @@ public class MongoSession implements Session {
 		return this.originalSessionId;
 	}
 
+	/**
+	 * Whether the session must be written when it is saved, that is if it is new or was
+	 * modified through its setters since it was loaded or saved. Like the
+	 * {@link org.springframework.session.SaveMode#ON_SET_ATTRIBUTE} mode of the other
+	 * repositories, changes made to a mutable attribute value without setting it again
+	 * are not detected.
+	 * @return {@code true} if the session was changed
+	 */
+	boolean isChanged() {
+		return this.changed || hasChangedSessionId();
+	}
+
+	void markUnchanged() {
+		this.changed = false;
+	}
+
 }
@@ -42,8 +42,13 @@ public final class MongoSessionUtils {
 	@Nullable
 	static MongoSession convertToSession(AbstractMongoSessionConverter mongoSessionConverter, Document session) {
 
-		return (MongoSession) mongoSessionConverter.convert(session, TypeDescriptor.valueOf(Document.class),
-				TypeDescriptor.valueOf(MongoSession.class));
+		MongoSession mongoSession = (MongoSession) mongoSessionConverter.convert(session,
+				TypeDescriptor.valueOf(Document.class), TypeDescriptor.valueOf(MongoSession.class));
+		if (mongoSession != null) {
+			// populating the session does not count as a change
+			mongoSession.markUnchanged();
+		}
+		return mongoSession;
 	}
 
 }
@@ -94,9 +94,20 @@ public class ReactiveMongoSessionRepository
 				.switchIfEmpty(Mono.just(new MongoSession()));
 	}
 
+	/**
+	 * Saves the provided session. A session that was loaded and not changed since, for
+	 * example because a {@link org.springframework.session.TouchGranularity} did not
+	 * update its last accessed time, is not written.
+	 * @param session the session to save
+	 * @return indicator of operation completion
+	 */
 	@Override
 	public Mono<Void> save(MongoSession session) {
 
+		if (!session.isChanged()) {
+			return Mono.empty();
+		}
+
 		return Mono //
 				.justOrEmpty(MongoSessionUtils.convertToDBObject(this.mongoSessionConverter, session)) //
 				.flatMap((dbObject) -> {
@@ -112,7 +123,7 @@ public class ReactiveMongoSessionRepository
 						return this.mongoOperations.save(dbObject, this.collectionName);
 					}
 				}) //
-				.then();
+				.then(Mono.fromRunnable(session::markUnchanged));
 	}
 
 	@Override
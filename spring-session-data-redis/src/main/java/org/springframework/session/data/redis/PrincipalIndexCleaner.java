@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+
+/**
+ * Removes the ids of sessions that no longer exist from the principal index sets of a
+ * {@link RedisIndexedSessionRepository}.
+ * <p>
+ * The index sets are normally cleaned up as the session deleted and expired events are
+ * received. If some events are lost, for example because no instance was subscribed or
+ * keyspace notifications were disabled, the ids of the sessions they refer to are never
+ * removed. Each {@link #cleanup()} walks all the index sets using {@code SCAN} and
+ * {@code SSCAN}, checks whether the sessions of each batch of ids exist using a single
+ * pipelined batch of {@code EXISTS} and removes the ids of the sessions that do not using
+ * {@code SREM}. The number of ids checked per second is limited so that a cleanup run
+ * does not compete with the requests for Redis.
+ * <p>
+ * Since {@code SCAN} is not supported across the nodes of Redis Cluster, this requires a
+ * standalone or sentinel deployment.
+ *
+ * @since 2.8.0
+ * @see RedisIndexedSessionRepository#cleanupStaleIndexEntries()
+ */
+final class PrincipalIndexCleaner {
+
+	private static final Log logger = LogFactory.getLog(PrincipalIndexCleaner.class);
+
+	private final RedisOperations<Object, Object> redis;
+
+	private final Supplier<String> lookupIndexKeyPattern;
+
+	private final Function<String, String> lookupSessionKey;
+
+	private final LongAdder removedEntryCount = new LongAdder();
+
+	private int batchSize = RedisIndexedSessionRepository.DEFAULT_CLEANUP_BATCH_SIZE;
+
+	private int maxEntriesPerSecond = RedisIndexedSessionRepository.DEFAULT_INDEX_CLEANUP_RATE;
+
+	/**
+	 * Create a new instance.
+	 * @param redis the {@link RedisOperations} to use
+	 * @param lookupIndexKeyPattern the function used to look up the pattern that matches
+	 * the keys of the index sets
+	 * @param lookupSessionKey the function used to look up the key of a session by id
+	 */
+	PrincipalIndexCleaner(RedisOperations<Object, Object> redis, Supplier<String> lookupIndexKeyPattern,
+			Function<String, String> lookupSessionKey) {
+		this.redis = redis;
+		this.lookupIndexKeyPattern = lookupIndexKeyPattern;
+		this.lookupSessionKey = lookupSessionKey;
+	}
+
+	void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	void setMaxEntriesPerSecond(int maxEntriesPerSecond) {
+		this.maxEntriesPerSecond = maxEntriesPerSecond;
+	}
+
+	long getRemovedEntryCount() {
+		return this.removedEntryCount.sum();
+	}
+
+	/**
+	 * Walks all the index sets and removes the ids of the sessions that do not exist.
+	 */
+	void cleanup() {
+		long start = System.nanoTime();
+		RateLimit rateLimit = new RateLimit(start);
+		long removed = 0;
+		ScanOptions keyOptions = ScanOptions.scanOptions().match(this.lookupIndexKeyPattern.get())
+				.count(this.batchSize).build();
+		try (Cursor<Object> indexKeys = this.redis.scan(keyOptions)) {
+			while (indexKeys.hasNext()) {
+				removed += cleanup(indexKeys.next(), rateLimit);
+				if (rateLimit.isInterrupted()) {
+					break;
+				}
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Checked " + rateLimit.checked + " principal index entries and removed " + removed
+					+ " stale entries in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+		}
+	}
+
+	private long cleanup(Object indexKey, RateLimit rateLimit) {
+		long removed = 0;
+		ScanOptions options = ScanOptions.scanOptions().count(this.batchSize).build();
+		try (Cursor<Object> sessionIds = this.redis.boundSetOps(indexKey).scan(options)) {
+			List<Object> batch = new ArrayList<>(this.batchSize);
+			while (sessionIds.hasNext() && !rateLimit.isInterrupted()) {
+				batch.add(sessionIds.next());
+				if (batch.size() == this.batchSize) {
+					removed += removeStale(indexKey, batch, rateLimit);
+					batch.clear();
+				}
+			}
+			if (!rateLimit.isInterrupted()) {
+				removed += removeStale(indexKey, batch, rateLimit);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Checks whether the sessions with the provided ids exist in a single pipelined batch
+	 * and removes the ids of those that do not from the provided index set. Since the
+	 * index entry of a session is added along with the session, an id whose session does
+	 * not exist is not removed while the session is being created.
+	 * @param indexKey the key of the index set
+	 * @param sessionIds the ids of the sessions to check
+	 * @param rateLimit the rate limit of the run
+	 * @return the number of removed ids
+	 */
+	private long removeStale(Object indexKey, List<Object> sessionIds, RateLimit rateLimit) {
+		if (sessionIds.isEmpty()) {
+			return 0;
+		}
+		rateLimit.acquire(sessionIds.size());
+		List<Object> exists = this.redis.executePipelined(new SessionCallback<Object>() {
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public <K, V> Object execute(RedisOperations<K, V> operations) {
+				RedisOperations<Object, Object> redisOperations = (RedisOperations<Object, Object>) operations;
+				for (Object sessionId : sessionIds) {
+					redisOperations.hasKey(PrincipalIndexCleaner.this.lookupSessionKey.apply((String) sessionId));
+				}
+				return null;
+			}
+
+		});
+		List<Object> stale = new ArrayList<>();
+		for (int i = 0; i < sessionIds.size(); i++) {
+			if (Boolean.FALSE.equals(exists.get(i))) {
+				stale.add(sessionIds.get(i));
+			}
+		}
+		if (stale.isEmpty()) {
+			return 0;
+		}
+		Long removed = this.redis.boundSetOps(indexKey).remove(stale.toArray());
+		long count = (removed != null) ? removed : 0;
+		this.removedEntryCount.add(count);
+		return count;
+	}
+
+	/**
+	 * Limits the number of entries checked per second during a cleanup run by sleeping
+	 * before a batch that would exceed it.
+	 */
+	private final class RateLimit {
+
+		private final long start;
+
+		private long checked;
+
+		private boolean interrupted;
+
+		private RateLimit(long start) {
+			this.start = start;
+		}
+
+		private void acquire(int entries) {
+			this.checked += entries;
+			long expectedNanos = this.checked * TimeUnit.SECONDS.toNanos(1)
+					/ PrincipalIndexCleaner.this.maxEntriesPerSecond;
+			long sleepNanos = expectedNanos - (System.nanoTime() - this.start);
+			if (sleepNanos <= 0) {
+				return;
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				this.interrupted = true;
+			}
+		}
+
+		private boolean isInterrupted() {
+			return this.interrupted;
+		}
+
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.session.data.redis;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
@@ -27,6 +28,8 @@ import reactor.core.publisher.Mono;
 
 import org.springframework.core.NestedExceptionUtils;
 import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
 import org.springframework.session.MapSession;
 import org.springframework.session.ReactiveSessionRepository;
 import org.springframework.session.SaveMode;
@@ -133,10 +136,16 @@ public class ReactiveRedisSessionRepository
 	@Override
 	public Mono<RedisSession> findById(String id) {
 		String sessionKey = getSessionKey(id);
+		RedisSerializationContext<String, Object> serializationContext = this.sessionRedisOperations
+				.getSerializationContext();
+		ByteBuffer rawKey = serializationContext.getKeySerializationPair().write(sessionKey);
+		SerializationPair<Object> hashKeyPair = serializationContext.getHashKeySerializationPair();
+		SerializationPair<Object> hashValuePair = serializationContext.getHashValueSerializationPair();
 
 		// @formatter:off
-		return this.sessionRedisOperations.opsForHash().entries(sessionKey)
-				.collectMap((e) -> e.getKey().toString(), Map.Entry::getValue)
+		return this.sessionRedisOperations.execute((connection) -> connection.hashCommands().hGetAll(rawKey))
+				.collectList()
+				.map((entries) -> RedisSessionMapper.deserializeLazily(entries, hashKeyPair::read, hashValuePair::read))
 				.filter((map) -> !map.isEmpty())
 				.map(new RedisSessionMapper(id))
 				.filter((session) -> !session.isExpired())
@@ -188,7 +197,7 @@ public class ReactiveRedisSessionRepository
 			}
 			if (this.isNew || (ReactiveRedisSessionRepository.this.saveMode == SaveMode.ALWAYS)) {
 				getAttributeNames().forEach((attributeName) -> this.delta.put(getAttributeKey(attributeName),
-						cached.getAttribute(attributeName)));
+						RedisSessionMapper.getAttribute(cached, attributeName)));
 			}
 		}
 
@@ -204,7 +213,7 @@ public class ReactiveRedisSessionRepository
 
 		@Override
 		public <T> T getAttribute(String attributeName) {
-			T attributeValue = this.cached.getAttribute(attributeName);
+			T attributeValue = RedisSessionMapper.getAttribute(this.cached, attributeName);
 			if (attributeValue != null
 					&& ReactiveRedisSessionRepository.this.saveMode.equals(SaveMode.ON_GET_ATTRIBUTE)) {
 				this.delta.put(getAttributeKey(attributeName), attributeValue);
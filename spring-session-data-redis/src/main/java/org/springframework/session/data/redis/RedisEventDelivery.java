@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import org.springframework.session.events.SessionDeletedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
+
+/**
+ * Specifies how a {@link RedisIndexedSessionRepository} learns that sessions were deleted
+ * or expired, in order to clean up the principal index and publish
+ * {@link SessionDeletedEvent} and {@link SessionExpiredEvent}.
+ *
+ * @since 2.8.0
+ * @see RedisIndexedSessionRepository#setEventDelivery(RedisEventDelivery)
+ */
+public enum RedisEventDelivery {
+
+	/**
+	 * Subscribes to the {@code del} and {@code expired} keyspace notifications of the
+	 * session expires keys. Notifications are delivered to every instance, each of which
+	 * reads the session and publishes the event, and are lost while an instance is
+	 * disconnected. This is the default and matches the behavior of previous releases.
+	 */
+	KEYSPACE_NOTIFICATIONS,
+
+	/**
+	 * Writes a snapshot of each deleted session, and of each expired session found by
+	 * {@link RedisIndexedSessionRepository#cleanupExpiredSessions()}, to a Redis Stream.
+	 * The stream is read by a consumer group, see {@link RedisStreamSessionEventListener},
+	 * so each event is published by a single instance and events that were not
+	 * acknowledged are delivered again after a restart. Keyspace notifications are not
+	 * required, but expired sessions are only found by the cleanup job, so the events of
+	 * sessions whose expiration mapping was missed by the cleanup are not published.
+	 */
+	STREAM
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+/**
+ * Specifies how a {@link RedisIndexedSessionRepository} keeps track of the expiration of
+ * sessions so that expired sessions can be cleaned up.
+ *
+ * @since 2.8.0
+ * @see RedisIndexedSessionRepository#setExpirationStore(RedisExpirationStore)
+ */
+public enum RedisExpirationStore {
+
+	/**
+	 * Tracks the sessions in one set per minute, keyed by the minute at which they
+	 * expire. Cleanup only accesses the set of the previous minute, so sessions whose
+	 * minute was missed rely on Redis to expire them. This is the default and matches the
+	 * behavior of previous releases.
+	 */
+	MINUTE_BUCKETS,
+
+	/**
+	 * Tracks all the sessions in a single sorted set scored by expiration time. Updating
+	 * the expiration of a session is a single {@code ZADD} and cleanup accesses every
+	 * session whose expiration time has passed, in batches.
+	 */
+	SORTED_SET
+
+}
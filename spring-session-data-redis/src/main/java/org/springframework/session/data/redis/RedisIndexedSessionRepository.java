@@ -16,13 +16,26 @@
 
 package org.springframework.session.data.redis;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,8 +46,17 @@ import org.springframework.core.NestedExceptionUtils;
 import org.springframework.dao.NonTransientDataAccessException;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
-import org.springframework.data.redis.core.BoundHashOperations;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.util.ByteUtils;
@@ -140,6 +162,14 @@ import org.springframework.util.StringUtils;
  * HMSET spring:session:sessions:33fdd1b6-b496-4b33-9f7d-df96679d32fe sessionAttr:attrName2 newValue
  * </pre>
  *
+ * <p>
+ * By default each of the commands that make up a save is sent on its own. Using
+ * {@link #setWriteMode(RedisWriteMode)} the commands can instead be sent as a single
+ * pipelined batch, optionally wrapped in {@code MULTI}/{@code EXEC}, which reduces the cost
+ * of a save to a single network round trip. Alternatively, {@link RedisWriteMode#SCRIPT}
+ * performs the whole save atomically as a single Lua script.
+ * </p>
+ *
  * <h3>SessionCreatedEvent</h3>
  *
  * <p>
@@ -237,6 +267,36 @@ import org.springframework.util.StringUtils;
  * expires key. By accessing the key, rather than deleting it, we ensure that Redis
  * deletes the key for us only if the TTL is expired.
  * </p>
+ *
+ * <p>
+ * Using {@link #setExpirationStore(RedisExpirationStore)} the per-minute sets can be
+ * replaced by a single sorted set scored by the expiration time in milliseconds. For
+ * example:
+ * </p>
+ *
+ * <pre>
+ * ZADD spring:session:expirations 1439245080000 expires:33fdd1b6-b496-4b33-9f7d-df96679d32fe
+ * </pre>
+ *
+ * <p>
+ * The background task then accesses, in batches, every session whose score is in the
+ * past, so sessions are not missed if the task did not run for some time.
+ * </p>
+ *
+ * <h3>Redis Cluster</h3>
+ *
+ * <p>
+ * Using {@link #setKeyLayout(RedisKeyLayout)} the session id can be wrapped in a hash tag
+ * so that the session hash and its expires key map to the same hash slot, and the keys of
+ * a session whose id changes are moved without {@code RENAME}. Using
+ * {@link #setExpirationShards(int)} the expiration mappings are spread over several keys
+ * so that they are not all written to a single hash slot. For example:
+ * </p>
+ *
+ * <pre>
+ * HMSET spring:session:sessions:{33fdd1b6-b496-4b33-9f7d-df96679d32fe} lastAccessedTime 1404360000000
+ * SADD spring:session:expirations:1439245080000:3 expires:33fdd1b6-b496-4b33-9f7d-df96679d32fe
+ * </pre>
  * <p>
  * <b>NOTE</b>: We do not explicitly delete the keys since in some instances there may be
  * a race condition that incorrectly identifies a key as expired when it is not. Short of
@@ -250,7 +310,8 @@ import org.springframework.util.StringUtils;
  * @since 2.2.0
  */
 public class RedisIndexedSessionRepository
-		implements FindByIndexNameSessionRepository<RedisIndexedSessionRepository.RedisSession>, MessageListener {
+		implements FindByIndexNameSessionRepository<RedisIndexedSessionRepository.RedisSession>, MessageListener,
+		AutoCloseable {
 
 	private static final Log logger = LogFactory.getLog(RedisIndexedSessionRepository.class);
 
@@ -266,6 +327,118 @@ public class RedisIndexedSessionRepository
 	 */
 	public static final String DEFAULT_NAMESPACE = "spring:session";
 
+	/**
+	 * The default number of sessions accessed per pipelined batch during cleanup.
+	 */
+	public static final int DEFAULT_CLEANUP_BATCH_SIZE = 100;
+
+	/**
+	 * The default number of sessions read per pipelined batch when finding sessions by
+	 * index.
+	 */
+	public static final int DEFAULT_INDEX_LOOKUP_BATCH_SIZE = 100;
+
+	/**
+	 * The default maximum number of principal index entries checked per second when
+	 * cleaning up stale index entries.
+	 */
+	public static final int DEFAULT_INDEX_CLEANUP_RATE = 1000;
+
+	/**
+	 * The default maximum number of session event messages queued per event worker.
+	 */
+	public static final int DEFAULT_EVENT_QUEUE_CAPACITY = 1000;
+
+	/**
+	 * The default approximate maximum number of events kept in the event stream. Since
+	 * each event holds a snapshot of all the attributes of its session, the stream may
+	 * take up to this many times the size of a session, for example about 100 MB with
+	 * sessions of 10 KB.
+	 */
+	public static final long DEFAULT_EVENT_STREAM_MAX_LENGTH = 10000;
+
+	static final String EVENT_TYPE_FIELD = "type";
+
+	static final String EVENT_SESSION_ID_FIELD = "id";
+
+	static final String EVENT_SESSION_FIELD = "session";
+
+	static final String EVENT_TYPE_DELETED = "deleted";
+
+	static final String EVENT_TYPE_EXPIRED = "expired";
+
+	// @formatter:off
+	private static final String SAVE_DELTA_SCRIPT_SOURCE = ""
+			+ "local sessionKey, expiresKey = KEYS[1], KEYS[2]\n"
+			+ "local expirationsKey, originalExpirationsKey = KEYS[3], KEYS[4]\n"
+			+ "local originalPrincipalKey, principalKey = KEYS[5], KEYS[6]\n"
+			+ "local expiresMember = ARGV[1]\n"
+			+ "local expireSeconds, sessionExpireSeconds = tonumber(ARGV[2]), tonumber(ARGV[3])\n"
+			+ "local principalMember, principalChanged, score = ARGV[4], ARGV[5], ARGV[6]\n"
+			+ "for i = 7, #ARGV, 2 do\n"
+			+ "  redis.call('HSET', sessionKey, ARGV[i], ARGV[i + 1])\n"
+			+ "end\n"
+			+ "if principalChanged == '1' then\n"
+			+ "  if originalPrincipalKey ~= '' then redis.call('SREM', originalPrincipalKey, principalMember) end\n"
+			+ "  if principalKey ~= '' then redis.call('SADD', principalKey, principalMember) end\n"
+			+ "end\n"
+			+ "if score ~= '' then\n"
+			+ "  if expireSeconds < 0 then\n"
+			+ "    redis.call('ZREM', expirationsKey, expiresMember)\n"
+			+ "  else\n"
+			+ "    redis.call('ZADD', expirationsKey, score, expiresMember)\n"
+			+ "  end\n"
+			+ "elseif originalExpirationsKey ~= expirationsKey then\n"
+			+ "  redis.call('SREM', originalExpirationsKey, expiresMember)\n"
+			+ "end\n"
+			+ "if expireSeconds < 0 then\n"
+			+ "  redis.call('APPEND', expiresKey, '')\n"
+			+ "  redis.call('PERSIST', expiresKey)\n"
+			+ "  redis.call('PERSIST', sessionKey)\n"
+			+ "  return 1\n"
+			+ "end\n"
+			+ "if score == '' then\n"
+			+ "  redis.call('SADD', expirationsKey, expiresMember)\n"
+			+ "  redis.call('EXPIRE', expirationsKey, sessionExpireSeconds)\n"
+			+ "end\n"
+			+ "if expireSeconds == 0 then\n"
+			+ "  redis.call('DEL', expiresKey)\n"
+			+ "else\n"
+			+ "  redis.call('APPEND', expiresKey, '')\n"
+			+ "  redis.call('EXPIRE', expiresKey, expireSeconds)\n"
+			+ "end\n"
+			+ "redis.call('EXPIRE', sessionKey, sessionExpireSeconds)\n"
+			+ "return 1";
+	// @formatter:on
+
+	private static final RedisScript<Long> SAVE_DELTA_SCRIPT = new DefaultRedisScript<>(SAVE_DELTA_SCRIPT_SOURCE,
+			Long.class);
+
+	private static final RedisSerializer<Long> SCRIPT_RESULT_SERIALIZER = new GenericToStringSerializer<>(
+			Long.class);
+
+	// @formatter:off
+	private static final String CLEANUP_LEASE_SCRIPT_SOURCE = ""
+			+ "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then\n"
+			+ "  return 1\n"
+			+ "end\n"
+			+ "if redis.call('GET', KEYS[1]) == ARGV[1] then\n"
+			+ "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n"
+			+ "  return 1\n"
+			+ "end\n"
+			+ "return 0";
+	// @formatter:on
+
+	private static final RedisScript<Long> CLEANUP_LEASE_SCRIPT = new DefaultRedisScript<>(
+			CLEANUP_LEASE_SCRIPT_SOURCE, Long.class);
+
+	/**
+	 * How long the tombstone written when the expires key of a session is moved to a new
+	 * session id is kept, which must cover the delivery of the resulting {@code del}
+	 * keyspace event.
+	 */
+	private static final Duration MOVED_TOMBSTONE_TIME_TO_LIVE = Duration.ofMinutes(1);
+
 	private int database = DEFAULT_DATABASE;
 
 	/**
@@ -291,7 +464,38 @@ public class RedisIndexedSessionRepository
 
 	private final RedisOperations<Object, Object> sessionRedisOperations;
 
-	private final RedisSessionExpirationPolicy expirationPolicy;
+	private RedisSessionExpirationPolicy expirationPolicy;
+
+	private final PrincipalIndexCleaner principalIndexCleaner;
+
+	private RedisExpirationStore expirationStore = RedisExpirationStore.MINUTE_BUCKETS;
+
+	private RedisKeyLayout keyLayout = RedisKeyLayout.STANDARD;
+
+	private int expirationShards = 1;
+
+	private int indexLookupBatchSize = DEFAULT_INDEX_LOOKUP_BATCH_SIZE;
+
+	private RedisEventDelivery eventDelivery = RedisEventDelivery.KEYSPACE_NOTIFICATIONS;
+
+	private long eventStreamMaxLength = DEFAULT_EVENT_STREAM_MAX_LENGTH;
+
+	private int eventWorkerCount;
+
+	private int eventQueueCapacity = DEFAULT_EVENT_QUEUE_CAPACITY;
+
+	private volatile SessionEventDispatcher eventDispatcher;
+
+	private int cleanupBatchSize = DEFAULT_CLEANUP_BATCH_SIZE;
+
+	private Duration cleanupTimeBudget = Duration.ZERO;
+
+	private Duration cleanupLease = Duration.ZERO;
+
+	/**
+	 * Identifies this instance as the holder of the cleanup lease.
+	 */
+	private final String cleanupLeaseOwner = UUID.randomUUID().toString();
 
 	private ApplicationEventPublisher eventPublisher = (event) -> {
 	};
@@ -322,6 +526,10 @@ public class RedisIndexedSessionRepository
 	 */
 	private SaveMode saveMode = SaveMode.ON_SET_ATTRIBUTE;
 
+	private RedisWriteMode writeMode = RedisWriteMode.SEQUENTIAL;
+
+	private volatile boolean scriptSupported;
+
 	/**
 	 * Creates a new instance. For an example, refer to the class level javadoc.
 	 *
@@ -332,7 +540,8 @@ public class RedisIndexedSessionRepository
 	public RedisIndexedSessionRepository(RedisOperations<Object, Object> sessionRedisOperations) {
 		Assert.notNull(sessionRedisOperations, "sessionRedisOperations cannot be null");
 		this.sessionRedisOperations = sessionRedisOperations;
-		this.expirationPolicy = new RedisSessionExpirationPolicy(sessionRedisOperations, this::getExpirationsKey,
+		this.expirationPolicy = createExpirationPolicy();
+		this.principalIndexCleaner = new PrincipalIndexCleaner(sessionRedisOperations, () -> getPrincipalKey("*"),
 				this::getSessionKey);
 		configureSessionChannels();
 	}
@@ -403,6 +612,270 @@ public class RedisIndexedSessionRepository
 		this.saveMode = saveMode;
 	}
 
+	/**
+	 * Set the write mode. Default write mode is {@link RedisWriteMode#SEQUENTIAL}.
+	 * {@link RedisWriteMode#SCRIPT} is not supported with Redis Cluster, where the first
+	 * save fails with an {@link IllegalStateException}.
+	 *
+	 * @param writeMode the write mode
+	 * @since 2.8.0
+	 */
+	public void setWriteMode(RedisWriteMode writeMode) {
+		Assert.notNull(writeMode, "writeMode must not be null");
+		this.writeMode = writeMode;
+	}
+
+	/**
+	 * Set the store used to keep track of the expiration of sessions. Default store is
+	 * {@link RedisExpirationStore#MINUTE_BUCKETS}.
+	 *
+	 * @param expirationStore the expiration store
+	 * @since 2.8.0
+	 */
+	public void setExpirationStore(RedisExpirationStore expirationStore) {
+		Assert.notNull(expirationStore, "expirationStore must not be null");
+		this.expirationStore = expirationStore;
+		this.expirationPolicy = createExpirationPolicy();
+	}
+
+	/**
+	 * Set the number of sessions accessed per pipelined batch when cleaning up expired
+	 * sessions. Default is {@link #DEFAULT_CLEANUP_BATCH_SIZE}.
+	 *
+	 * @param cleanupBatchSize the cleanup batch size
+	 * @since 2.8.0
+	 */
+	public void setCleanupBatchSize(int cleanupBatchSize) {
+		Assert.isTrue(cleanupBatchSize > 0, "cleanupBatchSize must be greater than 0");
+		this.cleanupBatchSize = cleanupBatchSize;
+		this.expirationPolicy.setCleanupBatchSize(cleanupBatchSize);
+		this.principalIndexCleaner.setBatchSize(cleanupBatchSize);
+	}
+
+	/**
+	 * Set the maximum duration of a single cleanup run. Once exceeded, the run stops
+	 * after the current batch and the remaining sessions are left to expire on their
+	 * own. Default is {@link Duration#ZERO}, which means no limit.
+	 *
+	 * @param cleanupTimeBudget the cleanup time budget
+	 * @since 2.8.0
+	 */
+	public void setCleanupTimeBudget(Duration cleanupTimeBudget) {
+		Assert.notNull(cleanupTimeBudget, "cleanupTimeBudget must not be null");
+		Assert.isTrue(!cleanupTimeBudget.isNegative(), "cleanupTimeBudget must not be negative");
+		this.cleanupTimeBudget = cleanupTimeBudget;
+		this.expirationPolicy.setCleanupTimeBudget(cleanupTimeBudget);
+	}
+
+	/**
+	 * Returns the total number of session keys accessed by
+	 * {@link #cleanupExpiredSessions()} since this repository was created.
+	 *
+	 * @return the number of session keys accessed during cleanup
+	 * @since 2.8.0
+	 */
+	public long getCleanupTouchedKeyCount() {
+		return this.expirationPolicy.getCleanupTouchedKeyCount();
+	}
+
+	/**
+	 * Set the duration of the lease that an instance must hold in order to clean up
+	 * expired sessions. When set, each invocation of {@link #cleanupExpiredSessions()}
+	 * first tries to acquire or renew the lease using {@code SET NX PX} on a key in the
+	 * configured namespace, so that only a single instance per namespace performs the
+	 * cleanup. If the holder stops renewing the lease, another instance takes over once
+	 * the lease expires, so the duration should be longer than the interval between
+	 * cleanup runs. Default is {@link Duration#ZERO}, which means every instance performs
+	 * the cleanup.
+	 *
+	 * @param cleanupLease the cleanup lease duration
+	 * @since 2.8.0
+	 */
+	public void setCleanupLease(Duration cleanupLease) {
+		Assert.notNull(cleanupLease, "cleanupLease must not be null");
+		Assert.isTrue(!cleanupLease.isNegative(), "cleanupLease must not be negative");
+		this.cleanupLease = cleanupLease;
+	}
+
+	/**
+	 * Set the layout of the keys of a session. Default layout is
+	 * {@link RedisKeyLayout#STANDARD}. Changing the layout of an existing namespace makes
+	 * the sessions stored using the previous layout unreachable.
+	 *
+	 * @param keyLayout the key layout
+	 * @since 2.8.0
+	 */
+	public void setKeyLayout(RedisKeyLayout keyLayout) {
+		Assert.notNull(keyLayout, "keyLayout must not be null");
+		this.keyLayout = keyLayout;
+	}
+
+	/**
+	 * Set the number of shards the expiration mappings are spread over. Each shard uses
+	 * its own key, so that with Redis Cluster the expiration mappings are not all
+	 * written to a single hash slot. The shard of a session is derived from its id and
+	 * cleanup accesses every shard. Default is {@code 1}, which uses the same keys as
+	 * previous releases.
+	 *
+	 * @param expirationShards the number of expiration shards
+	 * @since 2.8.0
+	 */
+	public void setExpirationShards(int expirationShards) {
+		Assert.isTrue(expirationShards > 0, "expirationShards must be greater than 0");
+		this.expirationShards = expirationShards;
+		this.expirationPolicy.setExpirationShards(expirationShards);
+	}
+
+	/**
+	 * Set the number of sessions read per batch when finding sessions by index. The ids
+	 * of the sessions are read from the index using {@code SSCAN} and the sessions of
+	 * each batch are read using a single pipelined batch of {@code HGETALL}. Default is
+	 * {@link #DEFAULT_INDEX_LOOKUP_BATCH_SIZE}.
+	 *
+	 * @param indexLookupBatchSize the index lookup batch size
+	 * @since 2.8.0
+	 */
+	public void setIndexLookupBatchSize(int indexLookupBatchSize) {
+		Assert.isTrue(indexLookupBatchSize > 0, "indexLookupBatchSize must be greater than 0");
+		this.indexLookupBatchSize = indexLookupBatchSize;
+	}
+
+	/**
+	 * Set the maximum number of principal index entries checked per second by
+	 * {@link #cleanupStaleIndexEntries()}. Default is
+	 * {@link #DEFAULT_INDEX_CLEANUP_RATE}.
+	 *
+	 * @param indexCleanupRate the maximum number of index entries checked per second
+	 * @since 2.8.0
+	 */
+	public void setIndexCleanupRate(int indexCleanupRate) {
+		Assert.isTrue(indexCleanupRate > 0, "indexCleanupRate must be greater than 0");
+		this.principalIndexCleaner.setMaxEntriesPerSecond(indexCleanupRate);
+	}
+
+	/**
+	 * Returns the total number of stale principal index entries removed by
+	 * {@link #cleanupStaleIndexEntries()} since this repository was created.
+	 *
+	 * @return the number of removed index entries
+	 * @since 2.8.0
+	 */
+	public long getRemovedStaleIndexEntryCount() {
+		return this.principalIndexCleaner.getRemovedEntryCount();
+	}
+
+	/**
+	 * Set how the repository learns that sessions were deleted or expired. Default is
+	 * {@link RedisEventDelivery#KEYSPACE_NOTIFICATIONS}. When using
+	 * {@link RedisEventDelivery#STREAM}, the events are written to
+	 * {@link #getEventStreamKey()} and a {@link RedisStreamSessionEventListener} must be
+	 * running for them to be published.
+	 *
+	 * @param eventDelivery the event delivery
+	 * @since 2.8.0
+	 */
+	public void setEventDelivery(RedisEventDelivery eventDelivery) {
+		Assert.notNull(eventDelivery, "eventDelivery must not be null");
+		this.eventDelivery = eventDelivery;
+		this.expirationPolicy.setExpiredSessionsHandler(getExpiredSessionsHandler());
+	}
+
+	/**
+	 * Returns how the repository learns that sessions were deleted or expired.
+	 *
+	 * @return the event delivery
+	 * @since 2.8.0
+	 */
+	public RedisEventDelivery getEventDelivery() {
+		return this.eventDelivery;
+	}
+
+	/**
+	 * Set the approximate maximum number of events kept in the event stream, which is
+	 * trimmed after each cleanup run. Default is {@link #DEFAULT_EVENT_STREAM_MAX_LENGTH}.
+	 * <p>
+	 * Each event holds a snapshot of all the attributes of its session, so the memory
+	 * used by the stream is roughly this length times the average serialized session
+	 * size. The length only needs to cover the events that are not read yet, for example
+	 * while all the instances restart, and should be lowered for large sessions.
+	 *
+	 * @param eventStreamMaxLength the maximum length of the event stream
+	 * @since 2.8.0
+	 */
+	public void setEventStreamMaxLength(long eventStreamMaxLength) {
+		Assert.isTrue(eventStreamMaxLength > 0, "eventStreamMaxLength must be greater than 0");
+		this.eventStreamMaxLength = eventStreamMaxLength;
+	}
+
+	/**
+	 * Set the number of threads the session event messages received by
+	 * {@link #onMessage(Message, byte[])} are handled by. Default is {@code 0}, which
+	 * handles them on the thread of the listener container. Otherwise, the messages are
+	 * queued to the workers by session id, so that the events of a session are published
+	 * in order, and each worker reads the sessions of the messages queued at once using a
+	 * single pipelined batch of {@code HGETALL}.
+	 *
+	 * @param eventWorkerCount the number of event workers
+	 * @since 2.8.0
+	 * @see #setEventQueueCapacity(int)
+	 */
+	public void setEventWorkerCount(int eventWorkerCount) {
+		Assert.isTrue(eventWorkerCount >= 0, "eventWorkerCount must be greater than or equal to 0");
+		Assert.state(this.eventDispatcher == null, "The event workers are already running");
+		this.eventWorkerCount = eventWorkerCount;
+	}
+
+	/**
+	 * Set the maximum number of session event messages queued per event worker. Once the
+	 * queue of a worker is full, the thread of the listener container waits for space to
+	 * become available rather than dropping the message. Default is
+	 * {@link #DEFAULT_EVENT_QUEUE_CAPACITY}.
+	 *
+	 * @param eventQueueCapacity the capacity of the queue of each event worker
+	 * @since 2.8.0
+	 * @see #setEventWorkerCount(int)
+	 */
+	public void setEventQueueCapacity(int eventQueueCapacity) {
+		Assert.isTrue(eventQueueCapacity > 0, "eventQueueCapacity must be greater than 0");
+		Assert.state(this.eventDispatcher == null, "The event workers are already running");
+		this.eventQueueCapacity = eventQueueCapacity;
+	}
+
+	/**
+	 * Stops the event workers, if any, after they handled the messages that are still
+	 * queued, waiting up to 10 seconds.
+	 *
+	 * @since 2.8.0
+	 */
+	@Override
+	public void close() {
+		SessionEventDispatcher eventDispatcher = this.eventDispatcher;
+		if (eventDispatcher != null) {
+			eventDispatcher.close();
+		}
+	}
+
+	private Consumer<List<String>> getExpiredSessionsHandler() {
+		return (this.eventDelivery == RedisEventDelivery.STREAM) ? this::expireSessions : null;
+	}
+
+	private RedisSessionExpirationPolicy createExpirationPolicy() {
+		RedisSessionExpirationPolicy expirationPolicy;
+		if (this.expirationStore == RedisExpirationStore.SORTED_SET) {
+			expirationPolicy = new SortedSetRedisSessionExpirationPolicy(this.sessionRedisOperations,
+					this::getExpirationsKey, this::getSessionKey, this::getExpiredKey);
+		}
+		else {
+			expirationPolicy = new RedisSessionExpirationPolicy(this.sessionRedisOperations, this::getExpirationsKey,
+					this::getSessionKey, this::getExpiredKey);
+		}
+		expirationPolicy.setCleanupBatchSize(this.cleanupBatchSize);
+		expirationPolicy.setCleanupTimeBudget(this.cleanupTimeBudget);
+		expirationPolicy.setExpirationShards(this.expirationShards);
+		expirationPolicy.setExpiredSessionsHandler(getExpiredSessionsHandler());
+		return expirationPolicy;
+	}
+
 	/**
 	 * Sets the database index to use. Defaults to {@link #DEFAULT_DATABASE}.
 	 *
@@ -447,7 +920,169 @@ public class RedisIndexedSessionRepository
 	}
 
 	public void cleanupExpiredSessions() {
+		if (!this.cleanupLease.isZero() && !acquireCleanupLease()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Skipping cleanup of expired sessions since the cleanup lease is held by "
+						+ "another instance");
+			}
+			return;
+		}
 		this.expirationPolicy.cleanExpiredSessions();
+		if (this.eventDelivery == RedisEventDelivery.STREAM) {
+			this.sessionRedisOperations.opsForStream().trim(getEventStreamKey(), this.eventStreamMaxLength, true);
+		}
+	}
+
+	/**
+	 * Deletes the provided sessions that have expired and writes their expired events to
+	 * the event stream. Each session is deleted using {@code DEL} on its hash and its
+	 * event is only written if the hash was deleted, so that the event is written once
+	 * even if several instances clean up the same sessions.
+	 * @param sessionIds the ids of the sessions that may have expired
+	 */
+	private void expireSessions(List<String> sessionIds) {
+		List<String> keys = new ArrayList<>(sessionIds.size());
+		for (String sessionId : sessionIds) {
+			keys.add(getSessionKey(sessionId));
+		}
+		List<Map<String, Object>> entries = RedisSessionMapper.readAllLazily(this.sessionRedisOperations, keys);
+		List<RedisSession> expired = new ArrayList<>();
+		for (int i = 0; i < sessionIds.size(); i++) {
+			RedisSession session = getSession(sessionIds.get(i), entries.get(i), true);
+			if (session != null && session.isExpired()) {
+				expired.add(session);
+			}
+		}
+		if (expired.isEmpty()) {
+			return;
+		}
+		List<Object> deleted = this.sessionRedisOperations.executePipelined(new SessionCallback<Object>() {
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public <K, V> Object execute(RedisOperations<K, V> operations) {
+				RedisOperations<Object, Object> redisOperations = (RedisOperations<Object, Object>) operations;
+				for (RedisSession session : expired) {
+					redisOperations.delete(getSessionKey(session.getId()));
+				}
+				return null;
+			}
+
+		});
+		List<MapRecord<Object, Object, Object>> events = new ArrayList<>(expired.size());
+		for (int i = 0; i < expired.size(); i++) {
+			if (isDeleted(deleted.get(i))) {
+				events.add(createEventRecord(EVENT_TYPE_EXPIRED, expired.get(i)));
+			}
+			else {
+				expired.set(i, null);
+			}
+		}
+		executeWrites((redis) -> {
+			for (RedisSession session : expired) {
+				if (session != null) {
+					redis.delete(getExpiredKey(session.getId()));
+					String principal = this.indexResolver.resolveIndexesFor(session).get(PRINCIPAL_NAME_INDEX_NAME);
+					if (principal != null) {
+						redis.boundSetOps(getPrincipalKey(principal)).remove(session.getId());
+					}
+				}
+			}
+			for (MapRecord<Object, Object, Object> event : events) {
+				redis.opsForStream().add(event);
+			}
+		});
+	}
+
+	private static boolean isDeleted(Object result) {
+		if (result instanceof Boolean) {
+			return (Boolean) result;
+		}
+		return result instanceof Number && ((Number) result).longValue() > 0;
+	}
+
+	/**
+	 * Creates the event stream record of the provided session, which holds a snapshot
+	 * of the session in the same format as its hash.
+	 * @param type the event type
+	 * @param session the session
+	 * @return the record
+	 */
+	private MapRecord<Object, Object, Object> createEventRecord(String type, RedisSession session) {
+		Map<String, Object> snapshot = new HashMap<>();
+		snapshot.put(RedisSessionMapper.CREATION_TIME_KEY, session.getCreationTime().toEpochMilli());
+		snapshot.put(RedisSessionMapper.MAX_INACTIVE_INTERVAL_KEY,
+				(int) session.getMaxInactiveInterval().getSeconds());
+		snapshot.put(RedisSessionMapper.LAST_ACCESSED_TIME_KEY, session.getLastAccessedTime().toEpochMilli());
+		for (String attributeName : session.getAttributeNames()) {
+			snapshot.put(getSessionAttrNameKey(attributeName), session.getAttribute(attributeName));
+		}
+		Map<Object, Object> fields = new HashMap<>();
+		fields.put(EVENT_TYPE_FIELD, type);
+		fields.put(EVENT_SESSION_ID_FIELD, session.getId());
+		fields.put(EVENT_SESSION_FIELD, snapshot);
+		return StreamRecords.newRecord().in((Object) getEventStreamKey()).ofMap(fields);
+	}
+
+	/**
+	 * Publishes the event of the provided event stream record.
+	 * @param fields the fields of the record
+	 */
+	void handleEventRecord(Map<Object, Object> fields) {
+		String sessionId = (String) fields.get(EVENT_SESSION_ID_FIELD);
+		Object snapshot = fields.get(EVENT_SESSION_FIELD);
+		if (sessionId == null || !(snapshot instanceof Map)) {
+			logger.warn("Ignoring malformed session event " + fields);
+			return;
+		}
+		RedisSession session = new RedisSession(loadSession(sessionId, (Map<?, ?>) snapshot), false);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Publishing SessionDestroyedEvent for session " + sessionId);
+		}
+		if (EVENT_TYPE_DELETED.equals(fields.get(EVENT_TYPE_FIELD))) {
+			handleDeleted(session);
+		}
+		else {
+			handleExpired(session);
+		}
+	}
+
+	/**
+	 * Removes the ids of sessions that no longer exist from the principal indexes. The
+	 * index entries of a session are removed when the session deleted or expired event
+	 * is received, so entries are only left behind if events are lost, for example
+	 * because no instance was subscribed or keyspace notifications were disabled. All
+	 * the indexes are walked in batches of {@link #setCleanupBatchSize(int)
+	 * cleanupBatchSize} entries, at most {@link #setIndexCleanupRate(int)
+	 * indexCleanupRate} entries per second, so a run may take a while and should not be
+	 * scheduled on the same thread as {@link #cleanupExpiredSessions()}. When a
+	 * {@link #setCleanupLease(Duration) cleanup lease} is set, only the instance that
+	 * holds it runs the cleanup.
+	 * <p>
+	 * Since it uses {@code SCAN}, this is not supported with Redis Cluster.
+	 *
+	 * @since 2.8.0
+	 */
+	public void cleanupStaleIndexEntries() {
+		if (!this.cleanupLease.isZero() && !acquireCleanupLease()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Skipping cleanup of stale index entries since the cleanup lease is held by "
+						+ "another instance");
+			}
+			return;
+		}
+		this.principalIndexCleaner.cleanup();
+	}
+
+	/**
+	 * Acquires the cleanup lease, or renews it if it is already held by this instance.
+	 * @return {@code true} if this instance holds the lease
+	 */
+	private boolean acquireCleanupLease() {
+		Long acquired = this.sessionRedisOperations.execute(CLEANUP_LEASE_SCRIPT, RedisSerializer.byteArray(),
+				SCRIPT_RESULT_SERIALIZER, Collections.singletonList(getCleanupLeaseKey()),
+				toBytes(this.cleanupLeaseOwner), toBytes(this.cleanupLease.toMillis()));
+		return acquired != null && acquired == 1;
 	}
 
 	@Override
@@ -460,18 +1095,36 @@ public class RedisIndexedSessionRepository
 		if (!PRINCIPAL_NAME_INDEX_NAME.equals(indexName)) {
 			return Collections.emptyMap();
 		}
-		String principalKey = getPrincipalKey(indexValue); // findByIndexNameAndIndexValue
-		Set<Object> sessionIds = this.sessionRedisOperations.boundSetOps(principalKey).members();
-		Map<String, RedisSession> sessions = new HashMap<>(sessionIds.size());
-		for (Object id : sessionIds) {
-			RedisSession session = findById((String) id);
-			if (session != null) {
-				sessions.put(session.getId(), session);
-			}
+		Map<String, RedisSession> sessions = new HashMap<>();
+		try (Stream<RedisSession> stream = streamByIndexNameAndIndexValue(indexName, indexValue)) {
+			stream.forEach((session) -> sessions.put(session.getId(), session));
 		}
 		return sessions;
 	}
 
+	/**
+	 * Returns a {@link Stream} of the sessions of the provided principal. The ids of the
+	 * sessions are read from the principal index using {@code SSCAN}, and the sessions of
+	 * each batch of {@link #setIndexLookupBatchSize(int) indexLookupBatchSize} ids are
+	 * read using a single pipelined batch, as the stream is consumed. The stream holds a
+	 * connection until it is consumed or closed.
+	 * @param indexName the name of the index
+	 * @param indexValue the value of the index to search for
+	 * @return the sessions, empty unless the index name is
+	 * {@link #PRINCIPAL_NAME_INDEX_NAME}
+	 */
+	@Override
+	public Stream<RedisSession> streamByIndexNameAndIndexValue(String indexName, String indexValue) {
+		if (!PRINCIPAL_NAME_INDEX_NAME.equals(indexName)) {
+			return Stream.empty();
+		}
+		String principalKey = getPrincipalKey(indexValue); // findByIndexNameAndIndexValue
+		ScanOptions options = ScanOptions.scanOptions().count(this.indexLookupBatchSize).build();
+		Cursor<Object> sessionIds = this.sessionRedisOperations.boundSetOps(principalKey).scan(options);
+		return StreamSupport.stream(new IndexedSessionSpliterator(sessionIds), false)
+				.onClose(() -> closeIfNecessary(sessionIds));
+	}
+
 	/**
 	 * Gets the session.
 	 *
@@ -482,7 +1135,11 @@ public class RedisIndexedSessionRepository
 	 */
 	private RedisSession getSession(String id, boolean allowExpired) {
 		// 从 Redis 查询 session id 对应的 hash
-		Map<Object, Object> entries = getSessionBoundHashOperations(id).entries();
+		Map<String, Object> entries = RedisSessionMapper.readLazily(this.sessionRedisOperations, getSessionKey(id));
+		return getSession(id, entries, allowExpired);
+	}
+
+	private RedisSession getSession(String id, Map<String, Object> entries, boolean allowExpired) {
 		if (entries.isEmpty()) {
 			return null;
 		}
@@ -502,9 +1159,9 @@ public class RedisIndexedSessionRepository
 		return result;
 	}
 
-	private MapSession loadSession(String id, Map<Object, Object> entries) {
+	private MapSession loadSession(String id, Map<?, ?> entries) {
 		MapSession loaded = new MapSession(id);
-		for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+		for (Map.Entry<?, ?> entry : entries.entrySet()) {
 			String key = (String) entry.getKey();
 			if (RedisSessionMapper.CREATION_TIME_KEY.equals(key)) {
 				loaded.setCreationTime(Instant.ofEpochMilli((long) entry.getValue()));
@@ -531,6 +1188,9 @@ public class RedisIndexedSessionRepository
 			return;
 		}
 
+		if (this.eventDelivery == RedisEventDelivery.STREAM) {
+			this.sessionRedisOperations.opsForStream().add(createEventRecord(EVENT_TYPE_DELETED, session));
+		}
 		cleanupPrincipalIndex(session);
 		this.expirationPolicy.onDelete(session);
 
@@ -558,52 +1218,172 @@ public class RedisIndexedSessionRepository
 
 	@Override
 	public void onMessage(Message message, byte[] pattern) {
+		if (this.eventWorkerCount == 0) {
+			handleMessages(Collections.singletonList(message));
+			return;
+		}
+		String sessionId = getEventSessionId(message);
+		if (sessionId != null) {
+			getEventDispatcher().dispatch(sessionId, message);
+		}
+	}
+
+	private SessionEventDispatcher getEventDispatcher() {
+		SessionEventDispatcher eventDispatcher = this.eventDispatcher;
+		if (eventDispatcher == null) {
+			synchronized (this) {
+				eventDispatcher = this.eventDispatcher;
+				if (eventDispatcher == null) {
+					eventDispatcher = new SessionEventDispatcher(this.eventWorkerCount, this.eventQueueCapacity,
+							this::handleMessages);
+					this.eventDispatcher = eventDispatcher;
+				}
+			}
+		}
+		return eventDispatcher;
+	}
+
+	/**
+	 * Returns the id of the session the provided message refers to, or {@code null} if
+	 * the message is ignored.
+	 */
+	private String getEventSessionId(Message message) {
 		byte[] messageChannel = message.getChannel();
 
-		// 1. 发出通知
 		// this.namespace + "event:" + this.database + ":created:"
 		if (ByteUtils.startsWith(messageChannel, this.sessionCreatedChannelPrefixBytes)) {
-			// TODO: is this thread safe?
-			@SuppressWarnings("unchecked")
-			Map<Object, Object> loaded = (Map<Object, Object>) this.defaultSerializer.deserialize(message.getBody());
-			handleCreated(loaded, new String(messageChannel));
-			return;
+			String channel = new String(messageChannel);
+			return channel.substring(channel.lastIndexOf(":") + 1);
 		}
 
 		byte[] messageBody = message.getBody();
 
-		if (!ByteUtils.startsWith(messageBody, this.expiredKeyPrefixBytes)) {
-			return;
+		// the events are read from the event stream instead
+		if (this.eventDelivery == RedisEventDelivery.STREAM
+				|| !ByteUtils.startsWith(messageBody, this.expiredKeyPrefixBytes)) {
+			return null;
+		}
+
+		if (Arrays.equals(messageChannel, this.sessionDeletedChannelBytes)
+				|| Arrays.equals(messageChannel, this.sessionExpiredChannelBytes)) {
+			return getSessionIdFromExpiredKey(new String(messageBody));
+		}
+		return null;
+	}
+
+	/**
+	 * Publishes the events of the provided messages, in order. The sessions that were
+	 * deleted or expired are read using a single pipelined batch and removed from the
+	 * principal index before their events are published.
+	 */
+	private void handleMessages(List<Message> messages) {
+		List<String> destroyedIds = new ArrayList<>();
+		for (Message message : messages) {
+			if (ByteUtils.startsWith(message.getChannel(), this.sessionCreatedChannelPrefixBytes)) {
+				continue;
+			}
+			String sessionId = getEventSessionId(message);
+			if (sessionId != null) {
+				destroyedIds.add(sessionId);
+			}
 		}
+		Map<String, RedisSession> destroyed = readDestroyedSessions(destroyedIds);
+
+		for (Message message : messages) {
+			byte[] messageChannel = message.getChannel();
+
+			if (ByteUtils.startsWith(messageChannel, this.sessionCreatedChannelPrefixBytes)) {
+				// like the default JdkSerializationRedisSerializer, serializers are expected
+				// to be thread-safe, so the event workers can share it
+				@SuppressWarnings("unchecked")
+				Map<Object, Object> loaded = (Map<Object, Object>) this.defaultSerializer.deserialize(message.getBody());
+				handleCreated(loaded, new String(messageChannel));
+				continue;
+			}
 
-		boolean isDeleted = Arrays.equals(messageChannel, this.sessionDeletedChannelBytes);
-		if (isDeleted || Arrays.equals(messageChannel, this.sessionExpiredChannelBytes)) {
-			String body = new String(messageBody);
-			int beginIndex = body.lastIndexOf(":") + 1;
-			int endIndex = body.length();
-			String sessionId = body.substring(beginIndex, endIndex);
+			String sessionId = getEventSessionId(message);
+			if (sessionId == null) {
+				continue;
+			}
 
-			RedisSession session = getSession(sessionId, true);
+			RedisSession session = destroyed.get(sessionId);
 
 			if (session == null) {
-				logger.warn("Unable to publish SessionDestroyedEvent for session " + sessionId);
-				return;
+				if (isMoved(sessionId)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Ignoring deletion of moved expires key for session " + sessionId);
+					}
+				}
+				else {
+					logger.warn("Unable to publish SessionDestroyedEvent for session " + sessionId);
+				}
+				continue;
 			}
 
 			if (logger.isDebugEnabled()) {
 				logger.debug("Publishing SessionDestroyedEvent for session " + sessionId);
 			}
 
-			cleanupPrincipalIndex(session);
-
-			if (isDeleted) {
+			if (Arrays.equals(messageChannel, this.sessionDeletedChannelBytes)) {
 				handleDeleted(session);
-			} else {
+			}
+			else {
 				handleExpired(session);
 			}
 		}
 	}
 
+	/**
+	 * Returns whether the expires key of the provided session was moved to a new session
+	 * id, in which case its {@code del} keyspace event does not mean that the session was
+	 * destroyed.
+	 */
+	private boolean isMoved(String sessionId) {
+		return this.keyLayout == RedisKeyLayout.HASH_TAGGED
+				&& Boolean.TRUE.equals(this.sessionRedisOperations.hasKey(getMovedKey(sessionId)));
+	}
+
+	private Map<String, RedisSession> readDestroyedSessions(List<String> sessionIds) {
+		if (sessionIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		List<String> keys = new ArrayList<>(sessionIds.size());
+		for (String sessionId : sessionIds) {
+			keys.add(getSessionKey(sessionId));
+		}
+		List<Map<String, Object>> entries = RedisSessionMapper.readAllLazily(this.sessionRedisOperations, keys);
+		Map<String, RedisSession> sessions = new HashMap<>();
+		for (int i = 0; i < sessionIds.size(); i++) {
+			RedisSession session = getSession(sessionIds.get(i), entries.get(i), true);
+			if (session != null) {
+				sessions.put(session.getId(), session);
+			}
+		}
+		if (sessions.size() == 1) {
+			cleanupPrincipalIndex(sessions.values().iterator().next());
+		}
+		else if (!sessions.isEmpty()) {
+			this.sessionRedisOperations.executePipelined(new SessionCallback<Object>() {
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public <K, V> Object execute(RedisOperations<K, V> operations) {
+					RedisOperations<Object, Object> redisOperations = (RedisOperations<Object, Object>) operations;
+					for (RedisSession session : sessions.values()) {
+						String principal = RedisIndexedSessionRepository.this.indexResolver.resolveIndexesFor(session)
+								.get(PRINCIPAL_NAME_INDEX_NAME);
+						if (principal != null) {
+							redisOperations.boundSetOps(getPrincipalKey(principal)).remove(session.getId());
+						}
+					}
+					return null;
+				}
+
+			});
+		}
+		return sessions;
+	}
+
 	private void cleanupPrincipalIndex(RedisSession session) {
 		String sessionId = session.getId();
 		Map<String, String> indexes = RedisIndexedSessionRepository.this.indexResolver.resolveIndexesFor(session);
@@ -648,6 +1428,9 @@ public class RedisIndexedSessionRepository
 	 * @return the Hash key for this session by prefixing it appropriately.
 	 */
 	String getSessionKey(String sessionId) {
+		if (this.keyLayout == RedisKeyLayout.HASH_TAGGED) {
+			return this.namespace + "sessions:{" + sessionId + "}";
+		}
 		return this.namespace + "sessions:" + sessionId;
 	}
 
@@ -656,14 +1439,57 @@ public class RedisIndexedSessionRepository
 				+ principalName;
 	}
 
-	String getExpirationsKey(long expiration) {
-		return this.namespace + "expirations:" + expiration;
+	String getExpirationsKey(long expiration, int shard) {
+		String expirationsKey = this.namespace + "expirations:" + expiration;
+		return (this.expirationShards == 1) ? expirationsKey : expirationsKey + ":" + shard;
+	}
+
+	String getExpirationsKey(int shard) {
+		String expirationsKey = this.namespace + "expirations";
+		return (this.expirationShards == 1) ? expirationsKey : expirationsKey + ":" + shard;
+	}
+
+	/**
+	 * Returns the key of the Redis Stream that the session deleted and expired events are
+	 * written to when using {@link RedisEventDelivery#STREAM}.
+	 *
+	 * @return the key of the event stream
+	 * @since 2.8.0
+	 */
+	public String getEventStreamKey() {
+		return this.namespace + "events";
+	}
+
+	String getCleanupLeaseKey() {
+		return this.namespace + "cleanup:lease";
 	}
 
 	private String getExpiredKey(String sessionId) {
+		if (this.keyLayout == RedisKeyLayout.HASH_TAGGED) {
+			return getExpiredKeyPrefix() + "{" + sessionId + "}";
+		}
 		return getExpiredKeyPrefix() + sessionId;
 	}
 
+	/**
+	 * Returns the key of the tombstone marking that the expires key of the provided
+	 * session was moved to a new session id, rather than deleted.
+	 */
+	private String getMovedKey(String sessionId) {
+		if (this.keyLayout == RedisKeyLayout.HASH_TAGGED) {
+			return this.namespace + "sessions:moved:{" + sessionId + "}";
+		}
+		return this.namespace + "sessions:moved:" + sessionId;
+	}
+
+	private String getSessionIdFromExpiredKey(String expiredKey) {
+		String sessionId = expiredKey.substring(expiredKey.lastIndexOf(":") + 1);
+		if (sessionId.startsWith("{") && sessionId.endsWith("}")) {
+			return sessionId.substring(1, sessionId.length() - 1);
+		}
+		return sessionId;
+	}
+
 	private String getSessionCreatedChannel(String sessionId) {
 		return getSessionCreatedChannelPrefix() + sessionId;
 	}
@@ -702,14 +1528,101 @@ public class RedisIndexedSessionRepository
 	}
 
 	/**
-	 * Gets the {@link BoundHashOperations} to operate on a {@link Session}.
+	 * Executes the provided writes according to the configured {@link RedisWriteMode}.
 	 *
-	 * @param sessionId the id of the {@link Session} to work with
-	 * @return the {@link BoundHashOperations} to operate on a {@link Session}
+	 * @param writes the writes to execute against the provided {@link RedisOperations}
+	 */
+	private void executeWrites(Consumer<RedisOperations<Object, Object>> writes) {
+		if (this.writeMode == RedisWriteMode.SEQUENTIAL) {
+			writes.accept(this.sessionRedisOperations);
+			return;
+		}
+		boolean transactional = this.writeMode == RedisWriteMode.TRANSACTIONAL;
+		this.sessionRedisOperations.executePipelined(new SessionCallback<Object>() {
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public <K, V> Object execute(RedisOperations<K, V> operations) {
+				RedisOperations<Object, Object> redisOperations = (RedisOperations<Object, Object>) operations;
+				if (transactional) {
+					redisOperations.multi();
+				}
+				writes.accept(redisOperations);
+				if (transactional) {
+					redisOperations.exec();
+				}
+				return null;
+			}
+
+		});
+	}
+
+	private static void closeIfNecessary(Cursor<?> cursor) {
+		if (!cursor.isClosed()) {
+			cursor.close();
+		}
+	}
+
+	private static byte[] toBytes(Object value) {
+		return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A {@link Spliterator} of the sessions whose ids are read from the provided
+	 * {@link Cursor}, which reads the sessions of each batch of ids using a single
+	 * pipelined batch.
 	 */
-	private BoundHashOperations<Object, Object, Object> getSessionBoundHashOperations(String sessionId) {
-		String key = getSessionKey(sessionId);
-		return this.sessionRedisOperations.boundHashOps(key);
+	private final class IndexedSessionSpliterator extends Spliterators.AbstractSpliterator<RedisSession> {
+
+		private final Cursor<Object> sessionIds;
+
+		// SSCAN may return the same member more than once
+		private final Set<String> readIds = new HashSet<>();
+
+		private final Deque<RedisSession> sessions = new ArrayDeque<>();
+
+		private IndexedSessionSpliterator(Cursor<Object> sessionIds) {
+			super(Long.MAX_VALUE, Spliterator.DISTINCT | Spliterator.NONNULL);
+			this.sessionIds = sessionIds;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super RedisSession> action) {
+			while (this.sessions.isEmpty()) {
+				if (!this.sessionIds.hasNext()) {
+					closeIfNecessary(this.sessionIds);
+					return false;
+				}
+				readNextBatch();
+			}
+			action.accept(this.sessions.poll());
+			return true;
+		}
+
+		private void readNextBatch() {
+			int batchSize = RedisIndexedSessionRepository.this.indexLookupBatchSize;
+			List<String> ids = new ArrayList<>(batchSize);
+			List<String> keys = new ArrayList<>(batchSize);
+			while (ids.size() < batchSize && this.sessionIds.hasNext()) {
+				String id = (String) this.sessionIds.next();
+				if (this.readIds.add(id)) {
+					ids.add(id);
+					keys.add(getSessionKey(id));
+				}
+			}
+			if (ids.isEmpty()) {
+				return;
+			}
+			List<Map<String, Object>> entries = RedisSessionMapper
+					.readAllLazily(RedisIndexedSessionRepository.this.sessionRedisOperations, keys);
+			for (int i = 0; i < ids.size(); i++) {
+				RedisSession session = getSession(ids.get(i), entries.get(i), false);
+				if (session != null) {
+					this.sessions.add(session);
+				}
+			}
+		}
+
 	}
 
 	/**
@@ -747,6 +1660,8 @@ public class RedisIndexedSessionRepository
 
 		private String originalPrincipalName;
 
+		private boolean originalPrincipalNameResolved;
+
 		private String originalSessionId;
 
 		RedisSession(MapSession cached, boolean isNew) {
@@ -756,10 +1671,8 @@ public class RedisIndexedSessionRepository
 			// 记录 original session id
 			this.originalSessionId = cached.getId();
 
-			// 记录 original principal name
-			Map<String, String> indexes = RedisIndexedSessionRepository.this.indexResolver.resolveIndexesFor(this);
-			this.originalPrincipalName = indexes.get(PRINCIPAL_NAME_INDEX_NAME);
-
+			// the original principal name is resolved before the principal attributes are
+			// first accessed, so that their values are only deserialized if needed
 			if (this.isNew) {
 				this.delta.put(RedisSessionMapper.CREATION_TIME_KEY, cached.getCreationTime().toEpochMilli());
 				this.delta.put(RedisSessionMapper.MAX_INACTIVE_INTERVAL_KEY,
@@ -767,8 +1680,9 @@ public class RedisIndexedSessionRepository
 				this.delta.put(RedisSessionMapper.LAST_ACCESSED_TIME_KEY, cached.getLastAccessedTime().toEpochMilli());
 			}
 			if (this.isNew || (RedisIndexedSessionRepository.this.saveMode == SaveMode.ALWAYS)) {
+				getOriginalPrincipalName();
 				getAttributeNames().forEach((attributeName) -> this.delta.put(getSessionAttrNameKey(attributeName),
-						cached.getAttribute(attributeName)));
+						RedisSessionMapper.getAttribute(cached, attributeName)));
 			}
 		}
 
@@ -818,7 +1732,8 @@ public class RedisIndexedSessionRepository
 
 		@Override
 		public <T> T getAttribute(String attributeName) {
-			T attributeValue = this.cached.getAttribute(attributeName);
+			resolveOriginalPrincipalNameIfNecessary(attributeName);
+			T attributeValue = RedisSessionMapper.getAttribute(this.cached, attributeName);
 			if (attributeValue != null
 					&& RedisIndexedSessionRepository.this.saveMode.equals(SaveMode.ON_GET_ATTRIBUTE)) {
 				this.delta.put(getSessionAttrNameKey(attributeName), attributeValue);
@@ -833,6 +1748,7 @@ public class RedisIndexedSessionRepository
 
 		@Override
 		public void setAttribute(String attributeName, Object attributeValue) {
+			resolveOriginalPrincipalNameIfNecessary(attributeName);
 			this.cached.setAttribute(attributeName, attributeValue);
 			this.delta.put(getSessionAttrNameKey(attributeName), attributeValue);
 			flushImmediateIfNecessary();
@@ -840,6 +1756,7 @@ public class RedisIndexedSessionRepository
 
 		@Override
 		public void removeAttribute(String attributeName) {
+			resolveOriginalPrincipalNameIfNecessary(attributeName);
 			this.cached.removeAttribute(attributeName);
 			this.delta.put(getSessionAttrNameKey(attributeName), null);
 			flushImmediateIfNecessary();
@@ -859,39 +1776,156 @@ public class RedisIndexedSessionRepository
 
 		/**
 		 * Saves any attributes that have been changed and updates the expiration of this
-		 * session.
+		 * session. Depending on the configured {@link RedisWriteMode} all the resulting
+		 * commands are sent in a single batch.
 		 */
 		private void saveDelta() {
 			if (this.delta.isEmpty()) {
 				return;
 			}
+			if (RedisIndexedSessionRepository.this.writeMode == RedisWriteMode.SCRIPT) {
+				saveDeltaUsingScript();
+			}
+			else {
+				executeWrites(this::saveDelta);
+			}
+		}
+
+		/**
+		 * Saves the delta, the principal index and the expiration mappings using a single
+		 * invocation of the save script.
+		 */
+		private void saveDeltaUsingScript() {
+			assertScriptSupported();
 			String sessionId = getId();
-			getSessionBoundHashOperations(sessionId).putAll(this.delta);
+			boolean principalChanged = isPrincipalChanged();
+			String originalPrincipalKey = (principalChanged && getOriginalPrincipalName() != null)
+					? getPrincipalKey(this.originalPrincipalName) : "";
+			String principalKey = "";
+			if (principalChanged) {
+				Map<String, String> indexes = RedisIndexedSessionRepository.this.indexResolver.resolveIndexesFor(this);
+				String principal = indexes.get(PRINCIPAL_NAME_INDEX_NAME);
+				this.originalPrincipalName = principal;
+				if (principal != null) {
+					principalKey = getPrincipalKey(principal);
+				}
+			}
+
+			long expiresInMillis = RedisSessionExpirationPolicy.expiresInMillis(this);
+			int shard = RedisIndexedSessionRepository.this.expirationPolicy.getShard(sessionId);
+			String expirationsKey;
+			String originalExpirationsKey;
+			String score;
+			if (RedisIndexedSessionRepository.this.expirationStore == RedisExpirationStore.SORTED_SET) {
+				expirationsKey = getExpirationsKey(shard);
+				originalExpirationsKey = expirationsKey;
+				score = String.valueOf(expiresInMillis);
+			}
+			else {
+				long expirationsTime = RedisSessionExpirationPolicy.roundUpToNextMinute(expiresInMillis);
+				Long originalExpiration = getOriginalExpiration();
+				long originalExpirationsTime = (originalExpiration != null)
+						? RedisSessionExpirationPolicy.roundUpToNextMinute(originalExpiration) : expirationsTime;
+				expirationsKey = getExpirationsKey(expirationsTime, shard);
+				originalExpirationsKey = getExpirationsKey(originalExpirationsTime, shard);
+				score = "";
+			}
+			long expireSeconds = getMaxInactiveInterval().getSeconds();
+			long sessionExpireSeconds = expireSeconds + TimeUnit.MINUTES.toSeconds(5);
+
+			List<Object> keys = Arrays.asList(getSessionKey(sessionId), getExpiredKey(sessionId), expirationsKey,
+					originalExpirationsKey, originalPrincipalKey, principalKey);
+			RedisOperations<Object, Object> redis = RedisIndexedSessionRepository.this.sessionRedisOperations;
+			@SuppressWarnings("unchecked")
+			RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redis.getValueSerializer();
+			List<Object> args = new ArrayList<>(6 + this.delta.size() * 2);
+			args.add(valueSerializer.serialize(RedisSessionExpirationPolicy.SESSION_EXPIRES_PREFIX + sessionId));
+			args.add(toBytes(expireSeconds));
+			args.add(toBytes(sessionExpireSeconds));
+			// the index members are read and removed using the value serializer
+			args.add(valueSerializer.serialize(sessionId));
+			args.add(toBytes(principalChanged ? 1 : 0));
+			args.add(toBytes(score));
+			@SuppressWarnings("unchecked")
+			RedisSerializer<Object> hashKeySerializer = (RedisSerializer<Object>) redis.getHashKeySerializer();
+			@SuppressWarnings("unchecked")
+			RedisSerializer<Object> hashValueSerializer = (RedisSerializer<Object>) redis.getHashValueSerializer();
+			this.delta.forEach((name, value) -> {
+				args.add(hashKeySerializer.serialize(name));
+				args.add(hashValueSerializer.serialize(value));
+			});
+			this.delta = new HashMap<>(this.delta.size());
+
+			redis.execute(SAVE_DELTA_SCRIPT, RedisSerializer.byteArray(), SCRIPT_RESULT_SERIALIZER, keys,
+					args.toArray());
+		}
+
+		private String getOriginalPrincipalName() {
+			if (!this.originalPrincipalNameResolved) {
+				this.originalPrincipalNameResolved = true;
+				Map<String, String> indexes = RedisIndexedSessionRepository.this.indexResolver.resolveIndexesFor(this);
+				this.originalPrincipalName = indexes.get(PRINCIPAL_NAME_INDEX_NAME);
+			}
+			return this.originalPrincipalName;
+		}
+
+		private void resolveOriginalPrincipalNameIfNecessary(String attributeName) {
+			if (!this.originalPrincipalNameResolved
+					&& (FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME.equals(attributeName)
+							|| SPRING_SECURITY_CONTEXT.equals(attributeName))) {
+				getOriginalPrincipalName();
+			}
+		}
+
+		/**
+		 * The script accesses keys in several hash slots, which Redis Cluster rejects.
+		 */
+		private void assertScriptSupported() {
+			if (RedisIndexedSessionRepository.this.scriptSupported) {
+				return;
+			}
+			Boolean cluster = RedisIndexedSessionRepository.this.sessionRedisOperations
+					.execute((RedisCallback<Boolean>) (connection) -> connection instanceof RedisClusterConnection);
+			if (Boolean.TRUE.equals(cluster)) {
+				throw new IllegalStateException("RedisWriteMode.SCRIPT is not supported with Redis Cluster");
+			}
+			RedisIndexedSessionRepository.this.scriptSupported = true;
+		}
+
+		private boolean isPrincipalChanged() {
 			String principalSessionKey = getSessionAttrNameKey(
 					FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME);
 			String securityPrincipalSessionKey = getSessionAttrNameKey(SPRING_SECURITY_CONTEXT);
-			if (this.delta.containsKey(principalSessionKey) || this.delta.containsKey(securityPrincipalSessionKey)) {
-				if (this.originalPrincipalName != null) {
+			return this.delta.containsKey(principalSessionKey) || this.delta.containsKey(securityPrincipalSessionKey);
+		}
+
+		private Long getOriginalExpiration() {
+			return (this.originalLastAccessTime != null)
+					? this.originalLastAccessTime.plus(getMaxInactiveInterval()).toEpochMilli() : null;
+		}
+
+		private void saveDelta(RedisOperations<Object, Object> redis) {
+			String sessionId = getId();
+			redis.boundHashOps(getSessionKey(sessionId)).putAll(this.delta);
+			if (isPrincipalChanged()) {
+				if (getOriginalPrincipalName() != null) {
 					String originalPrincipalRedisKey = getPrincipalKey(this.originalPrincipalName);
-					RedisIndexedSessionRepository.this.sessionRedisOperations.boundSetOps(originalPrincipalRedisKey)
-							.remove(sessionId);
+					redis.boundSetOps(originalPrincipalRedisKey).remove(sessionId);
 				}
 				Map<String, String> indexes = RedisIndexedSessionRepository.this.indexResolver.resolveIndexesFor(this);
 				String principal = indexes.get(PRINCIPAL_NAME_INDEX_NAME);
 				this.originalPrincipalName = principal;
 				if (principal != null) {
 					String principalRedisKey = getPrincipalKey(principal);
-					RedisIndexedSessionRepository.this.sessionRedisOperations.boundSetOps(principalRedisKey)
-							.add(sessionId);
+					redis.boundSetOps(principalRedisKey).add(sessionId);
 				}
 			}
 
 			this.delta = new HashMap<>(this.delta.size());
 
 			// 计算原先的过期时间 -> last access time + timeout
-			Long originalExpiration = (this.originalLastAccessTime != null)
-					? this.originalLastAccessTime.plus(getMaxInactiveInterval()).toEpochMilli() : null;
-			RedisIndexedSessionRepository.this.expirationPolicy.onExpirationUpdated(originalExpiration, this);
+			Long originalExpiration = getOriginalExpiration();
+			RedisIndexedSessionRepository.this.expirationPolicy.onExpirationUpdated(redis, originalExpiration, this);
 		}
 
 		/**
@@ -911,21 +1945,32 @@ public class RedisIndexedSessionRepository
 			if (!this.isNew) {
 				String originalSessionIdKey = getSessionKey(this.originalSessionId);
 				String sessionIdKey = getSessionKey(sessionId);
-				try {
-					// Redis 迁移（可能发生不再同一个分片报错）
-					RedisIndexedSessionRepository.this.sessionRedisOperations.rename(originalSessionIdKey,
-							sessionIdKey);
-				} catch (NonTransientDataAccessException ex) {
-					handleErrNoSuchKeyError(ex);
-				}
 				String originalExpiredKey = getExpiredKey(this.originalSessionId);
 				String expiredKey = getExpiredKey(sessionId);
-				try {
-					RedisIndexedSessionRepository.this.sessionRedisOperations.rename(originalExpiredKey, expiredKey);
-				} catch (NonTransientDataAccessException ex) {
-					handleErrNoSuchKeyError(ex);
+				if (RedisIndexedSessionRepository.this.keyLayout == RedisKeyLayout.HASH_TAGGED) {
+					// 不同 sessionId 的 key 位于不同的 slot，无法使用 RENAME
+					moveKey(originalSessionIdKey, sessionIdKey);
+					// the tombstone must exist before the del keyspace event is published
+					RedisIndexedSessionRepository.this.sessionRedisOperations.opsForValue().set(
+							getMovedKey(this.originalSessionId), "", MOVED_TOMBSTONE_TIME_TO_LIVE.toMillis(),
+							TimeUnit.MILLISECONDS);
+					moveKey(originalExpiredKey, expiredKey);
+				} else {
+					try {
+						// Redis 迁移（可能发生不再同一个分片报错）
+						RedisIndexedSessionRepository.this.sessionRedisOperations.rename(originalSessionIdKey,
+								sessionIdKey);
+					} catch (NonTransientDataAccessException ex) {
+						handleErrNoSuchKeyError(ex);
+					}
+					try {
+						RedisIndexedSessionRepository.this.sessionRedisOperations.rename(originalExpiredKey,
+								expiredKey);
+					} catch (NonTransientDataAccessException ex) {
+						handleErrNoSuchKeyError(ex);
+					}
 				}
-				if (this.originalPrincipalName != null) {
+				if (getOriginalPrincipalName() != null) {
 					String originalPrincipalRedisKey = getPrincipalKey(this.originalPrincipalName);
 					RedisIndexedSessionRepository.this.sessionRedisOperations.boundSetOps(originalPrincipalRedisKey)
 							.remove(this.originalSessionId);
@@ -936,6 +1981,36 @@ public class RedisIndexedSessionRepository
 			this.originalSessionId = sessionId;
 		}
 
+		/**
+		 * Moves the provided key, along with its expiration, using {@code DUMP} and
+		 * {@code RESTORE} followed by {@code DEL}, which unlike {@code RENAME} works when
+		 * the keys map to different hash slots of Redis Cluster.
+		 * <p>
+		 * Since the keys may live on different nodes, the move cannot be made atomic: a
+		 * write to the original key between the {@code DUMP} and the {@code DEL} is lost,
+		 * and the {@code DEL} publishes a {@code del} keyspace event for the original key.
+		 * The latter is why the move of the expires key is preceded by a tombstone that
+		 * {@link RedisIndexedSessionRepository#onMessage(Message, byte[])} checks before
+		 * reporting a missing session.
+		 * @param originalKey the key to move
+		 * @param key the new key
+		 */
+		private void moveKey(String originalKey, String key) {
+			RedisOperations<Object, Object> redis = RedisIndexedSessionRepository.this.sessionRedisOperations;
+			byte[] value = redis.dump(originalKey);
+			if (value == null) {
+				return;
+			}
+			Long timeToLive = redis.getExpire(originalKey, TimeUnit.MILLISECONDS);
+			if (timeToLive != null && timeToLive == -2) {
+				// expired in the meantime
+				return;
+			}
+			redis.restore(key, value, (timeToLive != null && timeToLive > 0) ? timeToLive : 0, TimeUnit.MILLISECONDS,
+					true);
+			redis.delete(originalKey);
+		}
+
 		private void handleErrNoSuchKeyError(NonTransientDataAccessException ex) {
 			String message = NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
 			if (!StringUtils.startsWithIgnoreCase(message, "ERR no such key")) {
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+/**
+ * Specifies how a {@link RedisIndexedSessionRepository} lays out the keys of a session.
+ * The layout only matters when using Redis Cluster, where commands that access several
+ * keys fail unless all the keys map to the same hash slot.
+ *
+ * @since 2.8.0
+ * @see RedisIndexedSessionRepository#setKeyLayout(RedisKeyLayout)
+ */
+public enum RedisKeyLayout {
+
+	/**
+	 * Uses the session id as is, for example
+	 * {@code spring:session:sessions:33fdd1b6-b496-4b33-9f7d-df96679d32fe}. This is the
+	 * default and matches the behavior of previous releases.
+	 */
+	STANDARD,
+
+	/**
+	 * Wraps the session id in a hash tag, for example
+	 * {@code spring:session:sessions:{33fdd1b6-b496-4b33-9f7d-df96679d32fe}}, so that the
+	 * session hash and its expires key map to the same hash slot. Since the keys of the
+	 * original and the changed id of a session map to different slots, changing the
+	 * session id moves the keys using {@code DUMP} and {@code RESTORE} instead of
+	 * {@code RENAME}, which is not atomic.
+	 * <p>
+	 * Note that the principal index and the expiration mappings still map to other slots,
+	 * so when using Redis Cluster the commands of a save can be sent with
+	 * {@link RedisWriteMode#SEQUENTIAL} or {@link RedisWriteMode#PIPELINED}, but not with
+	 * {@link RedisWriteMode#TRANSACTIONAL} or {@link RedisWriteMode#SCRIPT}.
+	 */
+	HASH_TAGGED
+
+}
@@ -16,17 +16,26 @@
 
 package org.springframework.session.data.redis;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
-import java.util.Set;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.data.redis.core.BoundSetOperations;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.session.Session;
 import org.springframework.session.data.redis.RedisIndexedSessionRepository.RedisSession;
 
@@ -42,39 +51,112 @@ import org.springframework.session.data.redis.RedisIndexedSessionRepository.Redi
  * In some instances the {@link #cleanExpiredSessions()} method may not be not invoked for
  * a specific time. For example, this may happen when a server is restarted. To account
  * for this, the expiration on the Redis session is also set.
+ * <p>
+ * The sessions to access are read using {@code SSCAN} and accessed in pipelined batches
+ * of {@link #setCleanupBatchSize(int) cleanupBatchSize}, so that a minute in which many
+ * sessions expire does not cost one round trip per session. A run stops once its
+ * {@link #setCleanupTimeBudget(Duration) time budget} is exhausted, in which case the
+ * remaining sessions are left for Redis to expire on its own.
+ * <p>
+ * The sessions of a minute can be spread over several
+ * {@link #setExpirationShards(int) shards}, each with its own set, so that with Redis
+ * Cluster the sessions expiring in the same minute are not all tracked in a single hash
+ * slot. The shard of a session is derived from its id and cleanup accesses every shard.
+ * <p>
+ * This is the default policy. See {@link SortedSetRedisSessionExpirationPolicy} for an
+ * alternative that tracks the expirations using a single sorted set.
  *
  * @author Rob Winch
  * @since 1.0
  */
-final class RedisSessionExpirationPolicy {
+class RedisSessionExpirationPolicy {
 
 	private static final Log logger = LogFactory.getLog(RedisSessionExpirationPolicy.class);
 
-	private static final String SESSION_EXPIRES_PREFIX = "expires:";
+	static final String SESSION_EXPIRES_PREFIX = "expires:";
 
 	private final RedisOperations<Object, Object> redis;
 
-	private final Function<Long, String> lookupExpirationKey;
+	private final BiFunction<Long, Integer, String> lookupExpirationKey;
 
 	private final Function<String, String> lookupSessionKey;
 
+	private final Function<String, String> lookupExpiredKey;
+
+	private final LongAdder cleanupTouchedKeyCount = new LongAdder();
+
+	private int cleanupBatchSize = RedisIndexedSessionRepository.DEFAULT_CLEANUP_BATCH_SIZE;
+
+	private Duration cleanupTimeBudget = Duration.ZERO;
+
+	private int expirationShards = 1;
+
+	private Consumer<List<String>> expiredSessionsHandler;
+
 	/**
 	 *
 	 * @param sessionRedisOperations 简单理解为拿到这个对象就可以操作 redis
-	 * @param lookupExpirationKey    寻找过期的 key
+	 * @param lookupExpirationKey    寻找过期的 key（过期的分钟，分片）
 	 * @param lookupSessionKey       寻找 session key
+	 * @param lookupExpiredKey       寻找 session expires key
 	 */
 	RedisSessionExpirationPolicy(RedisOperations<Object, Object> sessionRedisOperations,
-								 Function<Long, String> lookupExpirationKey, Function<String, String> lookupSessionKey) {
+								 BiFunction<Long, Integer, String> lookupExpirationKey,
+								 Function<String, String> lookupSessionKey,
+								 Function<String, String> lookupExpiredKey) {
 		super();
 		this.redis = sessionRedisOperations;
 		this.lookupExpirationKey = lookupExpirationKey;
 		this.lookupSessionKey = lookupSessionKey;
+		this.lookupExpiredKey = lookupExpiredKey;
+	}
+
+	void setCleanupBatchSize(int cleanupBatchSize) {
+		this.cleanupBatchSize = cleanupBatchSize;
+	}
+
+	int getCleanupBatchSize() {
+		return this.cleanupBatchSize;
+	}
+
+	void setCleanupTimeBudget(Duration cleanupTimeBudget) {
+		this.cleanupTimeBudget = cleanupTimeBudget;
+	}
+
+	long getCleanupTouchedKeyCount() {
+		return this.cleanupTouchedKeyCount.sum();
+	}
+
+	void setExpirationShards(int expirationShards) {
+		this.expirationShards = expirationShards;
+	}
+
+	int getExpirationShards() {
+		return this.expirationShards;
+	}
+
+	/**
+	 * Set the handler that cleanup invokes with the ids of each batch of sessions that
+	 * may have expired, instead of accessing their expires keys.
+	 * @param expiredSessionsHandler the handler, or {@code null} to access the expires
+	 * keys
+	 */
+	void setExpiredSessionsHandler(Consumer<List<String>> expiredSessionsHandler) {
+		this.expiredSessionsHandler = expiredSessionsHandler;
+	}
+
+	/**
+	 * Returns the shard that tracks the expiration of the session with the provided id.
+	 * @param sessionId the session id
+	 * @return the shard, between {@code 0} and the number of shards (exclusive)
+	 */
+	int getShard(String sessionId) {
+		return (this.expirationShards == 1) ? 0 : Math.floorMod(sessionId.hashCode(), this.expirationShards);
 	}
 
 	void onDelete(Session session) {
 		long toExpire = roundUpToNextMinute(expiresInMillis(session));
-		String expireKey = getExpirationKey(toExpire);
+		String expireKey = getExpirationKey(toExpire, getShard(session.getId()));
 		String entryToRemove = SESSION_EXPIRES_PREFIX + session.getId();
 		this.redis.boundSetOps(expireKey).remove(entryToRemove);
 	}
@@ -86,8 +168,22 @@ final class RedisSessionExpirationPolicy {
 	 * @param session
 	 */
 	void onExpirationUpdated(Long originalExpirationTimeInMilli, Session session) {
+		onExpirationUpdated(this.redis, originalExpirationTimeInMilli, session);
+	}
+
+	/**
+	 * Same as {@link #onExpirationUpdated(Long, Session)} but issues the commands using the
+	 * provided {@link RedisOperations}, which allows them to be sent as part of a pipelined
+	 * or transactional batch.
+	 * @param redis the {@link RedisOperations} to use
+	 * @param originalExpirationTimeInMilli the original expiration time
+	 * @param session the session
+	 */
+	void onExpirationUpdated(RedisOperations<Object, Object> redis, Long originalExpirationTimeInMilli,
+			Session session) {
 		// expires:e3089a07-e30d-49f8-b178-27c8c0ce16f1
 		String keyToExpire = SESSION_EXPIRES_PREFIX + session.getId();
+		int shard = getShard(session.getId());
 
 		// 计算出 session 在什么时候过期，然后按照分钟向上取整 -> 批量过期
 		long toExpire = roundUpToNextMinute(expiresInMillis(session));
@@ -98,31 +194,23 @@ final class RedisSessionExpirationPolicy {
 			long originalRoundedUp = roundUpToNextMinute(originalExpirationTimeInMilli);
 			// 如果两次过期的分钟不相等，那么就从之前的集合中删除
 			if (toExpire != originalRoundedUp) {
-				String expireKey = getExpirationKey(originalRoundedUp);
-				this.redis.boundSetOps(expireKey).remove(keyToExpire);
+				String expireKey = getExpirationKey(originalRoundedUp, shard);
+				redis.boundSetOps(expireKey).remove(keyToExpire);
 			}
 		}
 
 		long sessionExpireInSeconds = session.getMaxInactiveInterval().getSeconds();
 
-		// spring:session:sessions:expires:e3089a07-e30d-49f8-b178-27c8c0ce16f1
-		String sessionKey = getSessionKey(keyToExpire);
-
 		// 如果 timeout 设置为 -1，
 		if (sessionExpireInSeconds < 0) {
-			// 确保键是存在的。append -> 追加空字符串
-			this.redis.boundValueOps(sessionKey).append("");
-			// 持久化，就是删除 TTL
-			this.redis.boundValueOps(sessionKey).persist();
-			// 持久化 Session
-			this.redis.boundHashOps(getSessionKey(session.getId())).persist();
+			persistSessionKeys(redis, session);
 			return;
 		}
 
 		// spring:session:expirations:1758364980000
 		// 在这一分钟过期的 session 集合
-		String expireKey = getExpirationKey(toExpire);
-		BoundSetOperations<Object, Object> expireOperations = this.redis.boundSetOps(expireKey);
+		String expireKey = getExpirationKey(toExpire, shard);
+		BoundSetOperations<Object, Object> expireOperations = redis.boundSetOps(expireKey);
 		expireOperations.add(keyToExpire);
 
 		// 真正 session 过期时间是 timeout + 5 分钟
@@ -131,29 +219,56 @@ final class RedisSessionExpirationPolicy {
 		// spring:session:expirations:1758364980000 -> 这个集合的时间比 timeout 多 5 分钟
 		expireOperations.expire(fiveMinutesAfterExpires, TimeUnit.SECONDS);
 
+		expireSessionKeys(redis, session);
+	}
+
+	/**
+	 * Removes the expiration of the session and of its expires key, for sessions with a
+	 * negative maximum inactive interval.
+	 * @param redis the {@link RedisOperations} to use
+	 * @param session the session
+	 */
+	void persistSessionKeys(RedisOperations<Object, Object> redis, Session session) {
+		String expiredKey = getExpiredKey(session.getId());
+		// 确保键是存在的。append -> 追加空字符串
+		redis.boundValueOps(expiredKey).append("");
+		// 持久化，就是删除 TTL
+		redis.boundValueOps(expiredKey).persist();
+		// 持久化 Session
+		redis.boundHashOps(getSessionKey(session.getId())).persist();
+	}
+
+	/**
+	 * Sets the expiration of the session expires key to the maximum inactive interval and
+	 * the expiration of the session itself to five minutes after that.
+	 * @param redis the {@link RedisOperations} to use
+	 * @param session the session
+	 */
+	void expireSessionKeys(RedisOperations<Object, Object> redis, Session session) {
+		long sessionExpireInSeconds = session.getMaxInactiveInterval().getSeconds();
+		long fiveMinutesAfterExpires = sessionExpireInSeconds + TimeUnit.MINUTES.toSeconds(5);
+		String expiredKey = getExpiredKey(session.getId());
 		if (sessionExpireInSeconds == 0) {
 			// 如果 session 是立即失效，那么就立即删除
 			// 业务层可以 setMaxInactiveInterval(0) 使得 session 立即失效
-			this.redis.delete(sessionKey);
+			redis.delete(expiredKey);
 		} else {
-			this.redis.boundValueOps(sessionKey).append("");
-			this.redis.boundValueOps(sessionKey).expire(sessionExpireInSeconds, TimeUnit.SECONDS);
+			redis.boundValueOps(expiredKey).append("");
+			redis.boundValueOps(expiredKey).expire(sessionExpireInSeconds, TimeUnit.SECONDS);
 		}
-		this.redis.boundHashOps(getSessionKey(session.getId())).expire(fiveMinutesAfterExpires, TimeUnit.SECONDS);
+		redis.boundHashOps(getSessionKey(session.getId())).expire(fiveMinutesAfterExpires, TimeUnit.SECONDS);
 	}
 
-	String getExpirationKey(long expires) {
-		// this.namespace + "expirations:" + expiration
+	String getExpirationKey(long expires, int shard) {
+		// this.namespace + "expirations:" + expiration (+ ":" + shard)
 		// spring:session:expirations: + expiration
-		return this.lookupExpirationKey.apply(expires);
+		return this.lookupExpirationKey.apply(expires, shard);
 	}
 
 	/**
-	 * 基于 session 存储的键空间，构造 key
-	 * <p>
-	 * 这个方法不仅用于构造 session 的 key，也用于构造 session expire 的 key
+	 * 基于 session 存储的键空间，构造 session 的 key
 	 *
-	 * @param sessionId 字符串。通常可以认为是 sessionId，有时候传入的是 expire + sessionId
+	 * @param sessionId sessionId
 	 * @return redis key
 	 */
 	String getSessionKey(String sessionId) {
@@ -163,6 +278,17 @@ final class RedisSessionExpirationPolicy {
 		return this.lookupSessionKey.apply(sessionId);
 	}
 
+	/**
+	 * 构造 session expires 的 key，这个 key 过期时会触发 session 的过期事件
+	 *
+	 * @param sessionId sessionId
+	 * @return redis key
+	 */
+	String getExpiredKey(String sessionId) {
+		// this.namespace + "sessions:expires:" + sessionId
+		return this.lookupExpiredKey.apply(sessionId);
+	}
+
 	/**
 	 * 这个方法没有访问修饰符，所以只能被同一个包访问
 	 * <p>
@@ -178,34 +304,108 @@ final class RedisSessionExpirationPolicy {
 			logger.debug("Cleaning up sessions expiring at " + new Date(prevMin));
 		}
 
-		// 得到一个跟分钟整点相关的 key
-		String expirationKey = getExpirationKey(prevMin);
-
-		// 得到所有 member，这些都是需要过期的 -> 意思就是说，这一分钟已经过期的
-		Set<Object> sessionsToExpire = this.redis.boundSetOps(expirationKey).members();
-
-		// 清除这个 key，那么所有 member 也消失了
-		this.redis.delete(expirationKey);
+		long deadline = getCleanupDeadline(now);
+		long touched = 0;
+		for (int shard = 0; shard < this.expirationShards; shard++) {
+			if (shard > 0 && isPastDeadline(deadline)) {
+				if (logger.isWarnEnabled()) {
+					logger.warn("Cleanup of sessions expiring at " + new Date(prevMin) + " exceeded time budget of "
+							+ this.cleanupTimeBudget + " before accessing shard " + shard + " of "
+							+ this.expirationShards);
+				}
+				break;
+			}
+			// 得到一个跟分钟整点相关的 key
+			touched += cleanExpiredSessions(getExpirationKey(prevMin, shard), prevMin, deadline);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Accessed " + touched + " sessions in " + (System.currentTimeMillis() - now) + " ms");
+		}
+	}
 
-		// 遍历这些即将过期的 session
-		for (Object session : sessionsToExpire) {
-			// 获取 session 对象的 key
-			String sessionKey = getSessionKey((String) session);
+	private long cleanExpiredSessions(String expirationKey, long prevMin, long deadline) {
+		long touched = 0;
+		boolean completed = true;
+		// 用 SSCAN 分批读取这一分钟已经过期的 member，每批在一次 pipeline 中触摸
+		ScanOptions options = ScanOptions.scanOptions().count(this.cleanupBatchSize).build();
+		try (Cursor<Object> sessionsToExpire = this.redis.boundSetOps(expirationKey).scan(options)) {
+			List<Object> batch = new ArrayList<>(this.cleanupBatchSize);
+			while (sessionsToExpire.hasNext()) {
+				batch.add(sessionsToExpire.next());
+				if (batch.size() == this.cleanupBatchSize) {
+					touched += touchAll(batch);
+					batch.clear();
+					if (isPastDeadline(deadline)) {
+						completed = !sessionsToExpire.hasNext();
+						break;
+					}
+				}
+			}
+			touched += touchAll(batch);
+		}
 
-			// 触摸一下，触发 redis 过期
-			touch(sessionKey);
+		// 全部触摸完成后才清除这个 key，否则留给 key 自身的过期时间
+		if (completed) {
+			this.redis.delete(expirationKey);
+		}
+		else if (logger.isWarnEnabled()) {
+			logger.warn("Cleanup of sessions expiring at " + new Date(prevMin) + " exceeded time budget of "
+					+ this.cleanupTimeBudget + " after accessing " + touched + " sessions of " + expirationKey);
 		}
+		return touched;
 	}
 
 	/**
-	 * By trying to access the session we only trigger a deletion if it the TTL is
-	 * expired. This is done to handle
+	 * Accesses the provided sessions in a single pipelined batch. By trying to access the
+	 * sessions we only trigger a deletion if the TTL is expired. This is done to handle
 	 * https://github.com/spring-projects/spring-session/issues/93
-	 *
-	 * @param key the key
+	 * <p>
+	 * If an {@link #setExpiredSessionsHandler(Consumer) expired sessions handler} is set,
+	 * the ids of the sessions are passed to it instead.
+	 * @param sessionsToExpire the expires keys suffixes of the sessions to access
+	 * @return the number of accessed sessions
 	 */
-	private void touch(String key) {
-		this.redis.hasKey(key);
+	int touchAll(Collection<Object> sessionsToExpire) {
+		if (sessionsToExpire.isEmpty()) {
+			return 0;
+		}
+		if (this.expiredSessionsHandler != null) {
+			List<String> sessionIds = new ArrayList<>(sessionsToExpire.size());
+			for (Object session : sessionsToExpire) {
+				sessionIds.add(((String) session).substring(SESSION_EXPIRES_PREFIX.length()));
+			}
+			this.expiredSessionsHandler.accept(sessionIds);
+			this.cleanupTouchedKeyCount.add(sessionsToExpire.size());
+			return sessionsToExpire.size();
+		}
+		this.redis.executePipelined(new SessionCallback<Object>() {
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public <K, V> Object execute(RedisOperations<K, V> operations) {
+				RedisOperations<Object, Object> redisOperations = (RedisOperations<Object, Object>) operations;
+				for (Object session : sessionsToExpire) {
+					String sessionId = ((String) session).substring(SESSION_EXPIRES_PREFIX.length());
+					redisOperations.hasKey(getExpiredKey(sessionId));
+				}
+				return null;
+			}
+
+		});
+		this.cleanupTouchedKeyCount.add(sessionsToExpire.size());
+		return sessionsToExpire.size();
+	}
+
+	long getCleanupDeadline(long start) {
+		return (this.cleanupTimeBudget.isZero()) ? Long.MAX_VALUE : start + this.cleanupTimeBudget.toMillis();
+	}
+
+	static boolean isPastDeadline(long deadline) {
+		return System.currentTimeMillis() >= deadline;
+	}
+
+	RedisOperations<Object, Object> getRedisOperations() {
+		return this.redis;
 	}
 
 	/**
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.SessionInvalidationChannel;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionInvalidationChannel} that uses Redis Pub/Sub. The messages are
+ * published using the provided {@link RedisOperations} and received through the
+ * provided {@link RedisMessageListenerContainer}, which is typically the one used by
+ * {@link RedisIndexedSessionRepository} for the session events.
+ *
+ * @since 2.8.0
+ */
+public class RedisSessionInvalidationChannel implements SessionInvalidationChannel {
+
+	/**
+	 * The default name of the Redis channel.
+	 */
+	public static final String DEFAULT_CHANNEL = "spring:session:invalidations";
+
+	private final RedisOperations<?, ?> redisOperations;
+
+	private final RedisMessageListenerContainer listenerContainer;
+
+	private final String channel;
+
+	/**
+	 * Create a new instance that uses {@link #DEFAULT_CHANNEL}.
+	 * @param redisOperations the {@link RedisOperations} used to publish the messages
+	 * @param listenerContainer the container used to receive the messages
+	 */
+	public RedisSessionInvalidationChannel(RedisOperations<?, ?> redisOperations,
+			RedisMessageListenerContainer listenerContainer) {
+		this(redisOperations, listenerContainer, DEFAULT_CHANNEL);
+	}
+
+	/**
+	 * Create a new instance.
+	 * @param redisOperations the {@link RedisOperations} used to publish the messages
+	 * @param listenerContainer the container used to receive the messages
+	 * @param channel the name of the Redis channel
+	 */
+	public RedisSessionInvalidationChannel(RedisOperations<?, ?> redisOperations,
+			RedisMessageListenerContainer listenerContainer, String channel) {
+		Assert.notNull(redisOperations, "redisOperations cannot be null");
+		Assert.notNull(listenerContainer, "listenerContainer cannot be null");
+		Assert.hasText(channel, "channel cannot be empty");
+		this.redisOperations = redisOperations;
+		this.listenerContainer = listenerContainer;
+		this.channel = channel;
+	}
+
+	@Override
+	public void publish(String message) {
+		byte[] channel = this.channel.getBytes(StandardCharsets.UTF_8);
+		byte[] body = RedisSerializer.string().serialize(message);
+		this.redisOperations.execute((RedisCallback<Long>) (connection) -> connection.publish(channel, body));
+	}
+
+	@Override
+	public void subscribe(Consumer<String> listener) {
+		Assert.notNull(listener, "listener cannot be null");
+		this.listenerContainer.addMessageListener(
+				(message, pattern) -> listener.accept(RedisSerializer.string().deserialize(message.getBody())),
+				new ChannelTopic(this.channel));
+	}
+
+}
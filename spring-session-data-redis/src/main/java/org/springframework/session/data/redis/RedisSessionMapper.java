@@ -18,9 +18,17 @@ package org.springframework.session.data.redis;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.session.MapSession;
 import org.springframework.session.Session;
 import org.springframework.util.Assert;
@@ -94,4 +102,116 @@ final class RedisSessionMapper implements Function<Map<String, Object>, MapSessi
 		throw new IllegalStateException(key + " key must not be null");
 	}
 
+	/**
+	 * Read the entries of a session hash with the serializers of the provided
+	 * {@link RedisOperations}, without deserializing the attribute values.
+	 * @param redisOperations the {@link RedisOperations} to use
+	 * @param key the key of the session hash
+	 * @return the entries, empty if the hash does not exist
+	 * @see #deserializeLazily(Iterable, Function, Function)
+	 */
+	static Map<String, Object> readLazily(RedisOperations<?, ?> redisOperations, Object key) {
+		byte[] rawKey = serializeKey(redisOperations, key);
+		Map<byte[], byte[]> entries = redisOperations
+				.execute((RedisCallback<Map<byte[], byte[]>>) (connection) -> connection.hGetAll(rawKey));
+		return deserializeLazily(redisOperations, entries);
+	}
+
+	/**
+	 * Same as {@link #readLazily(RedisOperations, Object)} but reads the provided session
+	 * hashes in a single pipelined batch.
+	 * @param redisOperations the {@link RedisOperations} to use
+	 * @param keys the keys of the session hashes
+	 * @return the entries of each hash, in the order of the keys, empty if the hash does
+	 * not exist
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Map<String, Object>> readAllLazily(RedisOperations<?, ?> redisOperations, List<?> keys) {
+		List<byte[]> rawKeys = new ArrayList<>(keys.size());
+		for (Object key : keys) {
+			rawKeys.add(serializeKey(redisOperations, key));
+		}
+		List<Object> results = redisOperations.executePipelined((RedisCallback<Object>) (connection) -> {
+			for (byte[] rawKey : rawKeys) {
+				connection.hGetAll(rawKey);
+			}
+			return null;
+		}, RedisSerializer.byteArray());
+		List<Map<String, Object>> entries = new ArrayList<>(results.size());
+		for (Object result : results) {
+			entries.add(deserializeLazily(redisOperations, (Map<byte[], byte[]>) result));
+		}
+		return entries;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static byte[] serializeKey(RedisOperations<?, ?> redisOperations, Object key) {
+		RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) redisOperations.getKeySerializer();
+		// as RedisTemplate does, raw bytes are used as is when there is no serializer
+		return (keySerializer != null) ? keySerializer.serialize(key) : (byte[]) key;
+	}
+
+	private static Map<String, Object> deserializeLazily(RedisOperations<?, ?> redisOperations,
+			Map<byte[], byte[]> entries) {
+		if (entries == null) {
+			return Collections.emptyMap();
+		}
+		RedisSerializer<?> hashKeySerializer = redisOperations.getHashKeySerializer();
+		RedisSerializer<?> hashValueSerializer = redisOperations.getHashValueSerializer();
+		return deserializeLazily(entries.entrySet(),
+				(bytes) -> (hashKeySerializer != null) ? hashKeySerializer.deserialize(bytes) : bytes,
+				(bytes) -> (hashValueSerializer != null) ? hashValueSerializer.deserialize(bytes) : bytes);
+	}
+
+	/**
+	 * Deserialize the raw entries of a session hash, except the attribute values that are
+	 * only deserialized when they are first accessed through
+	 * {@link #getAttribute(MapSession, String)}.
+	 * @param entries the raw entries
+	 * @param keyReader the function used to deserialize the keys
+	 * @param valueReader the function used to deserialize the values
+	 * @param <B> the raw type
+	 * @return the entries to {@link #apply(Map) map}
+	 */
+	static <B> Map<String, Object> deserializeLazily(Iterable<? extends Map.Entry<B, B>> entries,
+			Function<B, Object> keyReader, Function<B, Object> valueReader) {
+		Map<String, Object> map = new HashMap<>();
+		for (Map.Entry<B, B> entry : entries) {
+			String key = (String) keyReader.apply(entry.getKey());
+			B value = entry.getValue();
+			map.put(key, key.startsWith(ATTRIBUTE_PREFIX) ? new LazyAttributeValue(() -> valueReader.apply(value))
+					: valueReader.apply(value));
+		}
+		return map;
+	}
+
+	/**
+	 * Return the value of an attribute of a session mapped from
+	 * {@link #deserializeLazily lazily deserialized} entries, deserializing it on first
+	 * access.
+	 * @param session the session
+	 * @param attributeName the attribute name
+	 * @param <T> the attribute type
+	 * @return the attribute value
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T getAttribute(MapSession session, String attributeName) {
+		Object value = session.getAttribute(attributeName);
+		if (value instanceof LazyAttributeValue) {
+			value = ((LazyAttributeValue) value).supplier.get();
+			session.setAttribute(attributeName, value);
+		}
+		return (T) value;
+	}
+
+	private static final class LazyAttributeValue {
+
+		private final Supplier<Object> supplier;
+
+		private LazyAttributeValue(Supplier<Object> supplier) {
+			this.supplier = supplier;
+		}
+
+	}
+
 }
@@ -157,7 +157,7 @@ public class RedisSessionRepository implements SessionRepository<RedisSessionRep
 	@Override
 	public RedisSession findById(String sessionId) {
 		String key = getSessionKey(sessionId);
-		Map<String, Object> entries = this.sessionRedisOperations.<String, Object>opsForHash().entries(key);
+		Map<String, Object> entries = RedisSessionMapper.readLazily(this.sessionRedisOperations, key);
 		if (entries.isEmpty()) {
 			return null;
 		}
@@ -228,7 +228,7 @@ public class RedisSessionRepository implements SessionRepository<RedisSessionRep
 			}
 			if (this.isNew || (RedisSessionRepository.this.saveMode == SaveMode.ALWAYS)) {
 				getAttributeNames().forEach((attributeName) -> this.delta.put(getAttributeKey(attributeName),
-						cached.getAttribute(attributeName)));
+						RedisSessionMapper.getAttribute(cached, attributeName)));
 			}
 		}
 
@@ -250,7 +250,7 @@ public class RedisSessionRepository implements SessionRepository<RedisSessionRep
 		@Override
 		public <T> T getAttribute(String attributeName) {
 			// 从本地缓存获取属性
-			T attributeValue = this.cached.getAttribute(attributeName);
+			T attributeValue = RedisSessionMapper.getAttribute(this.cached, attributeName);
 
 			// 如果是 saveMode 是 ON_GET_ATTRIBUTE，意思就是需要保存，先放到 delta 中
 			if (attributeValue != null && RedisSessionRepository.this.saveMode.equals(SaveMode.ON_GET_ATTRIBUTE)) {
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.events.SessionDeletedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Reads the session events that a {@link RedisIndexedSessionRepository} using
+ * {@link RedisEventDelivery#STREAM} writes to its event stream, and publishes the
+ * corresponding {@link SessionDeletedEvent} and {@link SessionExpiredEvent}.
+ * <p>
+ * The stream is read as a member of a consumer group, so that each event is published by
+ * a single instance, and each event is acknowledged once published. On start, the events
+ * that were delivered to this consumer but not acknowledged are delivered again. Events
+ * delivered to another consumer that have not been acknowledged for longer than the
+ * {@link #setClaimTimeout(Duration) claim timeout}, typically because that instance
+ * stopped, are claimed and published by this consumer. Using a stable
+ * {@link #setConsumerName(String) consumer name} across restarts allows an instance to
+ * pick up its own events without waiting for the claim timeout. An event that cannot be
+ * deserialized or published is logged and acknowledged, so that it does not block the
+ * events that follow it.
+ * <p>
+ * The stream is read by a dedicated daemon thread which is started and stopped along
+ * with the application context.
+ *
+ * @since 2.8.0
+ */
+public class RedisStreamSessionEventListener implements SmartLifecycle {
+
+	/**
+	 * The default name of the consumer group.
+	 */
+	public static final String DEFAULT_GROUP = "spring-session";
+
+	/**
+	 * The default maximum time a read waits for new events.
+	 */
+	public static final Duration DEFAULT_POLL_TIMEOUT = Duration.ofSeconds(2);
+
+	/**
+	 * The default time after which the unacknowledged events of another consumer are
+	 * claimed.
+	 */
+	public static final Duration DEFAULT_CLAIM_TIMEOUT = Duration.ofMinutes(1);
+
+	/**
+	 * The default maximum number of events read at once.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	private static final Log logger = LogFactory.getLog(RedisStreamSessionEventListener.class);
+
+	private final RedisIndexedSessionRepository sessionRepository;
+
+	private final RedisOperations<Object, Object> redis;
+
+	private final StreamOperations<Object, Object, Object> streamOperations;
+
+	private String group = DEFAULT_GROUP;
+
+	private String consumerName = UUID.randomUUID().toString();
+
+	private Duration pollTimeout = DEFAULT_POLL_TIMEOUT;
+
+	private Duration claimTimeout = DEFAULT_CLAIM_TIMEOUT;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private volatile boolean running;
+
+	private Thread thread;
+
+	/**
+	 * Create a new instance.
+	 * @param sessionRepository the repository that writes the events
+	 */
+	public RedisStreamSessionEventListener(RedisIndexedSessionRepository sessionRepository) {
+		Assert.notNull(sessionRepository, "sessionRepository cannot be null");
+		this.sessionRepository = sessionRepository;
+		this.redis = sessionRepository.getSessionRedisOperations();
+		this.streamOperations = this.redis.opsForStream();
+	}
+
+	/**
+	 * Set the name of the consumer group. Default is {@link #DEFAULT_GROUP}.
+	 * @param group the name of the consumer group
+	 */
+	public void setGroup(String group) {
+		Assert.hasText(group, "group cannot be empty");
+		this.group = group;
+	}
+
+	/**
+	 * Set the name of this consumer within the group. Default is a random name.
+	 * @param consumerName the consumer name
+	 */
+	public void setConsumerName(String consumerName) {
+		Assert.hasText(consumerName, "consumerName cannot be empty");
+		this.consumerName = consumerName;
+	}
+
+	/**
+	 * Set the maximum time a read waits for new events, which also bounds the time it
+	 * takes to stop. Default is {@link #DEFAULT_POLL_TIMEOUT}.
+	 * @param pollTimeout the poll timeout
+	 */
+	public void setPollTimeout(Duration pollTimeout) {
+		Assert.notNull(pollTimeout, "pollTimeout cannot be null");
+		Assert.isTrue(pollTimeout.toMillis() > 0, "pollTimeout must be at least 1 millisecond");
+		this.pollTimeout = pollTimeout;
+	}
+
+	/**
+	 * Set the time after which the unacknowledged events of another consumer are
+	 * claimed. Default is {@link #DEFAULT_CLAIM_TIMEOUT}.
+	 * @param claimTimeout the claim timeout
+	 */
+	public void setClaimTimeout(Duration claimTimeout) {
+		Assert.notNull(claimTimeout, "claimTimeout cannot be null");
+		Assert.isTrue(!claimTimeout.isNegative() && !claimTimeout.isZero(), "claimTimeout must be positive");
+		this.claimTimeout = claimTimeout;
+	}
+
+	/**
+	 * Set the maximum number of events read at once. Default is
+	 * {@link #DEFAULT_BATCH_SIZE}.
+	 * @param batchSize the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "batchSize must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.sessionRepository.getEventDelivery() == RedisEventDelivery.STREAM;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.running) {
+			return;
+		}
+		createGroupIfNecessary();
+		this.running = true;
+		this.thread = new Thread(this::run, "spring-session-redis-stream-events");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (!this.running) {
+			return;
+		}
+		this.running = false;
+		try {
+			// the thread notices at the latest once the current read times out
+			this.thread.join(this.pollTimeout.toMillis() * 2);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		this.thread = null;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private void createGroupIfNecessary() {
+		byte[] streamKey = getRawStreamKey();
+		try {
+			this.redis.execute((RedisCallback<String>) (connection) -> connection.streamCommands().xGroupCreate(streamKey,
+					this.group, ReadOffset.from("0"), true));
+		}
+		catch (DataAccessException ex) {
+			String message = NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+			if (!StringUtils.startsWithIgnoreCase(message, "BUSYGROUP")) {
+				throw ex;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] getRawStreamKey() {
+		RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) this.redis.getKeySerializer();
+		return keySerializer.serialize(this.sessionRepository.getEventStreamKey());
+	}
+
+	/**
+	 * Creates the group again in case the stream was deleted, which deletes its groups.
+	 */
+	private void recreateGroupIfNecessary() {
+		try {
+			createGroupIfNecessary();
+		}
+		catch (RuntimeException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unable to create consumer group " + this.group, ex);
+			}
+		}
+	}
+
+	private void run() {
+		// the events that were delivered to this consumer but not acknowledged are read
+		// first, then the new events
+		ReadOffset offset = ReadOffset.from("0");
+		boolean pending = true;
+		long nextClaim = System.nanoTime();
+		while (this.running) {
+			try {
+				if (System.nanoTime() - nextClaim >= 0) {
+					claimAbandonedEvents();
+					nextClaim = System.nanoTime() + this.claimTimeout.toNanos() / 2;
+				}
+				List<ByteRecord> records = read(offset, pending);
+				if (pending) {
+					pending = !records.isEmpty();
+					offset = (pending) ? ReadOffset.from(records.get(records.size() - 1).getId())
+							: ReadOffset.lastConsumed();
+				}
+				publish(records);
+			}
+			catch (RuntimeException ex) {
+				if (!this.running) {
+					break;
+				}
+				logger.warn("Error reading session events from " + this.sessionRepository.getEventStreamKey()
+						+ ", retrying in " + this.pollTimeout.toMillis() + " ms", ex);
+				sleep(this.pollTimeout);
+				recreateGroupIfNecessary();
+			}
+		}
+	}
+
+	/**
+	 * Reads the raw records, which are deserialized one at a time by
+	 * {@link #publish(List)} so that a record that cannot be deserialized does not fail
+	 * the whole batch.
+	 */
+	private List<ByteRecord> read(ReadOffset offset, boolean pending) {
+		StreamReadOptions options = StreamReadOptions.empty().count(this.batchSize);
+		StreamReadOptions readOptions = (pending) ? options : options.block(this.pollTimeout);
+		byte[] streamKey = getRawStreamKey();
+		List<ByteRecord> records = this.redis.execute((RedisCallback<List<ByteRecord>>) (connection) -> connection
+				.streamCommands().xReadGroup(Consumer.from(this.group, this.consumerName), readOptions,
+						StreamOffset.create(streamKey, offset)));
+		return (records != null) ? records : new ArrayList<>();
+	}
+
+	/**
+	 * Claims and publishes the events that were delivered to another consumer but have
+	 * not been acknowledged for longer than the claim timeout. The pending entries list
+	 * is walked one page of {@link #setBatchSize(int) batchSize} entries at a time, so
+	 * that abandoned events are found behind any number of events that are still being
+	 * processed.
+	 */
+	private void claimAbandonedEvents() {
+		Object streamKey = this.sessionRepository.getEventStreamKey();
+		RecordId start = null;
+		int claimed = 0;
+		while (this.running) {
+			Range<String> range = (start != null) ? Range.rightUnbounded(Range.Bound.inclusive(start.getValue()))
+					: Range.unbounded();
+			PendingMessages pendingMessages = this.streamOperations.pending(streamKey, this.group, range,
+					this.batchSize);
+			List<RecordId> abandoned = new ArrayList<>();
+			RecordId last = null;
+			for (PendingMessage pendingMessage : pendingMessages) {
+				last = pendingMessage.getId();
+				if (!this.consumerName.equals(pendingMessage.getConsumerName())
+						&& pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(this.claimTimeout) >= 0) {
+					abandoned.add(pendingMessage.getId());
+				}
+			}
+			if (!abandoned.isEmpty()) {
+				claimed += claim(abandoned);
+			}
+			if (pendingMessages.size() < this.batchSize || last == null) {
+				break;
+			}
+			// XPENDING only supports exclusive ranges as of Redis 6.2
+			start = RecordId.of(last.getTimestamp(), last.getSequence() + 1);
+		}
+		if (claimed > 0 && logger.isDebugEnabled()) {
+			logger.debug("Claimed " + claimed + " abandoned session events");
+		}
+	}
+
+	private int claim(List<RecordId> ids) {
+		byte[] streamKey = getRawStreamKey();
+		XClaimOptions options = XClaimOptions.minIdle(this.claimTimeout).ids(ids.toArray(new RecordId[0]));
+		List<ByteRecord> records = this.redis.execute((RedisCallback<List<ByteRecord>>) (connection) -> connection
+				.streamCommands().xClaim(streamKey, this.group, this.consumerName, options));
+		if (records == null) {
+			return 0;
+		}
+		publish(records);
+		return records.size();
+	}
+
+	/**
+	 * Deserializes and publishes each of the provided records, then acknowledges it. A
+	 * record that cannot be deserialized or published is logged and acknowledged as well,
+	 * since reading it again would fail the same way.
+	 */
+	@SuppressWarnings("unchecked")
+	private void publish(List<ByteRecord> records) {
+		RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) this.redis.getKeySerializer();
+		RedisSerializer<Object> hashKeySerializer = (RedisSerializer<Object>) this.redis.getHashKeySerializer();
+		RedisSerializer<Object> hashValueSerializer = (RedisSerializer<Object>) this.redis.getHashValueSerializer();
+		Object streamKey = this.sessionRepository.getEventStreamKey();
+		for (ByteRecord record : records) {
+			try {
+				MapRecord<Object, Object, Object> event = record.deserialize(keySerializer, hashKeySerializer,
+						hashValueSerializer);
+				this.sessionRepository.handleEventRecord(event.getValue());
+			}
+			catch (RuntimeException ex) {
+				logger.error("Discarding session event " + record.getId() + " of " + streamKey
+						+ " that cannot be published", ex);
+			}
+			this.streamOperations.acknowledge(streamKey, this.group, record.getId());
+		}
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(duration.toMillis());
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import org.springframework.data.redis.core.SessionCallback;
+
+/**
+ * Specifies how the commands that make up a save of a {@link RedisIndexedSessionRepository}
+ * session are sent to Redis. A single save writes the session hash, the principal index
+ * and the expiration mappings, so the chosen mode determines how many network round trips
+ * a request that touches the session costs.
+ *
+ * @since 2.8.0
+ * @see RedisIndexedSessionRepository#setWriteMode(RedisWriteMode)
+ */
+public enum RedisWriteMode {
+
+	/**
+	 * Sends each command on its own, waiting for the reply before sending the next one.
+	 * This is the default and matches the behavior of previous releases.
+	 */
+	SEQUENTIAL,
+
+	/**
+	 * Sends all the commands of a save as a single pipelined batch using a
+	 * {@link SessionCallback}, which costs a single network round trip.
+	 */
+	PIPELINED,
+
+	/**
+	 * Same as {@link #PIPELINED} with the addition of wrapping the commands in
+	 * {@code MULTI}/{@code EXEC} so that the save is applied atomically.
+	 */
+	TRANSACTIONAL,
+
+	/**
+	 * Performs the whole save as a single Lua script invoked using {@code EVALSHA}. The
+	 * script updates the session hash, the principal index, the expiration mappings and
+	 * the expiration of the session keys atomically on the server, which reduces a save
+	 * to a single command and avoids races between concurrent saves of the same session.
+	 * <p>
+	 * Since the script accesses keys in several hash slots, this mode is not supported
+	 * with Redis Cluster, even with {@link RedisKeyLayout#HASH_TAGGED}.
+	 */
+	SCRIPT
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.session.SessionAttributeCodec;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RedisSerializer} that delegates to a {@link SessionAttributeCodec}, so that it
+ * can be used as the default serializer of {@link RedisIndexedSessionRepository},
+ * {@link RedisSessionRepository} or {@link ReactiveRedisSessionRepository}, for instance
+ * by exposing it as a bean named {@code springSessionDefaultRedisSerializer}.
+ *
+ * @since 2.8.0
+ */
+public class SessionAttributeCodecRedisSerializer implements RedisSerializer<Object> {
+
+	private final SessionAttributeCodec sessionAttributeCodec;
+
+	/**
+	 * Create a new instance.
+	 * @param sessionAttributeCodec the codec to delegate to
+	 */
+	public SessionAttributeCodecRedisSerializer(SessionAttributeCodec sessionAttributeCodec) {
+		Assert.notNull(sessionAttributeCodec, "sessionAttributeCodec cannot be null");
+		this.sessionAttributeCodec = sessionAttributeCodec;
+	}
+
+	@Override
+	public byte[] serialize(Object value) throws SerializationException {
+		if (value == null) {
+			return new byte[0];
+		}
+		try {
+			return this.sessionAttributeCodec.encode(value);
+		}
+		catch (RuntimeException ex) {
+			throw new SerializationException("Cannot serialize", ex);
+		}
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) throws SerializationException {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		try {
+			return this.sessionAttributeCodec.decode(bytes);
+		}
+		catch (RuntimeException ex) {
+			throw new SerializationException("Cannot deserialize", ex);
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.data.redis.connection.Message;
+
+/**
+ * Hands the session event messages received by a {@link RedisIndexedSessionRepository}
+ * over to a pool of worker threads, so that the thread of the listener container is not
+ * held while the sessions are read and the events are published.
+ * <p>
+ * Each worker has a bounded queue and the messages are assigned to the workers by session
+ * id, so that the messages of a given session are handled in order. A worker takes all
+ * the messages queued at once, up to a maximum, and passes them to the handler as a single
+ * batch. If the queue of a worker is full, {@link #dispatch(String, Message)} waits for
+ * space to become available.
+ *
+ * @since 2.8.0
+ * @see RedisIndexedSessionRepository#setEventWorkerCount(int)
+ */
+final class SessionEventDispatcher {
+
+	private static final Log logger = LogFactory.getLog(SessionEventDispatcher.class);
+
+	private static final int MAX_BATCH_SIZE = 100;
+
+	private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+	private final List<BlockingQueue<Message>> queues;
+
+	private final List<Thread> workers;
+
+	private final Consumer<List<Message>> handler;
+
+	private volatile boolean running = true;
+
+	SessionEventDispatcher(int workerCount, int queueCapacity, Consumer<List<Message>> handler) {
+		this.handler = handler;
+		this.queues = new ArrayList<>(workerCount);
+		this.workers = new ArrayList<>(workerCount);
+		for (int i = 0; i < workerCount; i++) {
+			BlockingQueue<Message> queue = new ArrayBlockingQueue<>(queueCapacity);
+			Thread worker = new Thread(() -> run(queue), "spring-session-redis-events-" + i);
+			worker.setDaemon(true);
+			this.queues.add(queue);
+			this.workers.add(worker);
+		}
+		this.workers.forEach(Thread::start);
+	}
+
+	/**
+	 * Queues the provided message to be handled by the worker of the provided session.
+	 * @param sessionId the id of the session the message refers to
+	 * @param message the message
+	 */
+	void dispatch(String sessionId, Message message) {
+		if (!this.running) {
+			logger.warn("Dropping the event of session " + sessionId + " since the event workers are closed");
+			return;
+		}
+		BlockingQueue<Message> queue = this.queues.get(Math.floorMod(sessionId.hashCode(), this.queues.size()));
+		try {
+			queue.put(message);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			logger.warn("Interrupted while dispatching the event of session " + sessionId + ", the event is lost");
+		}
+	}
+
+	/**
+	 * Stops accepting new messages and waits for the workers to handle the messages that
+	 * are still queued. The workers that are not done within the timeout are interrupted,
+	 * and the messages they still have queued are not handled.
+	 */
+	void close() {
+		this.running = false;
+		long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+		try {
+			for (Thread worker : this.workers) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining > 0) {
+					worker.join(remaining);
+				}
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		for (int i = 0; i < this.workers.size(); i++) {
+			Thread worker = this.workers.get(i);
+			if (worker.isAlive()) {
+				logger.warn("Timed out waiting for " + worker.getName() + ", dropping "
+						+ this.queues.get(i).size() + " queued session events");
+				worker.interrupt();
+			}
+		}
+	}
+
+	private void run(BlockingQueue<Message> queue) {
+		List<Message> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		// once closed, the messages that are still queued are handled before stopping
+		while (this.running || !queue.isEmpty()) {
+			try {
+				Message message = queue.poll(1, TimeUnit.SECONDS);
+				if (message == null) {
+					continue;
+				}
+				batch.add(message);
+				queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+				this.handler.accept(batch);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (RuntimeException ex) {
+				logger.error("Error handling " + batch.size() + " session events", ex);
+			}
+			finally {
+				batch.clear();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.data.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.session.Session;
+import org.springframework.session.data.redis.RedisIndexedSessionRepository.RedisSession;
+
+/**
+ * A strategy for expiring {@link RedisSession} instances that tracks the expiration of
+ * all sessions in a single sorted set, scored by the expiration time in milliseconds.
+ * <p>
+ * Compared to {@link RedisSessionExpirationPolicy}, updating the expiration of a session
+ * costs a single {@code ZADD} instead of moving the session between per-minute sets.
+ * Whenever {@link #cleanExpiredSessions()} is invoked, all the sessions whose expiration
+ * time has passed are accessed in batches, regardless of how long ago they expired. This
+ * means that cleanup catches up on its own if it has not been invoked for a while, for
+ * example because all servers were down.
+ * <p>
+ * As with {@link RedisSessionExpirationPolicy}, the sessions can be spread over several
+ * {@link #setExpirationShards(int) shards}, each with its own sorted set, so that the
+ * expiration of every session is not tracked in a single hash slot of Redis Cluster.
+ *
+ * @since 2.8.0
+ * @see RedisExpirationStore#SORTED_SET
+ */
+final class SortedSetRedisSessionExpirationPolicy extends RedisSessionExpirationPolicy {
+
+	private static final Log logger = LogFactory.getLog(SortedSetRedisSessionExpirationPolicy.class);
+
+	// @formatter:off
+	private static final String REMOVE_EXPIRED_SCRIPT_SOURCE = ""
+			+ "local removed = 0\n"
+			+ "local now = tonumber(ARGV[1])\n"
+			+ "for i = 2, #ARGV do\n"
+			+ "  local score = redis.call('ZSCORE', KEYS[1], ARGV[i])\n"
+			+ "  if score and tonumber(score) <= now then\n"
+			+ "    removed = removed + redis.call('ZREM', KEYS[1], ARGV[i])\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "return removed";
+	// @formatter:on
+
+	private static final RedisScript<Long> REMOVE_EXPIRED_SCRIPT = new DefaultRedisScript<>(
+			REMOVE_EXPIRED_SCRIPT_SOURCE, Long.class);
+
+	private static final RedisSerializer<Long> SCRIPT_RESULT_SERIALIZER = new GenericToStringSerializer<>(
+			Long.class);
+
+	private final IntFunction<String> lookupExpirationsKey;
+
+	SortedSetRedisSessionExpirationPolicy(RedisOperations<Object, Object> sessionRedisOperations,
+			IntFunction<String> lookupExpirationsKey, Function<String, String> lookupSessionKey,
+			Function<String, String> lookupExpiredKey) {
+		super(sessionRedisOperations, (expires, shard) -> lookupExpirationsKey.apply(shard), lookupSessionKey,
+				lookupExpiredKey);
+		this.lookupExpirationsKey = lookupExpirationsKey;
+	}
+
+	@Override
+	void onDelete(Session session) {
+		getRedisOperations().boundZSetOps(getExpirationsKey(session)).remove(SESSION_EXPIRES_PREFIX + session.getId());
+	}
+
+	@Override
+	void onExpirationUpdated(RedisOperations<Object, Object> redis, Long originalExpirationTimeInMilli,
+			Session session) {
+		String keyToExpire = SESSION_EXPIRES_PREFIX + session.getId();
+		String expirationsKey = getExpirationsKey(session);
+		if (session.getMaxInactiveInterval().getSeconds() < 0) {
+			redis.boundZSetOps(expirationsKey).remove(keyToExpire);
+			persistSessionKeys(redis, session);
+			return;
+		}
+		redis.boundZSetOps(expirationsKey).add(keyToExpire, expiresInMillis(session));
+		expireSessionKeys(redis, session);
+	}
+
+	@Override
+	void cleanExpiredSessions() {
+		long now = System.currentTimeMillis();
+		long deadline = getCleanupDeadline(now);
+		long touched = 0;
+		for (int shard = 0; shard < getExpirationShards(); shard++) {
+			if (shard > 0 && isPastDeadline(deadline)) {
+				break;
+			}
+			touched += cleanExpiredSessions(getExpirationsKey(shard), now, deadline);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Accessed " + touched + " sessions in " + (System.currentTimeMillis() - now) + " ms");
+		}
+	}
+
+	private long cleanExpiredSessions(String expirationsKey, long now, long deadline) {
+		RedisOperations<Object, Object> redis = getRedisOperations();
+		int batchSize = getCleanupBatchSize();
+		long touched = 0;
+		while (true) {
+			Set<Object> sessionsToExpire = redis.opsForZSet().rangeByScore(expirationsKey, 0, now, 0, batchSize);
+			if (sessionsToExpire == null || sessionsToExpire.isEmpty()) {
+				break;
+			}
+			touched += touchAll(sessionsToExpire);
+			long removed = removeExpired(expirationsKey, sessionsToExpire, now);
+			if (removed == 0 || sessionsToExpire.size() < batchSize) {
+				break;
+			}
+			if (isPastDeadline(deadline)) {
+				if (logger.isWarnEnabled()) {
+					logger.warn("Cleanup of sessions expiring before " + new Date(now)
+							+ " exceeded time budget after accessing " + touched + " sessions of "
+							+ expirationsKey + ", the remaining sessions are accessed by the next run");
+				}
+				break;
+			}
+		}
+		return touched;
+	}
+
+	/**
+	 * Removes the provided sessions from the sorted set, unless their expiration has been
+	 * updated in the meantime.
+	 * @param expirationsKey the key of the sorted set
+	 * @param sessionsToExpire the members to remove
+	 * @param now the time used to select the members
+	 * @return the number of removed members
+	 */
+	@SuppressWarnings("unchecked")
+	private long removeExpired(String expirationsKey, Set<Object> sessionsToExpire, long now) {
+		RedisOperations<Object, Object> redis = getRedisOperations();
+		RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redis.getValueSerializer();
+		List<Object> args = new ArrayList<>(sessionsToExpire.size() + 1);
+		args.add(String.valueOf(now).getBytes(StandardCharsets.UTF_8));
+		for (Object session : sessionsToExpire) {
+			args.add(valueSerializer.serialize(session));
+		}
+		Long removed = redis.execute(REMOVE_EXPIRED_SCRIPT, RedisSerializer.byteArray(), SCRIPT_RESULT_SERIALIZER,
+				Collections.singletonList(expirationsKey), args.toArray());
+		return (removed != null) ? removed : 0;
+	}
+
+	String getExpirationsKey(int shard) {
+		return this.lookupExpirationsKey.apply(shard);
+	}
+
+	private String getExpirationsKey(Session session) {
+		return getExpirationsKey(getShard(session.getId()));
+	}
+
+}
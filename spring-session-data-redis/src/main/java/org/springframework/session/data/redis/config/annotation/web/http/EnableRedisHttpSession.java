@@ -25,14 +25,19 @@ import java.lang.annotation.Target;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 import org.springframework.session.FlushMode;
 import org.springframework.session.MapSession;
 import org.springframework.session.SaveMode;
 import org.springframework.session.Session;
 import org.springframework.session.SessionRepository;
 import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.data.redis.RedisEventDelivery;
+import org.springframework.session.data.redis.RedisExpirationStore;
 import org.springframework.session.data.redis.RedisFlushMode;
 import org.springframework.session.data.redis.RedisIndexedSessionRepository;
+import org.springframework.session.data.redis.RedisKeyLayout;
+import org.springframework.session.data.redis.RedisWriteMode;
 import org.springframework.session.web.http.SessionRepositoryFilter;
 
 /**
@@ -127,6 +132,29 @@ public @interface EnableRedisHttpSession {
 	 */
 	String cleanupCron() default RedisHttpSessionConfiguration.DEFAULT_CLEANUP_CRON;
 
+	/**
+	 * The cron expression for the job that removes the ids of sessions that no longer
+	 * exist from the principal indexes, which are left behind if session events are lost.
+	 * By default the job is disabled.
+	 *
+	 * @return the stale index entry cleanup cron expression
+	 * @since 2.8.0
+	 * @see RedisIndexedSessionRepository#cleanupStaleIndexEntries()
+	 */
+	String indexCleanupCron() default ScheduledTaskRegistrar.CRON_DISABLED;
+
+	/**
+	 * The duration in seconds of the lease an instance must hold to run the expired
+	 * session cleanup job. When greater than 0, only a single instance per
+	 * {@link #redisNamespace()} runs the cleanup job, and another instance takes over once
+	 * the holder stops renewing the lease. The value should be longer than the interval of
+	 * {@link #cleanupCron()}. The default is 0, which means every instance runs the job.
+	 *
+	 * @return the cleanup lease duration in seconds
+	 * @since 2.8.0
+	 */
+	int cleanupLeaseInSeconds() default 0;
+
 	/**
 	 * Save mode for the session. The default is {@link SaveMode#ON_SET_ATTRIBUTE}, which
 	 * only saves changes made to session.
@@ -136,4 +164,68 @@ public @interface EnableRedisHttpSession {
 	 */
 	SaveMode saveMode() default SaveMode.ON_SET_ATTRIBUTE;
 
+	/**
+	 * Write mode for the session. The default is {@link RedisWriteMode#SEQUENTIAL}, which
+	 * sends each command of a save on its own. Using {@link RedisWriteMode#PIPELINED} or
+	 * {@link RedisWriteMode#TRANSACTIONAL} sends all the commands of a save in a single
+	 * round trip. {@link RedisWriteMode#SCRIPT}, which performs the save as a Lua script,
+	 * is not supported with Redis Cluster.
+	 *
+	 * @return the write mode
+	 * @since 2.8.0
+	 */
+	RedisWriteMode writeMode() default RedisWriteMode.SEQUENTIAL;
+
+	/**
+	 * Expiration store for the session. The default is
+	 * {@link RedisExpirationStore#MINUTE_BUCKETS}, which tracks sessions in one set per
+	 * minute. Using {@link RedisExpirationStore#SORTED_SET} tracks all sessions in a single
+	 * sorted set so that cleanup also catches up on sessions whose minute was missed.
+	 *
+	 * @return the expiration store
+	 * @since 2.8.0
+	 */
+	RedisExpirationStore expirationStore() default RedisExpirationStore.MINUTE_BUCKETS;
+
+	/**
+	 * Key layout for the session. The default is {@link RedisKeyLayout#STANDARD}. Using
+	 * {@link RedisKeyLayout#HASH_TAGGED} maps all the keys of a session to the same hash
+	 * slot of Redis Cluster and changes the session id without {@code RENAME}.
+	 *
+	 * @return the key layout
+	 * @since 2.8.0
+	 */
+	RedisKeyLayout keyLayout() default RedisKeyLayout.STANDARD;
+
+	/**
+	 * The number of shards the expiration mappings are spread over, so that with Redis
+	 * Cluster they are not all written to a single hash slot. The default is {@code 1}.
+	 *
+	 * @return the number of expiration shards
+	 * @since 2.8.0
+	 */
+	int expirationShards() default 1;
+
+	/**
+	 * How deleted and expired sessions are detected. The default is
+	 * {@link RedisEventDelivery#KEYSPACE_NOTIFICATIONS}. Using
+	 * {@link RedisEventDelivery#STREAM} writes the events to a Redis Stream read by a
+	 * consumer group, so each event is published by a single instance and keyspace
+	 * notifications are not required.
+	 *
+	 * @return the event delivery
+	 * @since 2.8.0
+	 */
+	RedisEventDelivery eventDelivery() default RedisEventDelivery.KEYSPACE_NOTIFICATIONS;
+
+	/**
+	 * The number of threads the session events received through keyspace notifications
+	 * are handled by. The default is {@code 0}, which handles them on the thread of the
+	 * listener container.
+	 *
+	 * @return the number of event workers
+	 * @since 2.8.0
+	 */
+	int eventWorkerCount() default 0;
+
 }
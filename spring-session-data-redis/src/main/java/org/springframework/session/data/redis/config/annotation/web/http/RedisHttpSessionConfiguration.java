@@ -16,16 +16,21 @@
 
 package org.springframework.session.data.redis.config.annotation.web.http;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -57,8 +62,13 @@ import org.springframework.session.SaveMode;
 import org.springframework.session.Session;
 import org.springframework.session.config.SessionRepositoryCustomizer;
 import org.springframework.session.config.annotation.web.http.SpringHttpSessionConfiguration;
+import org.springframework.session.data.redis.RedisEventDelivery;
+import org.springframework.session.data.redis.RedisExpirationStore;
 import org.springframework.session.data.redis.RedisFlushMode;
 import org.springframework.session.data.redis.RedisIndexedSessionRepository;
+import org.springframework.session.data.redis.RedisKeyLayout;
+import org.springframework.session.data.redis.RedisStreamSessionEventListener;
+import org.springframework.session.data.redis.RedisWriteMode;
 import org.springframework.session.data.redis.config.ConfigureNotifyKeyspaceEventsAction;
 import org.springframework.session.data.redis.config.ConfigureRedisAction;
 import org.springframework.session.data.redis.config.annotation.SpringSessionRedisConnectionFactory;
@@ -93,8 +103,24 @@ public class RedisHttpSessionConfiguration extends SpringHttpSessionConfiguratio
 
 	private SaveMode saveMode = SaveMode.ON_SET_ATTRIBUTE;
 
+	private RedisWriteMode writeMode = RedisWriteMode.SEQUENTIAL;
+
+	private RedisExpirationStore expirationStore = RedisExpirationStore.MINUTE_BUCKETS;
+
+	private RedisKeyLayout keyLayout = RedisKeyLayout.STANDARD;
+
+	private int expirationShards = 1;
+
+	private RedisEventDelivery eventDelivery = RedisEventDelivery.KEYSPACE_NOTIFICATIONS;
+
+	private int eventWorkerCount = 0;
+
 	private String cleanupCron = DEFAULT_CLEANUP_CRON;
 
+	private String indexCleanupCron = ScheduledTaskRegistrar.CRON_DISABLED;
+
+	private int cleanupLeaseInSeconds = 0;
+
 	private ConfigureRedisAction configureRedisAction = new ConfigureNotifyKeyspaceEventsAction();
 
 	private RedisConnectionFactory redisConnectionFactory;
@@ -138,6 +164,13 @@ public class RedisHttpSessionConfiguration extends SpringHttpSessionConfiguratio
 		}
 		sessionRepository.setFlushMode(this.flushMode);
 		sessionRepository.setSaveMode(this.saveMode);
+		sessionRepository.setWriteMode(this.writeMode);
+		sessionRepository.setExpirationStore(this.expirationStore);
+		sessionRepository.setKeyLayout(this.keyLayout);
+		sessionRepository.setExpirationShards(this.expirationShards);
+		sessionRepository.setEventDelivery(this.eventDelivery);
+		sessionRepository.setEventWorkerCount(this.eventWorkerCount);
+		sessionRepository.setCleanupLease(Duration.ofSeconds(this.cleanupLeaseInSeconds));
 		int database = resolveDatabase();
 		sessionRepository.setDatabase(database);
 		this.sessionRepositoryCustomizers
@@ -163,17 +196,28 @@ public class RedisHttpSessionConfiguration extends SpringHttpSessionConfiguratio
 		if (this.redisSubscriptionExecutor != null) {
 			container.setSubscriptionExecutor(this.redisSubscriptionExecutor);
 		}
-		container.addMessageListener(sessionRepository,
-				Arrays.asList(new ChannelTopic(sessionRepository.getSessionDeletedChannel()),
-						new ChannelTopic(sessionRepository.getSessionExpiredChannel())));
+		if (this.eventDelivery == RedisEventDelivery.KEYSPACE_NOTIFICATIONS) {
+			container.addMessageListener(sessionRepository,
+					Arrays.asList(new ChannelTopic(sessionRepository.getSessionDeletedChannel()),
+							new ChannelTopic(sessionRepository.getSessionExpiredChannel())));
+		}
 		container.addMessageListener(sessionRepository,
 				Collections.singletonList(new PatternTopic(sessionRepository.getSessionCreatedChannelPrefix() + "*")));
 		return container;
 	}
 
+	@Bean
+	public RedisStreamSessionEventListener springSessionRedisStreamEventListener(
+			RedisIndexedSessionRepository sessionRepository) {
+		// 只有 eventDelivery 为 STREAM 时才会自动启动
+		return new RedisStreamSessionEventListener(sessionRepository);
+	}
+
 	@Bean
 	public InitializingBean enableRedisKeyspaceNotificationsInitializer() {
-		return new EnableRedisKeyspaceNotificationsInitializer(this.redisConnectionFactory, this.configureRedisAction);
+		ConfigureRedisAction configureRedisAction = (this.eventDelivery == RedisEventDelivery.STREAM)
+				? ConfigureRedisAction.NO_OP : this.configureRedisAction;
+		return new EnableRedisKeyspaceNotificationsInitializer(this.redisConnectionFactory, configureRedisAction);
 	}
 
 	public void setMaxInactiveIntervalInSeconds(int maxInactiveIntervalInSeconds) {
@@ -199,10 +243,46 @@ public class RedisHttpSessionConfiguration extends SpringHttpSessionConfiguratio
 		this.saveMode = saveMode;
 	}
 
+	public void setWriteMode(RedisWriteMode writeMode) {
+		Assert.notNull(writeMode, "writeMode cannot be null");
+		this.writeMode = writeMode;
+	}
+
+	public void setExpirationStore(RedisExpirationStore expirationStore) {
+		Assert.notNull(expirationStore, "expirationStore cannot be null");
+		this.expirationStore = expirationStore;
+	}
+
+	public void setKeyLayout(RedisKeyLayout keyLayout) {
+		Assert.notNull(keyLayout, "keyLayout cannot be null");
+		this.keyLayout = keyLayout;
+	}
+
+	public void setExpirationShards(int expirationShards) {
+		this.expirationShards = expirationShards;
+	}
+
+	public void setEventDelivery(RedisEventDelivery eventDelivery) {
+		Assert.notNull(eventDelivery, "eventDelivery cannot be null");
+		this.eventDelivery = eventDelivery;
+	}
+
+	public void setEventWorkerCount(int eventWorkerCount) {
+		this.eventWorkerCount = eventWorkerCount;
+	}
+
 	public void setCleanupCron(String cleanupCron) {
 		this.cleanupCron = cleanupCron;
 	}
 
+	public void setIndexCleanupCron(String indexCleanupCron) {
+		this.indexCleanupCron = indexCleanupCron;
+	}
+
+	public void setCleanupLeaseInSeconds(int cleanupLeaseInSeconds) {
+		this.cleanupLeaseInSeconds = cleanupLeaseInSeconds;
+	}
+
 	/**
 	 * Sets the action to perform for configuring Redis.
 	 * @param configureRedisAction the configureRedis to set. The default is
@@ -289,10 +369,21 @@ public class RedisHttpSessionConfiguration extends SpringHttpSessionConfiguratio
 		}
 		this.flushMode = flushMode;
 		this.saveMode = attributes.getEnum("saveMode");
+		this.writeMode = attributes.getEnum("writeMode");
+		this.expirationStore = attributes.getEnum("expirationStore");
+		this.keyLayout = attributes.getEnum("keyLayout");
+		this.expirationShards = attributes.getNumber("expirationShards");
+		this.eventDelivery = attributes.getEnum("eventDelivery");
+		this.eventWorkerCount = attributes.getNumber("eventWorkerCount");
 		String cleanupCron = attributes.getString("cleanupCron");
 		if (StringUtils.hasText(cleanupCron)) {
 			this.cleanupCron = cleanupCron;
 		}
+		String indexCleanupCron = attributes.getString("indexCleanupCron");
+		if (StringUtils.hasText(indexCleanupCron)) {
+			this.indexCleanupCron = indexCleanupCron;
+		}
+		this.cleanupLeaseInSeconds = attributes.getNumber("cleanupLeaseInSeconds");
 	}
 
 	private RedisTemplate<Object, Object> createRedisTemplate() {
@@ -361,22 +452,44 @@ public class RedisHttpSessionConfiguration extends SpringHttpSessionConfiguratio
 	}
 
 	/**
-	 * Configuration of scheduled job for cleaning up expired sessions.
+	 * Configuration of scheduled jobs for cleaning up expired sessions and stale index
+	 * entries.
+	 * <p>
+	 * Since a rate limited cleanup of stale index entries may take a long time, it runs
+	 * on its own thread so that it does not delay the cleanup of expired sessions on the
+	 * scheduler. A run is skipped if the previous one is still in progress.
 	 */
 	@EnableScheduling
 	@Configuration(proxyBeanMethods = false)
-	class SessionCleanupConfiguration implements SchedulingConfigurer {
+	class SessionCleanupConfiguration implements SchedulingConfigurer, DisposableBean {
 
 		private final RedisIndexedSessionRepository sessionRepository;
 
+		private final ThreadPoolExecutor indexCleanupExecutor;
+
 		SessionCleanupConfiguration(RedisIndexedSessionRepository sessionRepository) {
 			this.sessionRepository = sessionRepository;
+			this.indexCleanupExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+					new SynchronousQueue<>(), (runnable) -> {
+						Thread thread = new Thread(runnable, "spring-session-index-cleanup");
+						thread.setDaemon(true);
+						return thread;
+					}, new ThreadPoolExecutor.DiscardPolicy());
 		}
 
 		@Override
 		public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
 			taskRegistrar.addCronTask(this.sessionRepository::cleanupExpiredSessions,
 					RedisHttpSessionConfiguration.this.cleanupCron);
+			taskRegistrar.addCronTask(
+					() -> this.indexCleanupExecutor.execute(this.sessionRepository::cleanupStaleIndexEntries),
+					RedisHttpSessionConfiguration.this.indexCleanupCron);
+		}
+
+		@Override
+		public void destroy() {
+			// interrupts a run in progress, which stops at its next rate limit pause
+			this.indexCleanupExecutor.shutdownNow();
 		}
 
 	}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.session.hazelcast;
+
+import java.util.function.Consumer;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+
+import org.springframework.session.SessionInvalidationChannel;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionInvalidationChannel} that uses a Hazelcast 4 {@link ITopic}.
+ *
+ * @since 2.8.0
+ */
+public class Hazelcast4SessionInvalidationChannel implements SessionInvalidationChannel {
+
+	/**
+	 * The default name of the topic.
+	 */
+	public static final String DEFAULT_TOPIC_NAME = "spring:session:invalidations";
+
+	private final ITopic<String> topic;
+
+	/**
+	 * Create a new instance that uses the topic named {@link #DEFAULT_TOPIC_NAME}.
+	 * @param hazelcastInstance the {@link HazelcastInstance} to use
+	 */
+	public Hazelcast4SessionInvalidationChannel(HazelcastInstance hazelcastInstance) {
+		this(hazelcastInstance, DEFAULT_TOPIC_NAME);
+	}
+
+	/**
+	 * Create a new instance.
+	 * @param hazelcastInstance the {@link HazelcastInstance} to use
+	 * @param topicName the name of the topic
+	 */
+	public Hazelcast4SessionInvalidationChannel(HazelcastInstance hazelcastInstance, String topicName) {
+		Assert.notNull(hazelcastInstance, "HazelcastInstance must not be null");
+		Assert.hasText(topicName, "Topic name must not be empty");
+		this.topic = hazelcastInstance.getTopic(topicName);
+	}
+
+	@Override
+	public void publish(String message) {
+		this.topic.publish(message);
+	}
+
+	@Override
+	public void subscribe(Consumer<String> listener) {
+		Assert.notNull(listener, "listener cannot be null");
+		this.topic.addMessageListener((message) -> listener.accept(message.getMessageObject()));
+	}
+
+}
@@ -26,6 +26,8 @@ import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.StreamSerializer;
 
 import org.springframework.session.MapSession;
+import org.springframework.session.SessionAttributeCodec;
+import org.springframework.util.Assert;
 
 /**
  * A {@link com.hazelcast.nio.serialization.Serializer} implementation that handles the
@@ -78,6 +80,10 @@ import org.springframework.session.MapSession;
  * HazelcastInstance hazelcastClient = HazelcastClient.newHazelcastClient(clientConfig);
  * </pre>
  *
+ * By default, the attribute values are written with Hazelcast serialization. A
+ * {@link SessionAttributeCodec} can be provided to write them instead, in which case all
+ * the members and clients must use the same codec.
+ *
  * @author Enes Ozcan
  * @since 2.4.0
  */
@@ -85,6 +91,27 @@ public class HazelcastSessionSerializer implements StreamSerializer<MapSession>
 
 	private static final int SERIALIZER_TYPE_ID = 1453;
 
+	private final SessionAttributeCodec sessionAttributeCodec;
+
+	/**
+	 * Create a new instance that writes the attribute values with Hazelcast
+	 * serialization.
+	 */
+	public HazelcastSessionSerializer() {
+		this.sessionAttributeCodec = null;
+	}
+
+	/**
+	 * Create a new instance that writes the attribute values with the provided
+	 * {@link SessionAttributeCodec}.
+	 * @param sessionAttributeCodec the codec to use
+	 * @since 2.8.0
+	 */
+	public HazelcastSessionSerializer(SessionAttributeCodec sessionAttributeCodec) {
+		Assert.notNull(sessionAttributeCodec, "sessionAttributeCodec cannot be null");
+		this.sessionAttributeCodec = sessionAttributeCodec;
+	}
+
 	@Override
 	public void write(ObjectDataOutput out, MapSession session) throws IOException {
 		out.writeUTF(session.getOriginalId());
@@ -96,7 +123,12 @@ public class HazelcastSessionSerializer implements StreamSerializer<MapSession>
 			Object attrValue = session.getAttribute(attrName);
 			if (attrValue != null) {
 				out.writeUTF(attrName);
-				out.writeObject(attrValue);
+				if (this.sessionAttributeCodec != null) {
+					out.writeByteArray(this.sessionAttributeCodec.encode(attrValue));
+				}
+				else {
+					out.writeObject(attrValue);
+				}
 			}
 		}
 	}
@@ -126,7 +158,8 @@ public class HazelcastSessionSerializer implements StreamSerializer<MapSession>
 				// iteration. Hence the attributes are read until
 				// EOF here.
 				String attrName = in.readUTF();
-				Object attrValue = in.readObject();
+				Object attrValue = (this.sessionAttributeCodec != null)
+						? this.sessionAttributeCodec.decode(in.readByteArray()) : in.readObject();
 				cached.setAttribute(attrName, attrValue);
 			}
 		}
@@ -42,9 +42,17 @@ public class Db2JdbcIndexedSessionRepositoryCustomizer
 			+ "    VALUES (A.SESSION_PRIMARY_ID, A.ATTRIBUTE_NAME, A.ATTRIBUTE_BYTES)";
 	// @formatter:on
 
+	// @formatter:off
+	private static final String SELECT_CLEANUP_LOCK_FOR_UPDATE_QUERY = ""
+			+ "SELECT LOCK_NAME FROM %TABLE_NAME%_LOCKS "
+			+ "WHERE LOCK_NAME = ? "
+			+ "FOR UPDATE SKIP LOCKED DATA";
+	// @formatter:on
+
 	@Override
 	public void customize(JdbcIndexedSessionRepository sessionRepository) {
 		sessionRepository.setCreateSessionAttributeQuery(CREATE_SESSION_ATTRIBUTE_QUERY);
+		sessionRepository.setSelectCleanupLockForUpdateQuery(SELECT_CLEANUP_LOCK_FOR_UPDATE_QUERY);
 	}
 
 }
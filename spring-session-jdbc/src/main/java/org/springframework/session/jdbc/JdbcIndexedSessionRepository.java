@@ -22,6 +22,7 @@ import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -36,6 +37,7 @@ import org.apache.commons.logging.LogFactory;
 
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.convert.support.GenericConversionService;
 import org.springframework.core.serializer.support.DeserializingConverter;
 import org.springframework.core.serializer.support.SerializingConverter;
@@ -43,8 +45,10 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.lob.DefaultLobHandler;
 import org.springframework.jdbc.support.lob.LobCreator;
 import org.springframework.jdbc.support.lob.LobHandler;
@@ -56,6 +60,7 @@ import org.springframework.session.MapSession;
 import org.springframework.session.PrincipalNameIndexResolver;
 import org.springframework.session.SaveMode;
 import org.springframework.session.Session;
+import org.springframework.session.SessionAttributeCodec;
 import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -118,8 +123,18 @@ import org.springframework.util.StringUtils;
  * );
  *
  * CREATE INDEX SPRING_SESSION_ATTRIBUTES_IX1 ON SPRING_SESSION_ATTRIBUTES (SESSION_PRIMARY_ID);
+ *
+ * CREATE TABLE SPRING_SESSION_LOCKS (
+ *  LOCK_NAME VARCHAR(100) NOT NULL,
+ *  LOCK_OWNER VARCHAR(36) NOT NULL,
+ *  EXPIRY_TIME BIGINT NOT NULL,
+ *  CONSTRAINT SPRING_SESSION_LOCKS_PK PRIMARY KEY (LOCK_NAME)
+ * );
  * </pre>
  *
+ * The table suffixed with <code>_LOCKS</code> is only used when a cleanup lease is
+ * configured using {@link #setCleanupLease(Duration)}.
+ *
  * Due to the differences between the various database vendors, especially when it comes
  * to storing binary data, make sure to use SQL script specific to your database. Scripts
  * for most major database vendors are packaged as
@@ -203,6 +218,73 @@ public class JdbcIndexedSessionRepository
 			+ "WHERE EXPIRY_TIME < ?";
 	// @formatter:on
 
+	// @formatter:off
+	private static final String DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE PRIMARY_ID IN ("
+			+ "SELECT PRIMARY_ID FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ? "
+			+ "FETCH FIRST ? ROWS ONLY)";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String MYSQL_DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ? "
+			+ "LIMIT ?";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String SQLITE_DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE PRIMARY_ID IN ("
+			+ "SELECT PRIMARY_ID FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ? "
+			+ "LIMIT ?)";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String SQLSERVER_DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE PRIMARY_ID IN ("
+			+ "SELECT PRIMARY_ID FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ? "
+			+ "ORDER BY EXPIRY_TIME "
+			+ "OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY)";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String SELECT_EXPIRED_SESSION_IDS_QUERY = ""
+			+ "SELECT PRIMARY_ID "
+			+ "FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ?";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String DELETE_SESSION_BY_PRIMARY_ID_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE PRIMARY_ID = ?";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String CREATE_CLEANUP_LOCK_QUERY = ""
+			+ "INSERT INTO %TABLE_NAME%_LOCKS (LOCK_NAME, LOCK_OWNER, EXPIRY_TIME) "
+			+ "VALUES (?, ?, ?)";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String ACQUIRE_CLEANUP_LOCK_QUERY = ""
+			+ "UPDATE %TABLE_NAME%_LOCKS "
+			+ "SET LOCK_OWNER = ?, EXPIRY_TIME = ? "
+			+ "WHERE LOCK_NAME = ? "
+			+ "AND (LOCK_OWNER = ? OR EXPIRY_TIME < ?)";
+	// @formatter:on
+
+	/**
+	 * The name of the row of the locks table used for the cleanup lease.
+	 */
+	private static final String CLEANUP_LOCK_NAME = "CLEANUP";
+
 	private static final Log logger = LogFactory.getLog(JdbcIndexedSessionRepository.class);
 
 	private final JdbcOperations jdbcOperations;
@@ -234,6 +316,24 @@ public class JdbcIndexedSessionRepository
 
 	private String deleteSessionsByExpiryTimeQuery;
 
+	/**
+	 * The query used to delete a batch of expired sessions, or {@code null} until it is
+	 * resolved from the database product name.
+	 */
+	private String deleteSessionsByExpiryTimeInBatchQuery;
+
+	/**
+	 * Whether the batches of expired sessions are deleted by primary id after selecting
+	 * them, for the databases that do not support limiting the rows of a delete.
+	 */
+	private boolean deleteSessionsByPrimaryId;
+
+	private String createCleanupLockQuery;
+
+	private String acquireCleanupLockQuery;
+
+	private String selectCleanupLockForUpdateQuery;
+
 	/**
 	 * If non-null, this value is used to override the default value for
 	 * {@link JdbcSession#setMaxInactiveInterval(Duration)}.
@@ -250,6 +350,21 @@ public class JdbcIndexedSessionRepository
 
 	private SaveMode saveMode = SaveMode.ON_SET_ATTRIBUTE;
 
+	private Duration cleanupLease = Duration.ZERO;
+
+	private int cleanupBatchSize = 0;
+
+	private int cleanupMaxRowsPerRun = 0;
+
+	private Duration cleanupBatchPause = Duration.ZERO;
+
+	/**
+	 * Identifies this instance as the holder of the cleanup lease.
+	 */
+	private final String cleanupLeaseOwner = UUID.randomUUID().toString();
+
+	private volatile boolean cleanupLockCreated;
+
 	/**
 	 * Create a new {@link JdbcIndexedSessionRepository} instance which uses the provided
 	 * {@link JdbcOperations} and {@link TransactionOperations} to manage sessions.
@@ -355,6 +470,114 @@ public class JdbcIndexedSessionRepository
 		this.deleteSessionsByExpiryTimeQuery = getQuery(deleteSessionsByExpiryTimeQuery);
 	}
 
+	/**
+	 * Set the custom SQL query used to delete a single batch of expired sessions when a
+	 * {@link #setCleanupBatchSize(int) cleanup batch size} is set. The query takes the
+	 * current time and the maximum number of sessions to delete as parameters, in that
+	 * order. By default the query is chosen according to the database product name.
+	 * @param deleteSessionsByExpiryTimeInBatchQuery the SQL query string
+	 * @since 2.8.0
+	 */
+	public void setDeleteSessionsByExpiryTimeInBatchQuery(String deleteSessionsByExpiryTimeInBatchQuery) {
+		Assert.hasText(deleteSessionsByExpiryTimeInBatchQuery, "Query must not be empty");
+		this.deleteSessionsByExpiryTimeInBatchQuery = getQuery(deleteSessionsByExpiryTimeInBatchQuery);
+		this.deleteSessionsByPrimaryId = false;
+	}
+
+	/**
+	 * Set the custom SQL query used to create the row of the cleanup lease.
+	 * @param createCleanupLockQuery the SQL query string
+	 * @since 2.8.0
+	 */
+	public void setCreateCleanupLockQuery(String createCleanupLockQuery) {
+		Assert.hasText(createCleanupLockQuery, "Query must not be empty");
+		this.createCleanupLockQuery = getQuery(createCleanupLockQuery);
+	}
+
+	/**
+	 * Set the custom SQL query used to acquire or renew the cleanup lease.
+	 * @param acquireCleanupLockQuery the SQL query string
+	 * @since 2.8.0
+	 */
+	public void setAcquireCleanupLockQuery(String acquireCleanupLockQuery) {
+		Assert.hasText(acquireCleanupLockQuery, "Query must not be empty");
+		this.acquireCleanupLockQuery = getQuery(acquireCleanupLockQuery);
+	}
+
+	/**
+	 * Set the SQL query used to lock the row of the cleanup lease before acquiring it.
+	 * The query must select the row, skipping it if it is locked by another transaction,
+	 * for example using {@code SELECT ... FOR UPDATE SKIP LOCKED}. This allows instances
+	 * to give up immediately instead of waiting for the instance that is acquiring the
+	 * lease. By default no such query is used since its syntax is database specific.
+	 * @param selectCleanupLockForUpdateQuery the SQL query string
+	 * @since 2.8.0
+	 */
+	public void setSelectCleanupLockForUpdateQuery(String selectCleanupLockForUpdateQuery) {
+		Assert.hasText(selectCleanupLockForUpdateQuery, "Query must not be empty");
+		this.selectCleanupLockForUpdateQuery = getQuery(selectCleanupLockForUpdateQuery);
+	}
+
+	/**
+	 * Set the maximum number of expired sessions deleted per transaction. When set,
+	 * {@link #cleanUpExpiredSessions()} deletes expired sessions in batches, committing
+	 * after each one, which bounds the size of each transaction and the duration of the
+	 * locks it holds. Default is {@code 0}, which deletes all expired sessions using a
+	 * single statement. Since limiting the rows of a delete is database specific, the
+	 * query used is chosen according to the database product name on the first cleanup,
+	 * unless one is set using {@link #setDeleteSessionsByExpiryTimeInBatchQuery(String)}.
+	 * Databases that do not support it, such as Sybase, select the ids of each batch
+	 * before deleting them.
+	 * @param cleanupBatchSize the cleanup batch size
+	 * @since 2.8.0
+	 */
+	public void setCleanupBatchSize(int cleanupBatchSize) {
+		Assert.isTrue(cleanupBatchSize >= 0, "cleanupBatchSize must not be negative");
+		this.cleanupBatchSize = cleanupBatchSize;
+	}
+
+	/**
+	 * Set the maximum number of expired sessions deleted by a single invocation of
+	 * {@link #cleanUpExpiredSessions()} when deleting in batches. The remaining sessions
+	 * are deleted by the next invocations. Default is {@code 0}, which means no limit.
+	 * @param cleanupMaxRowsPerRun the maximum number of sessions deleted per run
+	 * @since 2.8.0
+	 */
+	public void setCleanupMaxRowsPerRun(int cleanupMaxRowsPerRun) {
+		Assert.isTrue(cleanupMaxRowsPerRun >= 0, "cleanupMaxRowsPerRun must not be negative");
+		this.cleanupMaxRowsPerRun = cleanupMaxRowsPerRun;
+	}
+
+	/**
+	 * Set the pause between two batches when deleting expired sessions in batches, which
+	 * leaves room for other transactions and for replicas to catch up. Default is
+	 * {@link Duration#ZERO}.
+	 * @param cleanupBatchPause the pause between batches
+	 * @since 2.8.0
+	 */
+	public void setCleanupBatchPause(Duration cleanupBatchPause) {
+		Assert.notNull(cleanupBatchPause, "cleanupBatchPause must not be null");
+		Assert.isTrue(!cleanupBatchPause.isNegative(), "cleanupBatchPause must not be negative");
+		this.cleanupBatchPause = cleanupBatchPause;
+	}
+
+	/**
+	 * Set the duration of the lease that an instance must hold in order to clean up
+	 * expired sessions. When set, each invocation of {@link #cleanUpExpiredSessions()}
+	 * first tries to acquire or renew the lease stored in the {@code _LOCKS} table, so
+	 * that only a single instance deletes expired sessions. If the holder stops renewing
+	 * the lease, another instance takes over once the lease expires, so the duration
+	 * should be longer than the interval between cleanup runs. Default is
+	 * {@link Duration#ZERO}, which means every instance performs the cleanup.
+	 * @param cleanupLease the cleanup lease duration
+	 * @since 2.8.0
+	 */
+	public void setCleanupLease(Duration cleanupLease) {
+		Assert.notNull(cleanupLease, "cleanupLease must not be null");
+		Assert.isTrue(!cleanupLease.isNegative(), "cleanupLease must not be negative");
+		this.cleanupLease = cleanupLease;
+	}
+
 	/**
 	 * Set the maximum inactive interval in seconds between requests before newly created
 	 * sessions will be invalidated. A negative time indicates that the session will never
@@ -388,6 +611,20 @@ public class JdbcIndexedSessionRepository
 		this.conversionService = conversionService;
 	}
 
+	/**
+	 * Sets the {@link SessionAttributeCodec} used to convert the attribute values, in place
+	 * of the {@link #setConversionService(ConversionService) conversion service}.
+	 * @param sessionAttributeCodec the codec to use
+	 * @since 2.8.0
+	 */
+	public void setSessionAttributeCodec(SessionAttributeCodec sessionAttributeCodec) {
+		Assert.notNull(sessionAttributeCodec, "sessionAttributeCodec must not be null");
+		GenericConversionService converter = new GenericConversionService();
+		converter.addConverter(Object.class, byte[].class, (Converter<Object, byte[]>) sessionAttributeCodec::encode);
+		converter.addConverter(byte[].class, Object.class, (Converter<byte[], Object>) sessionAttributeCodec::decode);
+		this.conversionService = converter;
+	}
+
 	/**
 	 * Set the flush mode. Default is {@link FlushMode#ON_SAVE}.
 	 * @param flushMode the flush mode
@@ -583,15 +820,147 @@ public class JdbcIndexedSessionRepository
 	}
 
 	public void cleanUpExpiredSessions() {
-		Integer deletedCount = this.transactionOperations
-				.execute((status) -> JdbcIndexedSessionRepository.this.jdbcOperations.update(
-						JdbcIndexedSessionRepository.this.deleteSessionsByExpiryTimeQuery, System.currentTimeMillis()));
+		if (!this.cleanupLease.isZero() && !acquireCleanupLease()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Skipping cleanup of expired sessions since the cleanup lease is held by "
+						+ "another instance");
+			}
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Integer deletedCount = (this.cleanupBatchSize > 0) ? deleteExpiredSessionsInBatches(now)
+				: this.transactionOperations.execute((status) -> JdbcIndexedSessionRepository.this.jdbcOperations
+						.update(JdbcIndexedSessionRepository.this.deleteSessionsByExpiryTimeQuery, now));
 
 		if (logger.isDebugEnabled()) {
 			logger.debug("Cleaned up " + deletedCount + " expired sessions");
 		}
 	}
 
+	/**
+	 * Deletes the sessions that expired before the provided time in batches of
+	 * {@code cleanupBatchSize}, each in its own transaction.
+	 * @param now the current time
+	 * @return the number of deleted sessions
+	 */
+	private int deleteExpiredSessionsInBatches(long now) {
+		int deletedCount = 0;
+		while (this.cleanupMaxRowsPerRun == 0 || deletedCount < this.cleanupMaxRowsPerRun) {
+			int limit = (this.cleanupMaxRowsPerRun != 0)
+					? Math.min(this.cleanupBatchSize, this.cleanupMaxRowsPerRun - deletedCount)
+					: this.cleanupBatchSize;
+			Integer batchCount = this.transactionOperations
+					.execute((status) -> deleteExpiredSessionsBatch(now, limit));
+			int count = (batchCount != null) ? batchCount : 0;
+			deletedCount += count;
+			if (count < limit) {
+				break;
+			}
+			if (!this.cleanupBatchPause.isZero()) {
+				try {
+					Thread.sleep(this.cleanupBatchPause.toMillis());
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		return deletedCount;
+	}
+
+	private int deleteExpiredSessionsBatch(long now, int limit) {
+		if (this.deleteSessionsByExpiryTimeInBatchQuery == null) {
+			resolveDeleteSessionsByExpiryTimeInBatchQuery();
+		}
+		if (!this.deleteSessionsByPrimaryId) {
+			return this.jdbcOperations.update(this.deleteSessionsByExpiryTimeInBatchQuery, now, limit);
+		}
+		List<String> primaryIds = this.jdbcOperations.query((connection) -> {
+			PreparedStatement ps = connection.prepareStatement(getQuery(SELECT_EXPIRED_SESSION_IDS_QUERY));
+			ps.setMaxRows(limit);
+			ps.setLong(1, now);
+			return ps;
+		}, (rs, rowNum) -> rs.getString(1));
+		if (primaryIds.isEmpty()) {
+			return 0;
+		}
+		int[] counts = this.jdbcOperations.batchUpdate(getQuery(DELETE_SESSION_BY_PRIMARY_ID_QUERY),
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ps.setString(1, primaryIds.get(i));
+					}
+
+					@Override
+					public int getBatchSize() {
+						return primaryIds.size();
+					}
+
+				});
+		// the drivers that do not report the count of each statement return a negative one
+		return Arrays.stream(counts).allMatch((count) -> count >= 0) ? Arrays.stream(counts).sum()
+				: primaryIds.size();
+	}
+
+	/**
+	 * Chooses the query used to delete a batch of expired sessions according to the
+	 * database product name, since the syntax used to limit the deleted rows differs.
+	 */
+	private void resolveDeleteSessionsByExpiryTimeInBatchQuery() {
+		String productName = this.jdbcOperations.execute(
+				(ConnectionCallback<String>) (connection) -> connection.getMetaData().getDatabaseProductName());
+		String databaseName = JdbcUtils.commonDatabaseName(productName);
+		String query;
+		if ("MySQL".equalsIgnoreCase(databaseName) || "MariaDB".equalsIgnoreCase(databaseName)) {
+			query = MYSQL_DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY;
+		}
+		else if ("SQLite".equalsIgnoreCase(databaseName)) {
+			query = SQLITE_DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY;
+		}
+		else if ("Microsoft SQL Server".equalsIgnoreCase(databaseName)) {
+			query = SQLSERVER_DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY;
+		}
+		else {
+			query = DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY;
+		}
+		this.deleteSessionsByPrimaryId = "Sybase".equalsIgnoreCase(databaseName);
+		this.deleteSessionsByExpiryTimeInBatchQuery = getQuery(query);
+	}
+
+	/**
+	 * Acquires the cleanup lease, or renews it if it is already held by this instance.
+	 * @return {@code true} if this instance holds the lease
+	 */
+	private boolean acquireCleanupLease() {
+		if (!this.cleanupLockCreated) {
+			createCleanupLock();
+		}
+		long now = System.currentTimeMillis();
+		long expiryTime = now + this.cleanupLease.toMillis();
+		Boolean acquired = this.transactionOperations.execute((status) -> {
+			if (this.selectCleanupLockForUpdateQuery != null && this.jdbcOperations
+					.queryForList(this.selectCleanupLockForUpdateQuery, String.class, CLEANUP_LOCK_NAME).isEmpty()) {
+				return false;
+			}
+			return this.jdbcOperations.update(this.acquireCleanupLockQuery, this.cleanupLeaseOwner, expiryTime,
+					CLEANUP_LOCK_NAME, this.cleanupLeaseOwner, now) == 1;
+		});
+		return Boolean.TRUE.equals(acquired);
+	}
+
+	private void createCleanupLock() {
+		try {
+			this.transactionOperations.executeWithoutResult((status) -> this.jdbcOperations
+					.update(this.createCleanupLockQuery, CLEANUP_LOCK_NAME, this.cleanupLeaseOwner, 0L));
+		}
+		catch (DataIntegrityViolationException ex) {
+			// the row has already been created by another instance
+		}
+		this.cleanupLockCreated = true;
+	}
+
 	private static GenericConversionService createDefaultConversionService() {
 		GenericConversionService converter = new GenericConversionService();
 		converter.addConverter(Object.class, byte[].class, new SerializingConverter());
@@ -613,6 +982,9 @@ public class JdbcIndexedSessionRepository
 		this.deleteSessionQuery = getQuery(DELETE_SESSION_QUERY);
 		this.listSessionsByPrincipalNameQuery = getQuery(LIST_SESSIONS_BY_PRINCIPAL_NAME_QUERY);
 		this.deleteSessionsByExpiryTimeQuery = getQuery(DELETE_SESSIONS_BY_EXPIRY_TIME_QUERY);
+		this.deleteSessionsByExpiryTimeInBatchQuery = null;
+		this.createCleanupLockQuery = getQuery(CREATE_CLEANUP_LOCK_QUERY);
+		this.acquireCleanupLockQuery = getQuery(ACQUIRE_CLEANUP_LOCK_QUERY);
 	}
 
 	private LobHandler getLobHandler() {
@@ -35,9 +35,17 @@ public class MySqlJdbcIndexedSessionRepositoryCustomizer
 			+ "ON DUPLICATE KEY UPDATE ATTRIBUTE_BYTES = VALUES(ATTRIBUTE_BYTES)";
 	// @formatter:on
 
+	// @formatter:off
+	private static final String DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ? "
+			+ "LIMIT ?";
+	// @formatter:on
+
 	@Override
 	public void customize(JdbcIndexedSessionRepository sessionRepository) {
 		sessionRepository.setCreateSessionAttributeQuery(CREATE_SESSION_ATTRIBUTE_QUERY);
+		sessionRepository.setDeleteSessionsByExpiryTimeInBatchQuery(DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY);
 	}
 
 }
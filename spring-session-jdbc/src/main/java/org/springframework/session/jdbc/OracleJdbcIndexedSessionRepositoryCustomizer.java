@@ -43,9 +43,25 @@ public class OracleJdbcIndexedSessionRepositoryCustomizer
 			+ "    VALUES (A.SESSION_PRIMARY_ID, A.ATTRIBUTE_NAME, A.ATTRIBUTE_BYTES)";
 	// @formatter:on
 
+	// @formatter:off
+	private static final String SELECT_CLEANUP_LOCK_FOR_UPDATE_QUERY = ""
+			+ "SELECT LOCK_NAME FROM %TABLE_NAME%_LOCKS "
+			+ "WHERE LOCK_NAME = ? "
+			+ "FOR UPDATE SKIP LOCKED";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ? "
+			+ "AND ROWNUM <= ?";
+	// @formatter:on
+
 	@Override
 	public void customize(JdbcIndexedSessionRepository sessionRepository) {
 		sessionRepository.setCreateSessionAttributeQuery(CREATE_SESSION_ATTRIBUTE_QUERY);
+		sessionRepository.setDeleteSessionsByExpiryTimeInBatchQuery(DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY);
+		sessionRepository.setSelectCleanupLockForUpdateQuery(SELECT_CLEANUP_LOCK_FOR_UPDATE_QUERY);
 	}
 
 }
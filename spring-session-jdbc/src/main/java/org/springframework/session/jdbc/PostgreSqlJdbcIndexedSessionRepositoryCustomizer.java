@@ -36,9 +36,27 @@ public class PostgreSqlJdbcIndexedSessionRepositoryCustomizer
 			+ "DO UPDATE SET ATTRIBUTE_BYTES = EXCLUDED.ATTRIBUTE_BYTES";
 	// @formatter:on
 
+	// @formatter:off
+	private static final String SELECT_CLEANUP_LOCK_FOR_UPDATE_QUERY = ""
+			+ "SELECT LOCK_NAME FROM %TABLE_NAME%_LOCKS "
+			+ "WHERE LOCK_NAME = ? "
+			+ "FOR UPDATE SKIP LOCKED";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY = ""
+			+ "DELETE FROM %TABLE_NAME% "
+			+ "WHERE PRIMARY_ID IN ("
+			+ "SELECT PRIMARY_ID FROM %TABLE_NAME% "
+			+ "WHERE EXPIRY_TIME < ? "
+			+ "LIMIT ?)";
+	// @formatter:on
+
 	@Override
 	public void customize(JdbcIndexedSessionRepository sessionRepository) {
 		sessionRepository.setCreateSessionAttributeQuery(CREATE_SESSION_ATTRIBUTE_QUERY);
+		sessionRepository.setDeleteSessionsByExpiryTimeInBatchQuery(DELETE_SESSIONS_BY_EXPIRY_TIME_IN_BATCH_QUERY);
+		sessionRepository.setSelectCleanupLockForUpdateQuery(SELECT_CLEANUP_LOCK_FOR_UPDATE_QUERY);
 	}
 
 }
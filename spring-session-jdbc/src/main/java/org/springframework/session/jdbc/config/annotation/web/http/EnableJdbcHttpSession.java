@@ -100,6 +100,18 @@ public @interface EnableJdbcHttpSession {
 	 */
 	String cleanupCron() default JdbcHttpSessionConfiguration.DEFAULT_CLEANUP_CRON;
 
+	/**
+	 * The duration in seconds of the lease an instance must hold to run the expired
+	 * session cleanup job. When greater than 0, only a single instance runs the cleanup
+	 * job, and another instance takes over once the holder stops renewing the lease. The
+	 * value should be longer than the interval of {@link #cleanupCron()}. Requires the
+	 * {@code _LOCKS} table from the schema scripts. The default is 0, which means every
+	 * instance runs the job.
+	 * @return the cleanup lease duration in seconds
+	 * @since 2.8.0
+	 */
+	int cleanupLeaseInSeconds() default 0;
+
 	/**
 	 * Flush mode for the sessions. The default is {@code ON_SAVE} which only updates the
 	 * backing database when {@link SessionRepository#save(Session)} is invoked. In a web
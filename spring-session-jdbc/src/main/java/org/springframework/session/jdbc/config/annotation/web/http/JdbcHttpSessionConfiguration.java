@@ -16,6 +16,7 @@
 
 package org.springframework.session.jdbc.config.annotation.web.http;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -86,6 +87,8 @@ public class JdbcHttpSessionConfiguration extends SpringHttpSessionConfiguration
 
 	private String cleanupCron = DEFAULT_CLEANUP_CRON;
 
+	private int cleanupLeaseInSeconds = 0;
+
 	private FlushMode flushMode = FlushMode.ON_SAVE;
 
 	private SaveMode saveMode = SaveMode.ON_SET_ATTRIBUTE;
@@ -124,6 +127,7 @@ public class JdbcHttpSessionConfiguration extends SpringHttpSessionConfiguration
 		sessionRepository.setDefaultMaxInactiveInterval(this.maxInactiveIntervalInSeconds);
 		sessionRepository.setFlushMode(this.flushMode);
 		sessionRepository.setSaveMode(this.saveMode);
+		sessionRepository.setCleanupLease(Duration.ofSeconds(this.cleanupLeaseInSeconds));
 		if (this.indexResolver != null) {
 			sessionRepository.setIndexResolver(this.indexResolver);
 		}
@@ -167,6 +171,10 @@ public class JdbcHttpSessionConfiguration extends SpringHttpSessionConfiguration
 		this.cleanupCron = cleanupCron;
 	}
 
+	public void setCleanupLeaseInSeconds(int cleanupLeaseInSeconds) {
+		this.cleanupLeaseInSeconds = cleanupLeaseInSeconds;
+	}
+
 	public void setFlushMode(FlushMode flushMode) {
 		this.flushMode = flushMode;
 	}
@@ -249,6 +257,7 @@ public class JdbcHttpSessionConfiguration extends SpringHttpSessionConfiguration
 		if (StringUtils.hasText(cleanupCron)) {
 			this.cleanupCron = cleanupCron;
 		}
+		this.cleanupLeaseInSeconds = attributes.getNumber("cleanupLeaseInSeconds");
 		this.flushMode = attributes.getEnum("flushMode");
 		this.saveMode = attributes.getEnum("saveMode");
 	}
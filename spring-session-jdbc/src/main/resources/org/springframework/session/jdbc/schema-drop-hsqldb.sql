@@ -1,2 +1,3 @@
+DROP TABLE SPRING_SESSION_LOCKS IF EXISTS;
 DROP TABLE SPRING_SESSION_ATTRIBUTES IF EXISTS;
 DROP TABLE SPRING_SESSION IF EXISTS;
@@ -20,3 +20,10 @@ CREATE TABLE SPRING_SESSION_ATTRIBUTES (
 	CONSTRAINT SPRING_SESSION_ATTRIBUTES_PK PRIMARY KEY (SESSION_PRIMARY_ID, ATTRIBUTE_NAME),
 	CONSTRAINT SPRING_SESSION_ATTRIBUTES_FK FOREIGN KEY (SESSION_PRIMARY_ID) REFERENCES SPRING_SESSION(PRIMARY_ID) ON DELETE CASCADE
 );
+
+CREATE TABLE SPRING_SESSION_LOCKS (
+	LOCK_NAME VARCHAR2(100 CHAR) NOT NULL,
+	LOCK_OWNER VARCHAR2(36 CHAR) NOT NULL,
+	EXPIRY_TIME NUMBER(19,0) NOT NULL,
+	CONSTRAINT SPRING_SESSION_LOCKS_PK PRIMARY KEY (LOCK_NAME)
+);